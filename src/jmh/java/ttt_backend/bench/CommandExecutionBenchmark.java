@@ -0,0 +1,194 @@
+package ttt_backend.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import ttt_backend.AsyncUserRepoInterface;
+import ttt_backend.GameArchive;
+import ttt_backend.GameRegistry;
+import ttt_backend.GroupCommitUserRepo;
+import ttt_backend.TTTBackend;
+import ttt_backend.ThreadedUserRepo;
+import ttt_backend.UserRepoInterface;
+import ttt_backend.entities.User;
+import ttt_backend.entities.Game.GameSymbolType;
+import ttt_backend.metrics.Metrics;
+
+/**
+ *
+ * Compares the executions of the commands with a slow user repository:
+ * lookups on the event loop of the request (EVENT_LOOP) and off the event
+ * loops (VIRTUAL_THREADS, on platform threads before Java 21).
+ *
+ * Each operation plays a batch of games at the same time, all from one
+ * event loop, through TTTBackend: every joinGame and makeAMove looks up
+ * its user, which takes lookupMicros.
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.util.logging.config.file=/dev/null")
+@State(Scope.Benchmark)
+public class CommandExecutionBenchmark {
+
+	/* cross wins on the first row */
+	private static final int[][] MOVES = { { 0, 0 }, { 0, 1 }, { 1, 0 }, { 1, 1 }, { 2, 0 } };
+
+	@Param({ "EVENT_LOOP", "VIRTUAL_THREADS" })
+	public ThreadedUserRepo.Execution execution;
+
+	@Param({ "1000" })
+	public int lookupMicros;
+
+	@Param({ "16" })
+	public int games;
+
+	/* a user repository with a slow lookup, e.g. a remote dbase */
+	static class SlowUserRepo implements UserRepoInterface {
+
+		private final Map<String, User> users = new ConcurrentHashMap<>();
+		private final AtomicInteger count = new AtomicInteger();
+		private final long lookupNanos;
+
+		SlowUserRepo(final long lookupNanos) {
+			this.lookupNanos = lookupNanos;
+		}
+
+		@Override
+		public User addUser(final String username) {
+			var user = new User("user-" + count.incrementAndGet(), username);
+			users.put(user.id(), user);
+			return user;
+		}
+
+		@Override
+		public User getUserById(final String id) {
+			LockSupport.parkNanos(lookupNanos);
+			return users.get(id);
+		}
+
+		@Override
+		public int countUsers() {
+			return users.size();
+		}
+
+		@Override
+		public List<User> findUsersByPrefix(final String prefix, final int limit) {
+			return List.of();
+		}
+
+		@Override
+		public User findUserByName(final String name) {
+			return null;
+		}
+	}
+
+	private Vertx vertx;
+	private TTTBackend backend;
+	/* the event loop of the requests */
+	private Context context;
+	private String crossId;
+	private String circleId;
+
+	@Setup(Level.Trial)
+	public void start() throws Exception {
+		this.vertx = Vertx.vertx();
+		var store = new SlowUserRepo(TimeUnit.MICROSECONDS.toNanos(lookupMicros));
+		this.crossId = store.addUser("cross").id();
+		this.circleId = store.addUser("circle").id();
+		AsyncUserRepoInterface repo = new GroupCommitUserRepo(vertx, store, 5, 256);
+		if (execution == ThreadedUserRepo.Execution.VIRTUAL_THREADS) {
+			repo = new ThreadedUserRepo(vertx, repo, 64);
+		}
+		var registry = new GameRegistry();
+		this.backend = new TTTBackend(vertx, repo, registry, new GameArchive(vertx), new Metrics());
+		await(registry.deploy(vertx, 2));
+		this.context = vertx.getOrCreateContext();
+	}
+
+	@TearDown(Level.Trial)
+	public void stop() throws Exception {
+		await(vertx.close());
+	}
+
+	@Benchmark
+	public void playGames() throws Exception {
+		await(onContext(() -> {
+			var all = new ArrayList<Future<Void>>(games);
+			for (int i = 0; i < games; i++) {
+				all.add(this.playGame());
+			}
+			return Future.all(all);
+		}));
+	}
+
+	private Future<Void> playGame() {
+		return backend.createNewGame().compose(game -> {
+			var gameId = game.getId();
+			Promise<Void> started = Promise.promise();
+			Promise<Void> ended = Promise.promise();
+			return Future.all(backend.joinGame(crossId, gameId, GameSymbolType.CROSS),
+					backend.joinGame(circleId, gameId, GameSymbolType.CIRCLE))
+					.compose(v -> {
+						/* the game starts on the subscription, once both joined */
+						backend.subscribeToGameEvents(gameId, (id, ev) -> {
+							if (ev.startsGame()) {
+								started.tryComplete();
+							} else if (ev.endsGame()) {
+								ended.tryComplete();
+							}
+						});
+						return started.future();
+					})
+					.compose(v -> this.play(gameId, 0))
+					.compose(v -> ended.future());
+		});
+	}
+
+	private Future<Void> play(final String gameId, final int move) {
+		if (move == MOVES.length) {
+			return Future.succeededFuture();
+		}
+		var cross = move % 2 == 0;
+		return backend.makeAMove(cross ? crossId : circleId, gameId, MOVES[move][0], MOVES[move][1],
+				cross ? GameSymbolType.CROSS : GameSymbolType.CIRCLE)
+				.compose(v -> this.play(gameId, move + 1));
+	}
+
+	private <T> Future<T> onContext(final Supplier<Future<T>> action) {
+		Promise<T> promise = Promise.promise();
+		context.runOnContext(v -> action.get().onComplete(promise));
+		return promise.future();
+	}
+
+	static <T> T await(final Future<T> fut) throws Exception {
+		return fut.toCompletionStage().toCompletableFuture().get(60, TimeUnit.SECONDS);
+	}
+
+}
@@ -0,0 +1,165 @@
+package ttt_backend.bench;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.http.WebSocket;
+import io.vertx.core.http.WebSocketClient;
+import io.vertx.core.http.WebSocketClientOptions;
+import io.vertx.core.json.JsonObject;
+import ttt_backend.Application;
+
+/**
+ * 
+ * End-to-end benchmark: the backend is started in-process on a local port and
+ * each operation plays a whole game through the REST API
+ * (createGame, joinGame, makeAMove) while receiving its events
+ * on a WebSocket, i.e. RestCommands -> TTTBackend -> event bus -> WebSocketListener.
+ * 
+ * Requests are made with the JDK HTTP client, events are received
+ * with the Vert.x WebSocket client.
+ * 
+ * The score is in moves per second. Games are played by 8 threads at once,
+ * against a server with eventLoops event loops (game shards and HTTP server
+ * instances): e.g. -p eventLoops=1,2,4,8 shows how the server scales with
+ * the cores, as long as the machine has cores left for the clients.
+ * Each value runs in its own fork, since the server reads it at startup.
+ * 
+ * Run with -prof gc to get the allocation rate.
+ * 
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.util.logging.config.file=/dev/null")
+@Threads(8)
+public class EndToEndBenchmark {
+
+	static final int PORT = 18080;
+	static final int MOVES_PER_GAME = 5;
+
+	/* cross wins on the first row */
+	private static final int[][] MOVES = { { 0, 0 }, { 0, 1 }, { 1, 0 }, { 1, 1 }, { 2, 0 } };
+
+	@State(Scope.Benchmark)
+	public static class Server {
+
+		/* event loops of the server */
+		@Param({ "1", "2", "4" })
+		int eventLoops;
+
+		Vertx server;
+		Vertx client;
+		/* kept: an unreachable client is closed, with its connections */
+		WebSocketClient wsClient;
+
+		@Setup(Level.Trial)
+		public void start() throws Exception {
+			/* before the Application class is loaded */
+			System.setProperty("ttt.httpPort", String.valueOf(PORT));
+			System.setProperty("ttt.eventLoops", String.valueOf(eventLoops));
+			this.server = Vertx.vertx(new VertxOptions().setEventLoopPoolSize(eventLoops));
+			await(server.deployVerticle(new Application()));
+			this.client = Vertx.vertx();
+			this.wsClient = client.createWebSocketClient(new WebSocketClientOptions().setMaxConnections(64));
+		}
+
+		@TearDown(Level.Trial)
+		public void stop() throws Exception {
+			client.close();
+			server.close();
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Player {
+
+		HttpClient http;
+		URI api;
+		WebSocket ws;
+		BlockingQueue<JsonObject> events;
+		String crossId;
+		String circleId;
+
+		@Setup(Level.Trial)
+		public void connect(final Server server) throws Exception {
+			this.http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+			this.api = URI.create("http://localhost:" + PORT + "/api/");
+			this.events = new LinkedBlockingQueue<>();
+			this.ws = await(server.wsClient.connect(PORT, "localhost", "/api/events"));
+			ws.textMessageHandler(msg -> events.add(new JsonObject(msg)));
+			this.crossId = post("registerUser", new JsonObject().put("userName", "cross")).getString("userId");
+			this.circleId = post("registerUser", new JsonObject().put("userName", "circle")).getString("userId");
+		}
+
+		JsonObject post(final String command, final JsonObject body) throws Exception {
+			var req = HttpRequest.newBuilder(api.resolve(command))
+					.timeout(Duration.ofSeconds(10))
+					.POST(body == null ? BodyPublishers.noBody() : BodyPublishers.ofString(body.encode()))
+					.build();
+			return new JsonObject(http.send(req, BodyHandlers.ofString()).body());
+		}
+
+		void expect(final String event) throws Exception {
+			var ev = events.poll(5, TimeUnit.SECONDS);
+			if (ev == null || !event.equals(ev.getString("event"))) {
+				throw new IllegalStateException("Expected " + event + ", got " + ev);
+			}
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(MOVES_PER_GAME)
+	public void playGame(final Player p) throws Exception {
+		var gameId = p.post("createGame", null).getString("gameId");
+		p.post("joinGame", new JsonObject().put("userId", p.crossId).put("gameId", gameId).put("symbol", "cross"));
+		p.post("joinGame",
+				new JsonObject().put("userId", p.circleId).put("gameId", gameId).put("symbol", "circle"));
+		p.ws.writeTextMessage(new JsonObject().put("gameId", gameId).encode());
+		p.expect("game-started");
+		for (int i = 0; i < MOVES.length; i++) {
+			var cross = i % 2 == 0;
+			var move = new JsonObject()
+					.put("userId", cross ? p.crossId : p.circleId)
+					.put("gameId", gameId)
+					.put("symbol", cross ? "cross" : "circle")
+					.put("x", String.valueOf(MOVES[i][0]))
+					.put("y", String.valueOf(MOVES[i][1]));
+			p.post("makeAMove", move);
+			p.expect("new-move");
+		}
+		p.expect("game-ended");
+	}
+
+	static <T> T await(final Future<T> fut) throws Exception {
+		return fut.toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+	}
+
+}
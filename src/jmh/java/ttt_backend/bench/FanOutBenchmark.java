@@ -0,0 +1,120 @@
+package ttt_backend.bench;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import io.vertx.core.Context;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.VerticleBase;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import ttt_backend.EventListenerInterface;
+import ttt_backend.GameEvent;
+import ttt_backend.GameSubscriptions;
+import ttt_backend.entities.Game.GameSymbolType;
+
+/**
+ *
+ * Fan-out of one game event to a given number of subscribers, spread
+ * over the event loops as the sockets are: GameSubscriptions delivers it
+ * on the context of each subscriber, which makes its WebSocket frame
+ * (the frames share the encoding of the event, see SharedFrames).
+ * An operation ends when every subscriber got the event.
+ *
+ * Run with -prof gc: gc.alloc.rate.norm is the allocation per event, over
+ * all the threads, as the subscriber count grows.
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FanOutBenchmark {
+
+	private static final int EVENT_LOOPS = 4;
+	private static final String GAME_ID = "game-1";
+
+	@Param({ "1", "10", "100", "1000" })
+	public int subscribers;
+
+	/* binary frames, as negotiated with the ttt.bin subprotocol, or JSON text */
+	@Param({ "false", "true" })
+	public boolean binary;
+
+	private Vertx vertx;
+	private GameSubscriptions subscriptions;
+	private GameEvent event;
+	/* subscribers still to get the event */
+	private final AtomicInteger remaining = new AtomicInteger();
+
+	/* a socket writing the frame of the event */
+	private final class Subscriber implements EventListenerInterface {
+		private final Blackhole bh;
+
+		Subscriber(final Blackhole bh) {
+			this.bh = bh;
+		}
+
+		@Override
+		public void onEvent(final String gameId, final GameEvent ev) {
+			bh.consume(binary ? ev.toBinaryFrame() : ev.toTextFrame());
+			remaining.decrementAndGet();
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setup(final Blackhole bh) throws Exception {
+		this.vertx = Vertx.vertx(new VertxOptions().setEventLoopPoolSize(EVENT_LOOPS));
+		/* one context per event loop, as the instances of the HTTP server */
+		List<Context> contexts = new CopyOnWriteArrayList<>();
+		vertx.deployVerticle(() -> new VerticleBase() {
+			@Override
+			public Future<?> start() {
+				contexts.add(context);
+				return Future.succeededFuture();
+			}
+		}, new DeploymentOptions().setInstances(EVENT_LOOPS)).toCompletionStage().toCompletableFuture()
+				.get(10, TimeUnit.SECONDS);
+		this.subscriptions = new GameSubscriptions();
+		for (int i = 0; i < subscribers; i++) {
+			subscriptions.subscribe(GAME_ID, new Subscriber(bh), contexts.get(i % contexts.size()));
+		}
+		/* a move: game-ended would drop the subscribers */
+		this.event = GameEvent.newMove(1, 1, GameSymbolType.CROSS, 2);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		vertx.close();
+	}
+
+	@Benchmark
+	public void publish() {
+		remaining.set(subscribers);
+		subscriptions.publish(GAME_ID, event);
+		while (remaining.get() > 0) {
+			Thread.yield();
+		}
+	}
+
+}
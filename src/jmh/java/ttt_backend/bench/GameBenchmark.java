@@ -0,0 +1,69 @@
+package ttt_backend.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import ttt_backend.entities.Game;
+import ttt_backend.entities.Game.GameSymbolType;
+import ttt_backend.entities.User;
+
+/**
+ * 
+ * Microbenchmarks of the game entity: a full game (creation, joins, moves and
+ * state checks) and the tie case, where all the 9 moves are made.
+ * 
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GameBenchmark {
+
+	/* cross wins on the first row */
+	private static final int[][] WIN = { { 0, 0 }, { 0, 1 }, { 1, 0 }, { 1, 1 }, { 2, 0 } };
+
+	/* nobody wins */
+	private static final int[][] TIE = { { 0, 0 }, { 1, 1 }, { 2, 2 }, { 1, 0 }, { 1, 2 }, { 0, 2 }, { 2, 0 },
+			{ 2, 1 }, { 0, 1 } };
+
+	private final User cross = new User("user-1", "cross");
+	private final User circle = new User("user-2", "circle");
+
+	@Benchmark
+	public void playWinningGame(final Blackhole bh) throws Exception {
+		bh.consume(play(WIN));
+	}
+
+	@Benchmark
+	public void playTieGame(final Blackhole bh) throws Exception {
+		bh.consume(play(TIE));
+	}
+
+	private Game play(final int[][] moves) throws Exception {
+		var game = new Game("game-1");
+		game.joinGame(cross, GameSymbolType.CROSS);
+		game.joinGame(circle, GameSymbolType.CIRCLE);
+		game.start();
+		for (int i = 0; i < moves.length; i++) {
+			if (i % 2 == 0) {
+				game.makeAmove(cross, GameSymbolType.CROSS, moves[i][0], moves[i][1]);
+			} else {
+				game.makeAmove(circle, GameSymbolType.CIRCLE, moves[i][0], moves[i][1]);
+			}
+		}
+		return game;
+	}
+
+}
@@ -0,0 +1,87 @@
+package ttt_backend.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import io.vertx.core.Vertx;
+import ttt_backend.GameEvent;
+import ttt_backend.GameEventLog;
+import ttt_backend.Ids;
+import ttt_backend.entities.Game.GameSymbolType;
+
+/**
+ *
+ * The event log of the games, with a given number of games in progress
+ * (5 events each): appending a move, and the replay of the events missed by
+ * a subscriber reconnecting after its first 2, as after a network blip.
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GameEventLogBenchmark {
+
+	@Param({ "10000", "100000" })
+	public int games;
+
+	private Vertx vertx;
+	private GameEventLog log;
+	private String[] ids;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		this.vertx = Vertx.vertx();
+		this.log = new GameEventLog(vertx);
+		this.ids = new String[games];
+		for (int i = 0; i < games; i++) {
+			ids[i] = Ids.format(Ids.GAME, i);
+			log.append(ids[i], GameEvent::gameStarted, ev -> {});
+			for (int m = 0; m < 4; m++) {
+				int cell = m;
+				log.append(ids[i], seq -> GameEvent.newMove(cell % 3, cell / 3,
+						seq % 2 == 0 ? GameSymbolType.CROSS : GameSymbolType.CIRCLE, seq), ev -> {});
+			}
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		vertx.close();
+	}
+
+	private String someGame() {
+		next = (next + 7919) % games;
+		return ids[next];
+	}
+
+	/* the ring wraps around: the games never end */
+	@Benchmark
+	public GameEvent append(final Blackhole bh) {
+		return log.append(this.someGame(), seq -> GameEvent.newMove(1, 1, GameSymbolType.CROSS, seq), bh::consume);
+	}
+
+	@Benchmark
+	public List<GameEvent> replayMissed() {
+		return log.since(this.someGame(), 2);
+	}
+
+}
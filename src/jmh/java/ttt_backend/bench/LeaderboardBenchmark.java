@@ -0,0 +1,141 @@
+package ttt_backend.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.vertx.core.Future;
+import ttt_backend.AsyncUserRepoInterface;
+import ttt_backend.Leaderboard;
+import ttt_backend.entities.Game;
+import ttt_backend.entities.Standing;
+import ttt_backend.entities.User;
+import ttt_backend.entities.UserStats;
+import ttt_backend.entities.Game.GameSymbolType;
+
+/**
+ *
+ * Reads and updates of the leaderboard, with a given number of players:
+ * the top 10, the rank of a user (compared with counting the users with
+ * more points, as a scan would do) and the result of a finished game.
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LeaderboardBenchmark {
+
+	@Param({ "1000", "100000" })
+	public int players;
+
+	private Leaderboard leaderboard;
+	private List<UserStats> stats;
+
+	/* results loaded at startup, nothing saved */
+	private static final class Repo implements AsyncUserRepoInterface {
+
+		private final List<UserStats> stats;
+
+		Repo(final List<UserStats> stats) {
+			this.stats = stats;
+		}
+
+		@Override
+		public Future<User> addUser(final String username) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public User getUserById(final String id) {
+			return null;
+		}
+
+		@Override
+		public int countUsers() {
+			return stats.size();
+		}
+
+		@Override
+		public List<User> findUsersByPrefix(final String prefix, final int limit) {
+			return List.of();
+		}
+
+		@Override
+		public User findUserByName(final String name) {
+			return null;
+		}
+
+		@Override
+		public List<UserStats> allStats() {
+			return stats;
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setup() {
+		var random = ThreadLocalRandom.current();
+		this.stats = new ArrayList<>(players);
+		for (int i = 0; i < players; i++) {
+			stats.add(new UserStats("user-" + i, "player-" + i, random.nextInt(50), random.nextInt(50),
+					random.nextInt(20)));
+		}
+		this.leaderboard = new Leaderboard(new Repo(stats));
+	}
+
+	@Benchmark
+	public List<Standing> top10() {
+		return leaderboard.top(10);
+	}
+
+	@Benchmark
+	public Standing rank() {
+		return leaderboard.standingOf("user-" + ThreadLocalRandom.current().nextInt(players));
+	}
+
+	@Benchmark
+	public int rankByScan() {
+		int points = stats.get(ThreadLocalRandom.current().nextInt(players)).points();
+		int rank = 1;
+		for (UserStats s : stats) {
+			if (s.points() > points) {
+				rank++;
+			}
+		}
+		return rank;
+	}
+
+	@Benchmark
+	public Game recordResult() throws Exception {
+		var random = ThreadLocalRandom.current();
+		var game = new Game("game-1");
+		game.joinGame(new User("user-" + random.nextInt(players), "cross"), GameSymbolType.CROSS);
+		game.joinGame(new User("user-" + random.nextInt(players), "circle"), GameSymbolType.CIRCLE);
+		game.start();
+		/* cross wins on the first row */
+		int[][] moves = { { 0, 0 }, { 0, 1 }, { 1, 0 }, { 1, 1 }, { 2, 0 } };
+		for (int i = 0; i < moves.length; i++) {
+			var user = game.getUser(i % 2 == 0 ? GameSymbolType.CROSS : GameSymbolType.CIRCLE).get();
+			game.makeAmove(user, i % 2 == 0 ? GameSymbolType.CROSS : GameSymbolType.CIRCLE, moves[i][0], moves[i][1]);
+		}
+		leaderboard.recordResult(game);
+		return game;
+	}
+
+}
@@ -0,0 +1,107 @@
+package ttt_backend.bench;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ttt_backend.Ids;
+import ttt_backend.Lobby;
+import ttt_backend.entities.Game;
+import ttt_backend.entities.LobbyPage;
+import ttt_backend.entities.OpenGame;
+import ttt_backend.entities.User;
+import ttt_backend.entities.Game.GameSymbolType;
+
+/**
+ *
+ * Pages of the lobby with a given number of live games, 1% of them waiting
+ * for a player: the first page of 20 games and a page in the middle,
+ * compared with scanning the live games for the open ones; and a game
+ * opened and filled.
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LobbyBenchmark {
+
+	private static final int PAGE = 20;
+
+	@Param({ "10000", "200000" })
+	public int liveGames;
+
+	private Lobby lobby;
+	private HashMap<String, Game> games;
+	private String middle;
+	private long next;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		this.lobby = new Lobby();
+		this.games = new HashMap<>();
+		var cross = new User("user-1", "cross");
+		var circle = new User("user-2", "circle");
+		for (int i = 1; i <= liveGames; i++) {
+			var game = new Game(Ids.format(Ids.GAME, i));
+			if (i % 100 != 0) {
+				game.joinGame(cross, GameSymbolType.CROSS);
+				game.joinGame(circle, GameSymbolType.CIRCLE);
+				game.start();
+			}
+			games.put(game.getId(), game);
+			lobby.update(game);
+		}
+		this.middle = Ids.format(Ids.GAME, liveGames / 2);
+		this.next = liveGames;
+	}
+
+	@Benchmark
+	public LobbyPage firstPage() {
+		return lobby.page(null, PAGE);
+	}
+
+	@Benchmark
+	public LobbyPage middlePage() {
+		return lobby.page(middle, PAGE);
+	}
+
+	@Benchmark
+	public List<OpenGame> firstPageByScan() {
+		var open = new ArrayList<OpenGame>();
+		for (Game g : games.values()) {
+			if (g.getState() == Game.GameState.WAITING_PLAYER && !g.bothPlayersJoined()) {
+				open.add(OpenGame.of(g));
+			}
+		}
+		open.sort((a, b) -> Long.compare(Ids.parse(Ids.GAME, a.gameId()), Ids.parse(Ids.GAME, b.gameId())));
+		return open.subList(0, Math.min(PAGE, open.size()));
+	}
+
+	@Benchmark
+	public Game openAndFill() throws Exception {
+		var game = new Game(Ids.format(Ids.GAME, ++next));
+		lobby.update(game);
+		game.joinGame(new User("user-1", "cross"), GameSymbolType.CROSS);
+		game.joinGame(new User("user-2", "circle"), GameSymbolType.CIRCLE);
+		lobby.update(game);
+		return game;
+	}
+
+}
@@ -0,0 +1,56 @@
+package ttt_backend.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import ttt_backend.RequestDecoder;
+import ttt_backend.entities.Game.GameSymbolType;
+import ttt_backend.exceptions.BadRequestException;
+
+/**
+ * 
+ * Decoding of the body of a move request: through a JsonObject, as the REST
+ * handlers used to do, and with the RequestDecoder. Run with -prof gc to
+ * compare the bytes allocated per request.
+ * 
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RequestDecodingBenchmark {
+
+	private final Buffer move = Buffer.buffer(
+			"{\"userId\":\"user-1234\",\"gameId\":\"game-5678\",\"symbol\":\"cross\",\"x\":\"1\",\"y\":\"2\"}");
+
+	@Benchmark
+	public RequestDecoder.MakeAMove jsonObject() {
+		JsonObject moveInfo = move.toJsonObject();
+		String userId = moveInfo.getString("userId");
+		String gameId = moveInfo.getString("gameId");
+		String symbol = moveInfo.getString("symbol");
+		int x = Integer.parseInt(moveInfo.getString("x"));
+		int y = Integer.parseInt(moveInfo.getString("y"));
+		var gameSym = symbol.equals("cross") ? GameSymbolType.CROSS : GameSymbolType.CIRCLE;
+		return new RequestDecoder.MakeAMove(userId, gameId, x, y, gameSym);
+	}
+
+	@Benchmark
+	public RequestDecoder.MakeAMove requestDecoder() throws BadRequestException {
+		return RequestDecoder.makeAMove(move);
+	}
+
+}
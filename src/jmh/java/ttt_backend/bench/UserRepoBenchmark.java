@@ -0,0 +1,117 @@
+package ttt_backend.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import ttt_backend.JournalDAO;
+import ttt_backend.JsonDAO;
+import ttt_backend.entities.User;
+
+/**
+ * 
+ * Compares the user repositories: per-insert latency and startup time
+ * (loading the dbase) for a given number of already registered users.
+ * 
+ * JsonDAO works on users.json in the current directory, so the benchmarks
+ * must be run from a scratch directory (the jmh profile does it).
+ * 
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserRepoBenchmark {
+
+	private static final Path JSON_DB = Path.of("users.json");
+	private static final Path JOURNAL_DIR = Path.of("journal-db");
+
+	@Param({ "1000", "100000" })
+	public int users;
+
+	private JsonDAO jsonDAO;
+	private JournalDAO journalDAO;
+
+	@Setup(Level.Iteration)
+	public void setup() throws IOException {
+		/* the same users, in the format of both repositories */
+		var array = new JsonArray();
+		var snapshot = new StringBuilder();
+		for (int i = 0; i < users; i++) {
+			var user = new User("user-" + i, "player-" + i);
+			array.add(new JsonObject().put("userId", user.id()).put("userName", user.name()));
+			snapshot.append(new JsonObject().put("userId", user.id()).put("userName", user.name()).encode())
+					.append('\n');
+		}
+		Files.writeString(JSON_DB, array.encodePrettily());
+		deleteJournalDB();
+		Files.createDirectories(JOURNAL_DIR);
+		Files.writeString(JOURNAL_DIR.resolve("users.snapshot"), snapshot);
+
+		this.jsonDAO = new JsonDAO();
+		this.journalDAO = new JournalDAO(JOURNAL_DIR, Integer.MAX_VALUE);
+	}
+
+	@TearDown(Level.Iteration)
+	public void tearDown() throws IOException {
+		this.journalDAO.close();
+	}
+
+	@Benchmark
+	public User jsonAddUser() {
+		return jsonDAO.addUser("new-player");
+	}
+
+	@Benchmark
+	public User journalAddUser() {
+		return journalDAO.addUser("new-player");
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Measurement(iterations = 10)
+	public JsonDAO jsonStartup() {
+		return new JsonDAO();
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Measurement(iterations = 10)
+	public JournalDAO journalStartup() {
+		var dao = new JournalDAO(JOURNAL_DIR, Integer.MAX_VALUE);
+		dao.close();
+		return dao;
+	}
+
+	private static void deleteJournalDB() throws IOException {
+		if (Files.exists(JOURNAL_DIR)) {
+			try (var files = Files.list(JOURNAL_DIR)) {
+				for (var f : files.toList()) {
+					Files.delete(f);
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,113 @@
+package ttt_backend.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ttt_backend.ClusterPartitioning;
+import ttt_backend.Ids;
+import ttt_backend.UserIndex;
+import ttt_backend.entities.User;
+
+/**
+ *
+ * Lookups of users by name in the index of the user repository, with
+ * a given number of users named by random syllables (e.g. "kotaru"):
+ * the first 20 users with a prefix of 2 or 4 letters of an existing name,
+ * an exact name, and, for comparison, a scan of all the users
+ * for a prefix of 4 letters.
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class UserSearchBenchmark {
+
+	private static final String[] SYLLABLES = { "ka", "ko", "ta", "to", "ru", "ri", "mi", "mo", "na", "ne", "sa",
+			"so", "la", "lu", "be", "bo", "de", "di", "gu", "fe" };
+
+	private static final int LIMIT = 20;
+
+	@Param({ "1000000", "3000000" })
+	public int users;
+
+	private UserIndex index;
+	private String[] names;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		var random = new Random(42);
+		this.index = new UserIndex(ClusterPartitioning.SINGLE_NODE);
+		this.names = new String[users];
+		for (int i = 0; i < users; i++) {
+			var name = new StringBuilder();
+			for (int k = 2 + random.nextInt(3); k > 0; k--) {
+				name.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+			}
+			names[i] = name.append(random.nextInt(100)).toString();
+			index.put(new User(Ids.format(Ids.USER, i), names[i]));
+		}
+		long start = System.nanoTime();
+		index.indexNames();
+		System.out.printf("%n%d users indexed in %d ms%n", users, (System.nanoTime() - start) / 1_000_000);
+	}
+
+	private String someName() {
+		return names[ThreadLocalRandom.current().nextInt(users)];
+	}
+
+	@Benchmark
+	public List<User> prefix2() {
+		return index.findByPrefix(this.someName().substring(0, 2), LIMIT);
+	}
+
+	@Benchmark
+	public List<User> prefix4() {
+		return index.findByPrefix(this.someName().substring(0, 4), LIMIT);
+	}
+
+	@Benchmark
+	public User exactName() {
+		return index.findByName(this.someName());
+	}
+
+	@Benchmark
+	public List<User> prefix4ByScan() {
+		var prefix = this.someName().substring(0, 4);
+		var found = new ArrayList<User>();
+		for (int i = 0; i < users; i++) {
+			if (names[i].regionMatches(true, 0, prefix, 0, prefix.length())) {
+				found.add(new User(Ids.format(Ids.USER, i), names[i]));
+			}
+		}
+		found.sort((a, b) -> String.CASE_INSENSITIVE_ORDER.compare(a.name(), b.name()));
+		return found.subList(0, Math.min(LIMIT, found.size()));
+	}
+
+	@Benchmark
+	public User addUser() {
+		var user = new User(Ids.format(Ids.USER, users + ThreadLocalRandom.current().nextInt(1 << 20)),
+				this.someName());
+		index.put(user);
+		return user;
+	}
+
+}
@@ -0,0 +1,113 @@
+package ttt_backend.load;
+
+import java.lang.ref.Reference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import ttt_backend.ClusterPartitioning;
+import ttt_backend.GameShard;
+import ttt_backend.Ids;
+import ttt_backend.UserIndex;
+import ttt_backend.entities.Game;
+import ttt_backend.entities.User;
+
+/**
+ *
+ * Heap retained by the in-memory registries of users and games, with
+ * string-keyed hash maps and with the numeric-keyed ones of the server.
+ *
+ * For users the whole registry is measured (ids, names and entries);
+ * for games only the index, since the games themselves are the same.
+ *
+ * Arguments, as key=value:
+ *   entries   number of users and games (default 1000000)
+ *
+ * Run with: mvn -Pload compile exec:exec -Dload.main=ttt_backend.load.HeapFootprint
+ *
+ */
+public class HeapFootprint {
+
+	/* keeps the measured structures reachable */
+	private static Object retained;
+
+	public static void main(final String[] args) {
+		int entries = 1_000_000;
+		for (String arg : args) {
+			if (arg.startsWith("entries=")) {
+				entries = Integer.parseInt(arg.substring("entries=".length()));
+			}
+		}
+		final int n = entries;
+		System.out.printf("Heap retained by %d entries%n", n);
+
+		long users = measure(() -> {
+			var map = new ConcurrentHashMap<String, User>();
+			for (int i = 0; i < n; i++) {
+				var user = new User(Ids.format(Ids.USER, i), "player-" + i);
+				map.put(user.id(), user);
+			}
+			return map;
+		}, 0);
+		long index = measure(() -> {
+			var idx = new UserIndex(ClusterPartitioning.SINGLE_NODE);
+			for (int i = 0; i < n; i++) {
+				idx.put(new User(Ids.format(Ids.USER, i), "player-" + i));
+			}
+			return idx;
+		}, 0);
+		report("users", "ConcurrentHashMap<String, User>", users, "UserIndex", index, n);
+
+		List<Game> games = new ArrayList<>(n);
+		for (int i = 0; i < n; i++) {
+			games.add(new Game(Ids.format(Ids.GAME, i)));
+		}
+		long base = usedHeap();
+		long hashMap = measure(() -> {
+			var map = new HashMap<String, Game>();
+			for (Game g : games) {
+				map.put(g.getId(), g);
+			}
+			return map;
+		}, base);
+		long shard = measure(() -> {
+			var map = new GameShard.Games();
+			for (Game g : games) {
+				map.put(g.getId(), g);
+			}
+			return map;
+		}, base);
+		report("games index", "HashMap<String, Game>", hashMap, "GameShard.Games", shard, n);
+		Reference.reachabilityFence(games);
+	}
+
+	/* heap retained by the structure built by the supplier */
+	private static long measure(final Supplier<Object> build, final long base) {
+		long before = base > 0 ? base : usedHeap();
+		retained = build.get();
+		long after = usedHeap();
+		retained = null;
+		return after - before;
+	}
+
+	private static long usedHeap() {
+		var rt = Runtime.getRuntime();
+		long used = Long.MAX_VALUE;
+		for (int i = 0; i < 5; i++) {
+			System.gc();
+			used = Math.min(used, rt.totalMemory() - rt.freeMemory());
+		}
+		return used;
+	}
+
+	private static void report(final String what, final String before, final long beforeBytes, final String after,
+			final long afterBytes, final int n) {
+		System.out.printf("  %-12s %-32s %8.1f MB (%5.1f B/entry)%n", what, before, beforeBytes / 1e6,
+				(double) beforeBytes / n);
+		System.out.printf("  %-12s %-32s %8.1f MB (%5.1f B/entry), %.1fx smaller%n", "", after, afterBytes / 1e6,
+				(double) afterBytes / n, (double) beforeBytes / afterBytes);
+	}
+
+}
@@ -0,0 +1,74 @@
+package ttt_backend.load;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 
+ * Latency recorder with log-linear buckets: each power of two is split 
+ * into 32 sub-buckets, so percentiles are within about 3% of the exact 
+ * value, with a fixed memory footprint however long the run lasts.
+ * 
+ */
+public class LatencyRecorder {
+
+	private static final int SUB_BITS = 6;
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+	/* enough for values up to 2^63 ns */
+	private final AtomicLongArray counts = new AtomicLongArray(64 * SUB_BUCKETS);
+
+	public void record(final long nanos) {
+		counts.incrementAndGet(index(Math.max(nanos, 0)));
+	}
+
+	public long count() {
+		long n = 0;
+		for (int i = 0; i < counts.length(); i++) {
+			n += counts.get(i);
+		}
+		return n;
+	}
+
+	/**
+	 * 
+	 * Value at a percentile
+	 * 
+	 * @param p in [0, 100]
+	 * @return the upper bound of the bucket including the percentile, in nanoseconds
+	 */
+	public long percentile(final double p) {
+		long total = this.count();
+		if (total == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(total * p / 100.0);
+		long seen = 0;
+		for (int i = 0; i < counts.length(); i++) {
+			seen += counts.get(i);
+			if (seen >= Math.max(rank, 1)) {
+				return upperBound(i);
+			}
+		}
+		return upperBound(counts.length() - 1);
+	}
+
+	/* values below SUB_BUCKETS are exact, the others keep SUB_BITS significant bits */
+	private static int index(final long v) {
+		if (v < SUB_BUCKETS) {
+			return (int) v;
+		}
+		int exp = 63 - Long.numberOfLeadingZeros(v) - SUB_BITS + 1;
+		int sub = (int) (v >>> exp) - SUB_BUCKETS / 2;
+		return exp * SUB_BUCKETS / 2 + SUB_BUCKETS / 2 + sub;
+	}
+
+	private static long upperBound(final int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int exp = (index - SUB_BUCKETS / 2) / (SUB_BUCKETS / 2);
+		int sub = (index - SUB_BUCKETS / 2) % (SUB_BUCKETS / 2) + SUB_BUCKETS / 2;
+		return ((long) (sub + 1) << exp) - 1;
+	}
+
+}
@@ -0,0 +1,401 @@
+package ttt_backend.load;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.PoolOptions;
+import io.vertx.core.http.WebSocket;
+import io.vertx.core.http.WebSocketClient;
+import io.vertx.core.http.WebSocketClientOptions;
+import io.vertx.core.json.JsonObject;
+
+/**
+ *
+ * Load generator and soak test.
+ *
+ * Keeps a number of games running concurrently against a TTT server: each game
+ * slot registers its two users once, then plays games in a loop through the
+ * REST API (createGame, joinGame, makeAMove with random valid moves), with
+ * the events received on one WebSocket per player.
+ *
+ * It reports the latency percentiles of each endpoint and the event lag,
+ * i.e. the time from sending a move to receiving its new-move event, and
+ * periodically the heap, live games and subscriptions of the server,
+ * scraped from its /metrics endpoint.
+ *
+ * At the end all the sockets are closed, so the final report of the server
+ * must show no subscriptions left: any other value is a leak.
+ *
+ * Arguments, as key=value:
+ *   games     number of concurrent games (default 100)
+ *   rate      max games started per second, 0 for no limit (default 0)
+ *   duration  seconds to run (default 30)
+ *   report    seconds between periodic reports (default 5)
+ *   embedded  start the server in this JVM (default true)
+ *   host, port  of the server (default localhost, 18080)
+ *
+ * Run with: mvn -Pload compile exec:exec -Dload.args="games=1000 duration=600"
+ *
+ */
+public class LoadGenerator {
+
+	/* cells of a move, the grid as bitboards as in Game */
+	private static final int FULL_GRID = 0x1FF;
+	private static final int[] WIN_MASKS = {
+		0b000_000_111, 0b000_111_000, 0b111_000_000,
+		0b001_001_001, 0b010_010_010, 0b100_100_100,
+		0b100_010_001, 0b001_010_100
+	};
+
+	private static final String[] ENDPOINTS = { "registerUser", "createGame", "joinGame", "makeAMove" };
+
+	private final String host;
+	private final int port;
+	private final int numGames;
+	private final double rate;
+
+	private final Vertx vertx;
+	private final HttpClient http;
+	private final WebSocketClient wsClient;
+
+	private final Map<String, LatencyRecorder> latencies;
+	private final LatencyRecorder eventLag;
+	private final AtomicLong gamesPlayed;
+	private final AtomicLong errors;
+	private final AtomicLong circleEvents;
+	private final AtomicLong nextStart;
+	private final AtomicInteger activeSlots;
+	private volatile boolean running;
+
+	public LoadGenerator(final String host, final int port, final int numGames, final double rate) {
+		this.host = host;
+		this.port = port;
+		this.numGames = numGames;
+		this.rate = rate;
+		this.vertx = Vertx.vertx();
+		this.http = vertx.createHttpClient(new HttpClientOptions().setDefaultHost(host).setDefaultPort(port),
+				new PoolOptions().setHttp1MaxSize(numGames + 1));
+		this.wsClient = vertx.createWebSocketClient(new WebSocketClientOptions().setMaxConnections(2 * numGames));
+		this.latencies = new LinkedHashMap<>();
+		for (String e : ENDPOINTS) {
+			latencies.put(e, new LatencyRecorder());
+		}
+		this.eventLag = new LatencyRecorder();
+		this.gamesPlayed = new AtomicLong();
+		this.errors = new AtomicLong();
+		this.circleEvents = new AtomicLong();
+		this.nextStart = new AtomicLong(System.nanoTime());
+		this.activeSlots = new AtomicInteger();
+	}
+
+	public static void main(final String[] args) throws Exception {
+		var conf = new LinkedHashMap<String, String>();
+		for (String arg : args) {
+			var kv = arg.split("=", 2);
+			conf.put(kv[0], kv.length > 1 ? kv[1] : "true");
+		}
+		var host = conf.getOrDefault("host", "localhost");
+		int port = Integer.parseInt(conf.getOrDefault("port", "18080"));
+		int games = Integer.parseInt(conf.getOrDefault("games", "100"));
+		double rate = Double.parseDouble(conf.getOrDefault("rate", "0"));
+		long duration = Long.parseLong(conf.getOrDefault("duration", "30"));
+		long report = Long.parseLong(conf.getOrDefault("report", "5"));
+
+		Vertx server = null;
+		if (Boolean.parseBoolean(conf.getOrDefault("embedded", "true"))) {
+			/* before the Application class is loaded */
+			System.setProperty("ttt.httpPort", String.valueOf(port));
+			server = Vertx.vertx();
+			server.deployVerticle("ttt_backend.Application").await();
+		}
+
+		var gen = new LoadGenerator(host, port, games, rate);
+		System.out.println("Running " + games + " concurrent games for " + duration + " s against " + host + ":"
+				+ port + (rate > 0 ? ", at most " + rate + " games/s" : ""));
+		gen.run(duration, report);
+		gen.vertx.close().await();
+		if (server != null) {
+			server.close().await();
+		}
+		System.exit(0);
+	}
+
+	private void run(final long durationSec, final long reportSec) throws Exception {
+		this.running = true;
+		long start = System.nanoTime();
+		for (int i = 0; i < numGames; i++) {
+			var slot = new GameSlot(i);
+			activeSlots.incrementAndGet();
+			vertx.getOrCreateContext().runOnContext(v -> slot.start());
+		}
+		long timer = vertx.setPeriodic(reportSec * 1000, id -> this.report(start, false));
+		Thread.sleep(durationSec * 1000);
+		this.running = false;
+		vertx.cancelTimer(timer);
+
+		/* let the ongoing games end */
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (activeSlots.get() > 0 && System.nanoTime() < deadline) {
+			Thread.sleep(50);
+		}
+		/* the server handles the closed sockets */
+		Thread.sleep(500);
+		var done = new CountDownLatch(1);
+		vertx.runOnContext(v -> this.report(start, true).onComplete(r -> done.countDown()));
+		done.await(10, TimeUnit.SECONDS);
+	}
+
+	/**
+	 *
+	 * A game slot: two users playing one game after another
+	 *
+	 */
+	private class GameSlot {
+
+		private final int index;
+		private String crossId;
+		private String circleId;
+		private WebSocket crossWs;
+		private WebSocket circleWs;
+
+		/* state of the current game */
+		private String gameId;
+		private int crossCells;
+		private int circleCells;
+		private long moveSentAt;
+		private Promise<Void> crossStarted;
+		private Promise<Void> moveSeen;
+		private Promise<Void> ended;
+
+		GameSlot(final int index) {
+			this.index = index;
+		}
+
+		void start() {
+			post("registerUser", new JsonObject().put("userName", "cross-" + index))
+					.compose(u -> {
+						this.crossId = u.getString("userId");
+						return post("registerUser", new JsonObject().put("userName", "circle-" + index));
+					})
+					.compose(u -> {
+						this.circleId = u.getString("userId");
+						return wsClient.connect(port, host, "/api/events");
+					})
+					.compose(ws -> {
+						this.crossWs = ws;
+						ws.textMessageHandler(msg -> this.onCrossEvent(new JsonObject(msg)));
+						return wsClient.connect(port, host, "/api/events");
+					})
+					.onSuccess(ws -> {
+						this.circleWs = ws;
+						/* only counted, the cross socket drives the game */
+						ws.textMessageHandler(msg -> circleEvents.incrementAndGet());
+						this.nextGame();
+					})
+					.onFailure(this::fail);
+		}
+
+		/* events of the cross socket drive the game */
+		private void onCrossEvent(final JsonObject ev) {
+			switch (ev.getString("event", "")) {
+			case "game-started" -> crossStarted.tryComplete();
+			case "new-move" -> {
+				eventLag.record(System.nanoTime() - moveSentAt);
+				moveSeen.tryComplete();
+			}
+			case "game-ended" -> ended.tryComplete();
+			default -> { }
+			}
+		}
+
+		private void nextGame() {
+			if (!running) {
+				this.stop();
+				return;
+			}
+			long delay = 0;
+			if (rate > 0) {
+				long interval = (long) (1e9 / rate);
+				long now = System.nanoTime();
+				long at = nextStart.accumulateAndGet(interval, (prev, step) -> Math.max(prev + step, now));
+				delay = TimeUnit.NANOSECONDS.toMillis(at - now);
+			}
+			if (delay > 0) {
+				vertx.setTimer(delay, id -> this.playGame());
+			} else {
+				this.playGame();
+			}
+		}
+
+		private void playGame() {
+			this.crossCells = 0;
+			this.circleCells = 0;
+			this.crossStarted = Promise.promise();
+			this.ended = Promise.promise();
+			post("createGame", null)
+					.compose(g -> {
+						this.gameId = g.getString("gameId");
+						return post("joinGame", join(crossId, "cross"));
+					})
+					.compose(r -> post("joinGame", join(circleId, "circle")))
+					.compose(r -> {
+						/* 
+						 * the game starts as soon as a subscriber is ready: the circle 
+						 * socket subscribes after the start, not to race with it
+						 */
+						crossWs.writeTextMessage(new JsonObject().put("gameId", gameId).encode());
+						return crossStarted.future();
+					})
+					.compose(v -> {
+						circleWs.writeTextMessage(new JsonObject().put("gameId", gameId).encode());
+						return Future.succeededFuture();
+					})
+					.compose(v -> this.playMoves(true))
+					.onSuccess(v -> {
+						gamesPlayed.incrementAndGet();
+						this.nextGame();
+					})
+					.onFailure(this::fail);
+		}
+
+		/* a random valid move, then the next one until the game ends */
+		private Future<Void> playMoves(final boolean cross) {
+			int free = FULL_GRID & ~(crossCells | circleCells);
+			int cell = randomBit(free);
+			if (cross) {
+				crossCells |= 1 << cell;
+			} else {
+				circleCells |= 1 << cell;
+			}
+			var move = new JsonObject()
+					.put("userId", cross ? crossId : circleId)
+					.put("gameId", gameId)
+					.put("symbol", cross ? "cross" : "circle")
+					.put("x", String.valueOf(cell % 3))
+					.put("y", String.valueOf(cell / 3));
+			this.moveSeen = Promise.promise();
+			this.moveSentAt = System.nanoTime();
+			return Future.all(post("makeAMove", move), moveSeen.future()).compose(v -> {
+				if (isWin(cross ? crossCells : circleCells) || (crossCells | circleCells) == FULL_GRID) {
+					return ended.future();
+				}
+				return this.playMoves(!cross);
+			});
+		}
+
+		private JsonObject join(final String userId, final String symbol) {
+			return new JsonObject().put("userId", userId).put("gameId", gameId).put("symbol", symbol);
+		}
+
+		private void fail(final Throwable cause) {
+			errors.incrementAndGet();
+			if (errors.get() <= 10) {
+				System.err.println("Game slot " + index + " failed: " + cause);
+			}
+			/* the sockets are kept, unless they were never opened */
+			if (circleWs == null) {
+				this.stop();
+			} else {
+				vertx.setTimer(100, id -> this.nextGame());
+			}
+		}
+
+		private void stop() {
+			if (crossWs != null) {
+				crossWs.close();
+			}
+			if (circleWs != null) {
+				circleWs.close();
+			}
+			activeSlots.decrementAndGet();
+		}
+	}
+
+	private Future<JsonObject> post(final String endpoint, final JsonObject body) {
+		long start = System.nanoTime();
+		var recorder = latencies.get(endpoint);
+		return http.request(HttpMethod.POST, "/api/" + endpoint)
+				.compose(req -> req.send(body == null ? Buffer.buffer() : body.toBuffer()))
+				.compose(resp -> resp.statusCode() == 200 ? resp.body()
+						: Future.failedFuture(endpoint + ": HTTP " + resp.statusCode()))
+				.map(buf -> {
+					recorder.record(System.nanoTime() - start);
+					return buf.toJsonObject();
+				});
+	}
+
+	/* Reports */
+
+	private Future<Void> report(final long start, final boolean last) {
+		double elapsed = (System.nanoTime() - start) / 1e9;
+		var sb = new StringBuilder();
+		sb.append(String.format("%n[%s, %.0f s] games: %d (%.1f/s), fan-out events: %d, errors: %d%n",
+				last ? "final" : "progress", elapsed, gamesPlayed.get(), gamesPlayed.get() / elapsed,
+				circleEvents.get(), errors.get()));
+		sb.append(String.format("  %-14s %10s %10s %10s %10s%n", "", "count", "p50 ms", "p99 ms", "p999 ms"));
+		latencies.forEach((name, rec) -> row(sb, name, rec));
+		row(sb, "event lag", eventLag);
+		return http.request(HttpMethod.GET, "/metrics")
+				.compose(req -> req.send())
+				.compose(resp -> resp.body())
+				.map(buf -> {
+					var server = buf.toString();
+					sb.append(String.format("  server: heap %.1f MB, live games %s, subscriptions %s (%s games)%n",
+							Double.parseDouble(sample(server, "ttt_jvm_heap_used_bytes")) / (1 << 20),
+							sample(server, "ttt_live_games"), sample(server, "ttt_subscriptions"),
+							sample(server, "ttt_subscribed_games")));
+					return (Void) null;
+				})
+				.recover(err -> {
+					sb.append("  server metrics unavailable: " + err.getMessage() + "\n");
+					return Future.succeededFuture();
+				})
+				.onComplete(v -> System.out.print(sb));
+	}
+
+	private static void row(final StringBuilder sb, final String name, final LatencyRecorder rec) {
+		sb.append(String.format("  %-14s %10d %10.2f %10.2f %10.2f%n", name, rec.count(), rec.percentile(50) / 1e6,
+				rec.percentile(99) / 1e6, rec.percentile(99.9) / 1e6));
+	}
+
+	/* value of an unlabelled sample in the Prometheus text format */
+	private static String sample(final String metrics, final String name) {
+		for (String line : metrics.split("\n")) {
+			if (line.startsWith(name + " ")) {
+				return line.substring(name.length() + 1).trim();
+			}
+		}
+		return "0";
+	}
+
+	private static int randomBit(final int mask) {
+		int n = ThreadLocalRandom.current().nextInt(Integer.bitCount(mask));
+		int m = mask;
+		for (int i = 0; i < n; i++) {
+			m &= m - 1;
+		}
+		return Integer.numberOfTrailingZeros(m);
+	}
+
+	private static boolean isWin(final int cells) {
+		for (int mask : WIN_MASKS) {
+			if ((cells & mask) == mask) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
@@ -0,0 +1,262 @@
+package ttt_backend;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.handler.PlatformHandler;
+import ttt_backend.metrics.Counter;
+import ttt_backend.metrics.Metrics;
+
+/**
+ *
+ * Admission control of the REST commands, decided before their body is
+ * read, so a rejected request costs no parsing and no work on the backend.
+ *
+ * Each client has a token bucket per endpoint, kept as the time its next
+ * request is due (the generic cell rate algorithm): a single long, updated
+ * with a CAS, with no timer. A request arriving more than a burst ahead of
+ * that time is rejected with 429 and a Retry-After. Clients are identified
+ * by their address, as the user ids are in the bodies, not read yet: the
+ * clients behind the same NAT or proxy share their buckets.
+ *
+ * The requests in progress are also limited overall: beyond the limit they
+ * are rejected at once with 503, so an overload sheds requests instead of
+ * queueing them on the event loops. Long polls (matchmake), which wait
+ * without working, are not counted.
+ *
+ * Rejections reply constant bodies; the buckets of the idle clients are
+ * dropped periodically.
+ *
+ */
+public class AdmissionControl {
+
+	private static final Logger logger = Logger.getLogger("[AdmissionControl]");
+
+	/* a rate limit: requests per second, and how many can arrive at once */
+	public record Limit(double perSecond, int burst) {}
+
+	/* the limit of the endpoints not listed */
+	public static final String DEFAULT = "default";
+
+	/* endpoint=requests per second/burst */
+	private static final Pattern LIMIT = Pattern.compile("(\\w+)\\s*=\\s*(\\d+(?:\\.\\d+)?)\\s*/\\s*(\\d{1,9})");
+
+	/* endpoints with a bucket, at most */
+	private static final int MAX_ENDPOINTS = 32;
+	private static final long SWEEP_INTERVAL_MS = 60_000;
+
+	private static final Buffer RATE_LIMITED = new JsonObject().put("result", "rate-limited").toBuffer();
+	private static final Buffer OVERLOADED = new JsonObject().put("result", "overloaded").toBuffer();
+	private static final CharSequence APPLICATION_JSON = HttpHeaders.createOptimized("application/json");
+	private static final CharSequence RETRY_AFTER = HttpHeaders.createOptimized("retry-after");
+	private static final CharSequence[] SECONDS = new CharSequence[61];
+	static {
+		for (int i = 0; i < SECONDS.length; i++) {
+			SECONDS[i] = HttpHeaders.createOptimized(String.valueOf(i));
+		}
+	}
+
+	private final Map<String, Limit> limits;
+	private final int maxInFlight;
+	/* time source of the buckets, in ns */
+	private final LongSupplier clock;
+	/* origin of the times of the buckets, so they are never negative */
+	private final long origin;
+
+	private final AtomicInteger inFlight;
+	private final Handler<AsyncResult<Void>> release;
+	/* time each client is due on each endpoint, in ns since the origin */
+	private final ConcurrentHashMap<String, AtomicLongArray> clients;
+	private final List<String> endpoints;
+
+	private final Metrics metrics;
+	private final Counter overloaded;
+
+	/**
+	 *
+	 * @param vertx
+	 * @param limits by endpoint name, or {@link #DEFAULT}; endpoints with no limit are not rate limited
+	 * @param maxInFlight requests in progress at most, 0 for no limit
+	 * @param metrics
+	 */
+	public AdmissionControl(final Vertx vertx, final Map<String, Limit> limits, final int maxInFlight,
+			final Metrics metrics) {
+		this(vertx, limits, maxInFlight, metrics, System::nanoTime);
+	}
+
+	AdmissionControl(final Vertx vertx, final Map<String, Limit> limits, final int maxInFlight,
+			final Metrics metrics, final LongSupplier clock) {
+		this.limits = limits;
+		this.maxInFlight = maxInFlight > 0 ? maxInFlight : Integer.MAX_VALUE;
+		this.clock = clock;
+		this.origin = clock.getAsLong();
+		this.inFlight = new AtomicInteger();
+		this.release = ar -> inFlight.decrementAndGet();
+		this.clients = new ConcurrentHashMap<>();
+		this.endpoints = new ArrayList<>();
+		this.metrics = metrics;
+		this.overloaded = metrics.counter("ttt_admission_rejected_total", "REST requests rejected before any work",
+				"reason=\"overloaded\"");
+		metrics.gauge("ttt_admission_in_flight", "REST requests in progress", inFlight::get);
+		metrics.gauge("ttt_admission_clients", "Clients with rate limit buckets", clients::size);
+		vertx.setPeriodic(SWEEP_INTERVAL_MS, id -> this.sweep());
+		logger.info("Admission control: " + limits + ", " + maxInFlight + " requests in progress at most");
+	}
+
+	/**
+	 *
+	 * Parse limits such as "default=20/40,registerUser=1/5" (requests per
+	 * second / burst), or "none"
+	 *
+	 * @param spec
+	 * @return the limits by endpoint name
+	 */
+	public static Map<String, Limit> parseLimits(final String spec) {
+		var limits = new HashMap<String, Limit>();
+		if (spec.isBlank() || spec.equals("none")) {
+			return limits;
+		}
+		for (String entry : spec.split(",", -1)) {
+			var limit = LIMIT.matcher(entry.trim());
+			if (!limit.matches()) {
+				throw new IllegalArgumentException("Invalid rate limit \"" + entry + "\" in \"" + spec
+						+ "\", expected endpoint=requests per second/burst");
+			}
+			double perSecond = Double.parseDouble(limit.group(2));
+			if (perSecond > 0) {
+				limits.put(limit.group(1), new Limit(perSecond, Integer.parseInt(limit.group(3))));
+			}
+		}
+		return limits;
+	}
+
+	/**
+	 *
+	 * The handler admitting the requests of an endpoint: admitted
+	 * requests go on to the next handler, the others get a reply
+	 *
+	 * @param name
+	 * @param longPoll if the requests wait without working, not counted as in progress
+	 * @return
+	 */
+	public PlatformHandler endpoint(final String name, final boolean longPoll) {
+		var limit = limits.getOrDefault(name, limits.get(DEFAULT));
+		return new Gate(name, limit == null ? -1 : this.indexOf(name), limit, !longPoll);
+	}
+
+	/* the same index for all the gates of an endpoint (one per event loop) */
+	private synchronized int indexOf(final String name) {
+		int i = endpoints.indexOf(name);
+		if (i < 0) {
+			if (endpoints.size() == MAX_ENDPOINTS) {
+				throw new IllegalStateException("Too many endpoints");
+			}
+			endpoints.add(name);
+			i = endpoints.size() - 1;
+		}
+		return i;
+	}
+
+	/* a platform handler, so that it can run before the body handler */
+	private final class Gate implements PlatformHandler {
+
+		/* index of the bucket in the arrays of the clients, -1 if not rate limited */
+		private final int bucket;
+		private final long intervalNanos;
+		private final long toleranceNanos;
+		private final boolean counted;
+		private final Counter rateLimited;
+
+		Gate(final String name, final int bucket, final Limit limit, final boolean counted) {
+			this.bucket = bucket;
+			this.intervalNanos = limit == null ? 0 : (long) (TimeUnit.SECONDS.toNanos(1) / limit.perSecond());
+			this.toleranceNanos = limit == null ? 0 : intervalNanos * (Math.max(1, limit.burst()) - 1);
+			this.counted = counted;
+			this.rateLimited = metrics.counter("ttt_admission_rejected_total",
+					"REST requests rejected before any work", "reason=\"rate-limited\",endpoint=\"" + name + "\"");
+		}
+
+		@Override
+		public void handle(final RoutingContext context) {
+			if (counted && inFlight.incrementAndGet() > maxInFlight) {
+				inFlight.decrementAndGet();
+				overloaded.inc();
+				reject(context, 503, OVERLOADED, 1);
+				return;
+			}
+			long wait = bucket < 0 ? 0 : this.acquire(client(context));
+			if (wait > 0) {
+				if (counted) {
+					inFlight.decrementAndGet();
+				}
+				rateLimited.inc();
+				reject(context, 429, RATE_LIMITED, TimeUnit.NANOSECONDS.toSeconds(wait - 1) + 1);
+				return;
+			}
+			if (counted) {
+				context.addEndHandler(release);
+			}
+			context.next();
+		}
+
+		/* 0 if admitted, else the nanoseconds to wait */
+		private long acquire(final AtomicLongArray due) {
+			long now = clock.getAsLong() - origin;
+			while (true) {
+				long next = due.get(bucket);
+				long start = Math.max(next, now);
+				if (start - now > toleranceNanos) {
+					return start - now - toleranceNanos;
+				}
+				if (due.compareAndSet(bucket, next, start + intervalNanos)) {
+					return 0;
+				}
+			}
+		}
+	}
+
+	private AtomicLongArray client(final RoutingContext context) {
+		var address = context.request().remoteAddress();
+		var key = address == null ? "" : address.hostAddress();
+		var due = clients.get(key);
+		return due != null ? due : clients.computeIfAbsent(key, k -> new AtomicLongArray(MAX_ENDPOINTS));
+	}
+
+	private static void reject(final RoutingContext context, final int status, final Buffer body, final long seconds) {
+		context.response()
+				.setStatusCode(status)
+				.putHeader(HttpHeaders.CONTENT_TYPE, APPLICATION_JSON)
+				.putHeader(RETRY_AFTER, seconds < SECONDS.length ? SECONDS[(int) seconds] : String.valueOf(seconds))
+				.end(body);
+	}
+
+	/* a client whose buckets are all full again is dropped: it would be admitted as a new one */
+	private void sweep() {
+		long now = clock.getAsLong() - origin;
+		clients.values().removeIf(due -> {
+			for (int i = 0; i < due.length(); i++) {
+				if (due.get(i) > now) {
+					return false;
+				}
+			}
+			return true;
+		});
+	}
+
+}
@@ -1,21 +1,118 @@
 package ttt_backend;
 
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.List;
+
+import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Future;
 import io.vertx.core.VerticleBase;
 import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.eventbus.EventBusOptions;
+import io.vertx.core.http.Http2Settings;
+import io.vertx.core.http.HttpServerOptions;
+import ttt_backend.metrics.Metrics;
 
 /**
  * @author emma.leonardi2 with help from Nicolò Guerra and Filippo Casadei
  */
 public class Application extends VerticleBase {
-	public static final int HTTP_PORT = 8080;
+	public static final int HTTP_PORT = Integer.getInteger("ttt.httpPort", 8080);
+	/* largest body of a REST command */
+	public static final long HTTP_MAX_BODY_BYTES = Long.getLong("ttt.http.maxBodyBytes", 4096);
+
+	/* HTTP/2 over cleartext (h2c) */
+	public static final boolean HTTP2_CLEAR_TEXT = Boolean
+			.parseBoolean(System.getProperty("ttt.http2.clearText", "true"));
+	public static final long HTTP2_MAX_STREAMS = Long.getLong("ttt.http2.maxConcurrentStreams", 256);
+
+	/* static files of the frontend, served under /public/ */
+	public static final String WEBROOT = System.getProperty("ttt.static.webroot", "webroot");
+	public static final String STATIC_CACHE_DIR = System.getProperty("ttt.static.cacheDir", "webroot-cache");
+	public static final long STATIC_MAX_AGE_SECONDS = Long.getLong("ttt.static.maxAgeSeconds", 3600);
+
+	/*
+	 * admission control of the REST commands: rate limits per client address and
+	 * endpoint, as "endpoint=requests per second/burst" ("default" for the others,
+	 * "none" for no limit, the default), e.g. "default=20/40,registerUser=1/5",
+	 * and requests in progress at most (0 for no limit)
+	 */
+	public static final String ADMISSION_LIMITS = System.getProperty("ttt.admission.limits", "none");
+	public static final int ADMISSION_MAX_IN_FLIGHT = Integer.getInteger("ttt.admission.maxInFlight", 1024);
+
+	/* group commit of the user registrations */
+	public static final long USERS_FLUSH_INTERVAL_MS = Long.getLong("ttt.users.flushIntervalMs", 5);
+	public static final int USERS_FLUSH_BATCH_SIZE = Integer.getInteger("ttt.users.flushBatchSize", 256);
+
+	/* where the commands wait for the user repository, and the threads used when there are no virtual threads */
+	public static final ThreadedUserRepo.Execution COMMANDS_EXECUTION = ThreadedUserRepo.Execution
+			.valueOf(System.getProperty("ttt.commands.execution", "EVENT_LOOP"));
+	public static final int COMMANDS_POOL_SIZE = Integer.getInteger("ttt.commands.poolSize", 64);
+
+	/* number of event loops serving requests and owning games */
+	public static final int EVENT_LOOPS = Integer.getInteger("ttt.eventLoops",
+			Runtime.getRuntime().availableProcessors());
+
+	/* fan-out of the events to slow WebSocket subscribers */
+	public static final WebSocketListener.SlowConsumerPolicy WS_SLOW_CONSUMER_POLICY = WebSocketListener.SlowConsumerPolicy
+			.valueOf(System.getProperty("ttt.ws.slowConsumerPolicy", "DROP_OLDEST"));
+	public static final int WS_MAX_QUEUED_EVENTS = Integer.getInteger("ttt.ws.maxQueuedEvents", 64);
+	public static final int WS_WRITE_QUEUE_MAX_BYTES = Integer.getInteger("ttt.ws.writeQueueMaxBytes", 16 * 1024);
+
+	/* 
+	 * clustered mode: number of nodes and index of this node, in 0..nodes-1.
+	 * Each node needs its own working directory (dbase files) and HTTP port.
+	 */
+	public static final int CLUSTER_NODES = Integer.getInteger("ttt.cluster.nodes", 1);
+	public static final int CLUSTER_NODE = Integer.getInteger("ttt.cluster.node", 0);
+	public static final String CLUSTER_HOST = System.getProperty("ttt.cluster.host", "localhost");
 
 	public Future<?> start() {
-		var server = vertx.createHttpServer();
-		var backend = new TTTBackend(vertx, new JsonDAO());
-		var restCommands = new RestCommands(vertx, backend, server, HTTP_PORT);
-		var webSocketAcceptor = new WebSocketAcceptor(server, backend);
-		return restCommands.start();
+		var partitioning = new ClusterPartitioning(CLUSTER_NODES, CLUSTER_NODE);
+		AsyncUserRepoInterface repo = new GroupCommitUserRepo(vertx,
+				new JournalDAO(Path.of("."), JournalDAO.DEFAULT_COMPACTION_THRESHOLD, partitioning),
+				USERS_FLUSH_INTERVAL_MS, USERS_FLUSH_BATCH_SIZE);
+		var games = new GameRegistry(partitioning);
+		var archive = new GameArchive(vertx);
+		games.allocateAfter(archive.lastGameNumber());
+		var metrics = new Metrics();
+		metrics.gauge("ttt_jvm_heap_used_bytes", "Heap in use",
+				() -> ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+		if (COMMANDS_EXECUTION == ThreadedUserRepo.Execution.VIRTUAL_THREADS) {
+			var threaded = new ThreadedUserRepo(vertx, repo, COMMANDS_POOL_SIZE);
+			metrics.gauge("ttt_repo_lookups_in_flight", "User lookups running off the event loops",
+					threaded::inFlight);
+			repo = threaded;
+		}
+		TTTBackend backend;
+		Future<?> ready;
+		if (partitioning.nodes() > 1) {
+			repo = new ClusteredUserRepo(vertx, repo, partitioning);
+			var node = new ClusteredBackend(vertx, repo, games, archive, metrics, partitioning);
+			ready = node.listen();
+			backend = node;
+		} else {
+			backend = new TTTBackend(vertx, repo, games, archive, metrics);
+			ready = Future.succeededFuture();
+		}
+		var admission = new AdmissionControl(vertx, AdmissionControl.parseLimits(ADMISSION_LIMITS),
+				ADMISSION_MAX_IN_FLIGHT, metrics);
+		Future<StaticAssets> assets = vertx.executeBlocking(() -> StaticAssets.load(Path.of(WEBROOT), "/public/",
+				Path.of(STATIC_CACHE_DIR), STATIC_MAX_AGE_SECONDS, metrics));
+		return ready.compose(v -> games.deploy(vertx, EVENT_LOOPS)).compose(v -> assets).compose(files ->
+			/* one instance per event loop, all sharing the same HTTP server port */
+			vertx.deployVerticle(() -> {
+				var server = vertx.createHttpServer(new HttpServerOptions()
+						.setWebSocketSubProtocols(List.of(WebSocketAcceptor.BINARY_SUBPROTOCOL))
+						/* HTTP/2 without TLS, both with prior knowledge and with an upgrade */
+						.setHttp2ClearTextEnabled(HTTP2_CLEAR_TEXT)
+						.setInitialSettings(new Http2Settings().setMaxConcurrentStreams(HTTP2_MAX_STREAMS)));
+				var webSocketAcceptor = new WebSocketAcceptor(server, backend, metrics, WS_SLOW_CONSUMER_POLICY,
+						WS_MAX_QUEUED_EVENTS, WS_WRITE_QUEUE_MAX_BYTES);
+				return new RestCommands(vertx, backend, server, HTTP_PORT, metrics, files, HTTP_MAX_BODY_BYTES,
+						admission);
+			}, new DeploymentOptions().setInstances(EVENT_LOOPS)));
 	}
 
 	/**
@@ -25,8 +122,17 @@ public class Application extends VerticleBase {
 	 * @param args
 	 */
 	public static void main(String[] args) {
-		var vertx = Vertx.vertx();
-		vertx.deployVerticle(new Application());
+		if (CLUSTER_NODES > 1) {
+			/* the cluster manager (Hazelcast, see cluster.xml) is found on the classpath */
+			Vertx.builder()
+					.with(new VertxOptions().setEventBusOptions(new EventBusOptions().setHost(CLUSTER_HOST)))
+					.buildClustered()
+					.compose(vertx -> vertx.deployVerticle(new Application()))
+					.onFailure(Throwable::printStackTrace);
+		} else {
+			var vertx = Vertx.vertx();
+			vertx.deployVerticle(new Application());
+		}
 	}
 
 }
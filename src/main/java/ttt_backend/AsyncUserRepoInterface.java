@@ -0,0 +1,73 @@
+package ttt_backend;
+
+import java.util.List;
+
+import io.vertx.core.Future;
+import ttt_backend.entities.User;
+import ttt_backend.entities.UserStats;
+
+/**
+ * 
+ * Non-blocking port of the user repository, usable from the event loop
+ * 
+ */
+public interface AsyncUserRepoInterface {
+
+    /**
+     * Add a new user
+     * 
+     * @param username
+     * @return a future completed once the user is durably stored
+     */
+    Future<User> addUser(final String username);
+
+    User getUserById(final String id);
+
+    /**
+     * Find a user, possibly stored elsewhere
+     * 
+     * @param id
+     * @return a future completed with the user, or null if there is no such user
+     */
+    default Future<User> findUserById(final String id) {
+        return Future.succeededFuture(this.getUserById(id));
+    }
+
+    int countUsers();
+
+    /**
+     * Find the users with a name starting with a prefix, ignoring case
+     * 
+     * @param prefix
+     * @param limit
+     * @return at most limit users, in name order
+     */
+    List<User> findUsersByPrefix(final String prefix, final int limit);
+
+    /**
+     * Find a user by name, ignoring case
+     * 
+     * @param name
+     * @return the first user registered with the name, or null if there is no such user
+     */
+    User findUserByName(final String name);
+
+    /**
+     * Store the results of some users, in background: the results
+     * saved last replace the previous ones
+     * 
+     * @param stats
+     */
+    default void saveStats(final List<UserStats> stats) {
+    }
+
+    /**
+     * The stored results of all the users who played, read at startup
+     * 
+     * @return
+     */
+    default List<UserStats> allStats() {
+        return List.of();
+    }
+
+}
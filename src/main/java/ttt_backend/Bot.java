@@ -0,0 +1,108 @@
+package ttt_backend;
+
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+import ttt_backend.entities.Game;
+import ttt_backend.entities.User;
+import ttt_backend.entities.Game.GameSymbolType;
+
+/**
+ *
+ * The server playing as an opponent, with the moves of {@link PerfectPlay}.
+ *
+ * A bot is a user with a reserved id, one per level (bot-easy, bot-medium,
+ * bot-hard, bot-perfect): ids of real users are always user-N, so they
+ * never clash and the bot of a game is known from its player only.
+ *
+ */
+public final class Bot {
+
+	private static final String ID_PREFIX = "bot-";
+
+	/* how often the bot chooses a suboptimal move, when there is one */
+	public enum Level {
+		EASY(0.6), MEDIUM(0.3), HARD(0.1), PERFECT(0);
+
+		private final double mistakes;
+		private final User user;
+
+		Level(final double mistakes) {
+			this.mistakes = mistakes;
+			var name = name().toLowerCase(Locale.ROOT);
+			this.user = new User(ID_PREFIX + name, "bot (" + name + ")");
+		}
+
+		public User user() {
+			return user;
+		}
+
+		/**
+		 *
+		 * Parse a level, e.g. "hard"
+		 *
+		 * @param level
+		 * @return
+		 * @throws IllegalArgumentException if it is not a level
+		 */
+		public static Level parse(final String level) {
+			return valueOf(level.toUpperCase(Locale.ROOT));
+		}
+	}
+
+	private Bot() {}
+
+	/**
+	 *
+	 * The level of the bot playing as a user
+	 *
+	 * @param user
+	 * @return the level, or null if the user is not a bot
+	 */
+	public static Level levelOf(final User user) {
+		if (user == null || !user.id().startsWith(ID_PREFIX)) {
+			return null;
+		}
+		for (Level level : Level.values()) {
+			if (level.user().id().equals(user.id())) {
+				return level;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 *
+	 * Choose the move of the player to move
+	 *
+	 * @param game an ongoing game
+	 * @param level
+	 * @return the index (y * 3 + x) of the cell
+	 */
+	public static int chooseMove(final Game game, final Level level) {
+		int cross = game.getCells(GameSymbolType.CROSS);
+		int circle = game.getCells(GameSymbolType.CIRCLE);
+		var moves = PerfectPlay.movesByOutcome(cross, circle);
+		int best = moves[PerfectPlay.WIN] != 0 ? moves[PerfectPlay.WIN]
+				: moves[PerfectPlay.DRAW] != 0 ? moves[PerfectPlay.DRAW] : moves[PerfectPlay.LOSS];
+		int others = (moves[PerfectPlay.WIN] | moves[PerfectPlay.DRAW] | moves[PerfectPlay.LOSS]) & ~best;
+		if (moves[PerfectPlay.WIN] != 0) {
+			/* of the winning moves, one ending the game now rather than later */
+			int now = PerfectPlay.winningMoves(cross, circle);
+			if (now != 0) {
+				best = now;
+			}
+		}
+		var random = ThreadLocalRandom.current();
+		boolean mistake = others != 0 && random.nextDouble() < level.mistakes;
+		return randomCell(mistake ? others : best, random);
+	}
+
+	private static int randomCell(int cells, final ThreadLocalRandom random) {
+		for (int k = random.nextInt(Integer.bitCount(cells)); k > 0; k--) {
+			cells &= cells - 1;
+		}
+		return Integer.numberOfTrailingZeros(cells);
+	}
+
+}
@@ -0,0 +1,66 @@
+package ttt_backend;
+
+/**
+ * 
+ * Partitioning of games and users over the nodes of a cluster.
+ * 
+ * The owner of a game (or a user) is its id number modulo the number 
+ * of nodes. Each node allocates the ids of the games and users it creates
+ * in its own residue class (node, node + nodes, node + 2 * nodes, ...),
+ * so ids are unique cluster-wide with no coordination and new games are
+ * owned by the node that creates them.
+ * 
+ * A single node is the partitioning with one node, owning everything.
+ * 
+ */
+public record ClusterPartitioning(int nodes, int node) {
+
+	public static final ClusterPartitioning SINGLE_NODE = new ClusterPartitioning(1, 0);
+
+	public ClusterPartitioning {
+		if (nodes < 1 || node < 0 || node >= nodes) {
+			throw new IllegalArgumentException("Invalid node " + node + " of " + nodes);
+		}
+	}
+
+	/**
+	 * 
+	 * Get the node owning an id, e.g. game-12 or user-7
+	 * 
+	 * @param id
+	 * @return the owner node, or -1 if the id is not valid
+	 */
+	public int ownerOf(final String id) {
+		long number = idNumber(id);
+		return number < 0 ? -1 : (int) (number % nodes);
+	}
+
+	public boolean isLocal(final String id) {
+		return this.ownerOf(id) == node;
+	}
+
+	/**
+	 * 
+	 * The n-th id number allocated by this node
+	 * 
+	 * @param n
+	 * @return
+	 */
+	public long localIdNumber(final long n) {
+		return n * nodes + node;
+	}
+
+	/* event bus address of the commands forwarded to a node */
+	public static String nodeAddress(final int node) {
+		return "ttt-node-" + node;
+	}
+
+	/* the number of a game or user id, parsed as by the shards and the indexes (see Ids), or -1 */
+	static long idNumber(final String id) {
+		if (id == null) {
+			return -1;
+		}
+		return id.startsWith(Ids.GAME) ? Ids.parse(Ids.GAME, id) : Ids.parse(Ids.USER, id);
+	}
+
+}
@@ -0,0 +1,245 @@
+package ttt_backend;
+
+import java.util.Optional;
+import java.util.function.IntFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.eventbus.ReplyFailure;
+import io.vertx.core.json.JsonObject;
+import ttt_backend.entities.GameRecord;
+import ttt_backend.entities.User;
+import ttt_backend.entities.Game.GameState;
+import ttt_backend.entities.Game.GameSymbolType;
+import ttt_backend.exceptions.GameNotFoundException;
+import ttt_backend.exceptions.InvalidJoinException;
+import ttt_backend.exceptions.InvalidMoveException;
+import ttt_backend.metrics.Metrics;
+
+/**
+ * 
+ * Back end of a node of a cluster.
+ * 
+ * Each game lives on the node owning its id (see {@link ClusterPartitioning}).
+ * Commands on a game owned by another node are forwarded to it, as
+ * request-reply messages on the clustered event bus, and this node serves
+ * the commands forwarded by the others.
+ * 
+ * The owner delivers the events of a game to its local subscribers and
+ * publishes them once on the clustered event bus, where each other node
+ * has a single consumer delivering them to its own local subscribers.
+ * So a WebSocket on any node receives the events of any game.
+ * 
+ */
+public class ClusteredBackend extends TTTBackend {
+
+	private static final Logger logger = Logger.getLogger("[ClusteredBackend]");
+
+	/* failure codes of the forwarded commands */
+	private static final int INVALID_JOIN = 1;
+	private static final int INVALID_MOVE = 2;
+	private static final int GAME_NOT_FOUND = 3;
+	private static final int ERROR = 500;
+
+	/* game events published for the other nodes */
+	private static final String EVENTS_ADDRESS = "ttt-events";
+	private static final String GAME_HEADER = "gameId";
+	private static final String NODE_HEADER = "node";
+
+	private final Vertx vertx;
+	private final AsyncUserRepoInterface repo;
+	private final ClusterPartitioning partitioning;
+
+	public ClusteredBackend(final Vertx vertx, final AsyncUserRepoInterface repo, final GameRegistry games,
+			final GameArchive archive, final Metrics metrics, final ClusterPartitioning partitioning) {
+		super(vertx, repo, games, archive, metrics);
+		this.vertx = vertx;
+		this.repo = repo;
+		this.partitioning = partitioning;
+	}
+
+	/**
+	 * 
+	 * Start serving the commands forwarded by the other nodes
+	 * 
+	 * @return
+	 */
+	public Future<Void> listen() {
+		var address = ClusterPartitioning.nodeAddress(partitioning.node());
+		logger.info("Node " + partitioning.node() + " of " + partitioning.nodes() + " listening on " + address);
+		var eb = vertx.eventBus();
+		return Future.all(eb.<JsonObject>consumer(address, this::serve).completion(),
+				eb.<GameEvent>consumer(EVENTS_ADDRESS, this::deliver).completion()).mapEmpty();
+	}
+
+	/* sent to the other nodes as numbered, under the lock of the event log, so in sequence order */
+	@Override
+	protected void publish(final String gameId, final IntFunction<GameEvent> event) {
+		super.publish(gameId, seq -> {
+			var ev = event.apply(seq);
+			vertx.eventBus().publish(EVENTS_ADDRESS, ev, new DeliveryOptions()
+					.addHeader(GAME_HEADER, gameId)
+					.addHeader(NODE_HEADER, String.valueOf(partitioning.node())));
+			return ev;
+		});
+	}
+
+	/* events published by the other nodes, to the local subscribers; each node keeps them to resume streams */
+	private void deliver(final Message<GameEvent> msg) {
+		if (!String.valueOf(partitioning.node()).equals(msg.headers().get(NODE_HEADER))) {
+			super.publishRemote(msg.headers().get(GAME_HEADER), msg.body());
+		}
+	}
+
+	@Override
+	public Future<Void> joinGame(final String userId, final String gameId, final GameSymbolType gameSymbol) {
+		if (this.isLocal(gameId)) {
+			return super.joinGame(userId, gameId, gameSymbol);
+		}
+		return this.forward(gameId, new JsonObject()
+				.put("op", "joinGame")
+				.put("userId", userId)
+				.put("gameId", gameId)
+				.put("symbol", gameSymbol.name())).mapEmpty();
+	}
+
+	@Override
+	public Future<Void> makeAMove(final String userId, final String gameId, final int x, final int y,
+			final GameSymbolType symbol) {
+		if (this.isLocal(gameId)) {
+			return super.makeAMove(userId, gameId, x, y, symbol);
+		}
+		return this.forward(gameId, new JsonObject()
+				.put("op", "makeAMove")
+				.put("userId", userId)
+				.put("gameId", gameId)
+				.put("x", x)
+				.put("y", y)
+				.put("symbol", symbol.name())).mapEmpty();
+	}
+
+	@Override
+	public Future<GameRecord> getGame(final String gameId) {
+		if (this.isLocal(gameId)) {
+			return super.getGame(gameId);
+		}
+		return this.forward(gameId, new JsonObject()
+				.put("op", "getGame")
+				.put("gameId", gameId)).map(ClusteredBackend::decode);
+	}
+
+	@Override
+	protected Future<Void> startIfReady(final String gameId) {
+		if (this.isLocal(gameId)) {
+			return super.startIfReady(gameId);
+		}
+		return this.forward(gameId, new JsonObject()
+				.put("op", "startIfReady")
+				.put("gameId", gameId)).mapEmpty();
+	}
+
+	/* Serving the commands forwarded to this node */
+
+	private void serve(final Message<JsonObject> msg) {
+		var cmd = msg.body();
+		Future<JsonObject> res;
+		try {
+			res = switch (cmd.getString("op")) {
+				case "joinGame" -> this.joinGame(cmd.getString("userId"), cmd.getString("gameId"),
+						GameSymbolType.valueOf(cmd.getString("symbol"))).map((JsonObject) null);
+				case "makeAMove" -> this.makeAMove(cmd.getString("userId"), cmd.getString("gameId"),
+						cmd.getInteger("x"), cmd.getInteger("y"), GameSymbolType.valueOf(cmd.getString("symbol")))
+						.map((JsonObject) null);
+				case "getGame" -> this.getGame(cmd.getString("gameId")).map(ClusteredBackend::encode);
+				case "startIfReady" -> this.startIfReady(cmd.getString("gameId")).map((JsonObject) null);
+				case "getUser" -> this.findLocalUser(cmd.getString("userId")).map(user -> user == null ? null
+						: new JsonObject().put("userId", user.id()).put("userName", user.name()));
+				default -> Future.failedFuture(new IllegalArgumentException("Unknown op " + cmd.getString("op")));
+			};
+		} catch (final Exception ex) {
+			res = Future.failedFuture(ex);
+		}
+		res.onComplete(r -> {
+			if (r.succeeded()) {
+				msg.reply(r.result());
+			} else {
+				msg.fail(failureCode(r.cause()), String.valueOf(r.cause().getMessage()));
+			}
+		});
+	}
+
+	/* Aux methods */
+
+	/* users owned by other nodes are never forwarded again */
+	private Future<User> findLocalUser(final String userId) {
+		return partitioning.isLocal(userId) ? repo.findUserById(userId) : Future.succeededFuture(null);
+	}
+
+	/* ids not owned by any node are handled locally, and fail as unknown games */
+	private boolean isLocal(final String gameId) {
+		int owner = partitioning.ownerOf(gameId);
+		return owner < 0 || owner == partitioning.node();
+	}
+
+	private Future<JsonObject> forward(final String gameId, final JsonObject cmd) {
+		var owner = ClusterPartitioning.nodeAddress(partitioning.ownerOf(gameId));
+		return vertx.eventBus().<JsonObject>request(owner, cmd)
+				.map(Message::body)
+				.recover(err -> Future.failedFuture(toException(err)));
+	}
+
+	private static int failureCode(final Throwable cause) {
+		if (cause instanceof InvalidJoinException) {
+			return INVALID_JOIN;
+		} else if (cause instanceof InvalidMoveException) {
+			return INVALID_MOVE;
+		} else if (cause instanceof GameNotFoundException) {
+			return GAME_NOT_FOUND;
+		} else {
+			logger.log(Level.WARNING, "Forwarded command failed", cause);
+			return ERROR;
+		}
+	}
+
+	/* the failure of the owner, as the exception of the command */
+	private static Throwable toException(final Throwable err) {
+		if (err instanceof ReplyException rex && rex.failureType() == ReplyFailure.RECIPIENT_FAILURE) {
+			switch (rex.failureCode()) {
+			case INVALID_JOIN:
+				return new InvalidJoinException();
+			case INVALID_MOVE:
+				return new InvalidMoveException();
+			case GAME_NOT_FOUND:
+				return new GameNotFoundException();
+			default:
+				return err;
+			}
+		}
+		return err;
+	}
+
+	private static JsonObject encode(final GameRecord game) {
+		var obj = new JsonObject()
+				.put("gameId", game.id())
+				.put("state", game.state().name())
+				.put("cross", game.crossUserId())
+				.put("circle", game.circleUserId())
+				.put("moves", game.moves())
+				.put("numMoves", game.numMoves());
+		game.winner().ifPresent(w -> obj.put("winner", w.name()));
+		return obj;
+	}
+
+	private static GameRecord decode(final JsonObject obj) {
+		var winner = obj.getString("winner");
+		return new GameRecord(obj.getString("gameId"), GameState.valueOf(obj.getString("state")),
+				obj.getString("cross"), obj.getString("circle"), obj.getLong("moves"), obj.getInteger("numMoves"),
+				winner == null ? Optional.empty() : Optional.of(GameSymbolType.valueOf(winner)));
+	}
+
+}
@@ -0,0 +1,85 @@
+package ttt_backend;
+
+import java.util.List;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.json.JsonObject;
+import ttt_backend.entities.User;
+import ttt_backend.entities.UserStats;
+
+/**
+ * 
+ * User repository of a cluster node.
+ * 
+ * Users are registered and stored on the node where they sign up, which
+ * owns their id. Users owned by other nodes are looked up on their owner,
+ * over the clustered event bus.
+ * 
+ */
+public class ClusteredUserRepo implements AsyncUserRepoInterface {
+
+	private final Vertx vertx;
+	private final AsyncUserRepoInterface local;
+	private final ClusterPartitioning partitioning;
+
+	public ClusteredUserRepo(final Vertx vertx, final AsyncUserRepoInterface local,
+			final ClusterPartitioning partitioning) {
+		this.vertx = vertx;
+		this.local = local;
+		this.partitioning = partitioning;
+	}
+
+	@Override
+	public Future<User> addUser(final String username) {
+		return local.addUser(username);
+	}
+
+	/* only the users of this node */
+	@Override
+	public User getUserById(final String id) {
+		return local.getUserById(id);
+	}
+
+	@Override
+	public Future<User> findUserById(final String id) {
+		int owner = partitioning.ownerOf(id);
+		if (owner < 0 || owner == partitioning.node()) {
+			return local.findUserById(id);
+		}
+		var cmd = new JsonObject().put("op", "getUser").put("userId", id);
+		return vertx.eventBus().<JsonObject>request(ClusterPartitioning.nodeAddress(owner), cmd)
+				.map(Message::body)
+				.map(obj -> obj == null ? null : new User(obj.getString("userId"), obj.getString("userName")));
+	}
+
+	/* only the users of this node */
+	@Override
+	public int countUsers() {
+		return local.countUsers();
+	}
+
+	/* only the users of this node */
+	@Override
+	public List<User> findUsersByPrefix(final String prefix, final int limit) {
+		return local.findUsersByPrefix(prefix, limit);
+	}
+
+	/* only the users of this node */
+	@Override
+	public User findUserByName(final String name) {
+		return local.findUserByName(name);
+	}
+
+	@Override
+	public void saveStats(final List<UserStats> stats) {
+		local.saveStats(stats);
+	}
+
+	@Override
+	public List<UserStats> allStats() {
+		return local.allStats();
+	}
+
+}
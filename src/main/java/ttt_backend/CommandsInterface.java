@@ -1,19 +1,96 @@
 package ttt_backend;
 
+import java.util.List;
+
+import io.vertx.core.Future;
 import ttt_backend.entities.Game.GameSymbolType;
+import ttt_backend.exceptions.GameNotFoundException;
 import ttt_backend.exceptions.InvalidJoinException;
 import ttt_backend.exceptions.InvalidMoveException;
+import ttt_backend.exceptions.UserNotFoundException;
 import ttt_backend.entities.Game;
+import ttt_backend.entities.GameRecord;
+import ttt_backend.entities.LobbyPage;
+import ttt_backend.entities.Match;
+import ttt_backend.entities.Standing;
 import ttt_backend.entities.User;
 
 public interface CommandsInterface {
 
-    User registerUser(final String username);
+    Future<User> registerUser(final String username);
+
+    /**
+     * Find the users with a name starting with a prefix, ignoring case
+     */
+    Future<List<User>> findUsers(final String prefix, final int limit);
+
+    /**
+     * Find a user by name, ignoring case
+     * 
+     * @return a future failed with {@link UserNotFoundException} if there is no such user
+     */
+    Future<User> findUserByName(final String username);
+
+    Future<Game> createNewGame();
+
+    /**
+     * Create a game against the server, which plays the other symbol
+     * 
+     * @return a future failed with {@link InvalidJoinException} if the user is not valid
+     */
+    Future<Game> createBotGame(final String userID, final GameSymbolType symbol, final Bot.Level level);
+
+    /**
+     * Join a game
+     * 
+     * @return a future failed with {@link InvalidJoinException} if the join is not valid
+     */
+    Future<Void> joinGame(final String userID, final String gameID, final GameSymbolType symbol);
+
+    /**
+     * Make a move in a game
+     * 
+     * @return a future failed with {@link InvalidMoveException} if the move is not valid
+     */
+    Future<Void> makeAMove(final String userID, final String gameID, final int x, final int y,
+            final GameSymbolType symbol);
+
+    /**
+     * Get a game, either ongoing or finished
+     * 
+     * @return a future failed with {@link GameNotFoundException} if there is no such game
+     */
+    Future<GameRecord> getGame(final String gameID);
+
+    /**
+     * Wait for an opponent: once paired, a game is created, joined by
+     * both users and started
+     * 
+     * @return a future failed with {@link InvalidJoinException} if the user is not valid
+     */
+    Future<Match> matchmake(final String userID);
+
+    /**
+     * Leave the matchmaking queue, if still waiting
+     */
+    void cancelMatchmaking(final String userID);
 
-    Game createNewGame();
+    /**
+     * A page of the games waiting for a player, in game id order
+     * 
+     * @param afterGameID the last id of the previous page, or null for the first page
+     */
+    Future<LobbyPage> getLobby(final String afterGameID, final int limit);
 
-    void joinGame(final String userID, final String gameID, final GameSymbolType symbol) throws InvalidJoinException;
+    /**
+     * The users with the most points, best first
+     */
+    Future<List<Standing>> getLeaderboard(final int limit);
 
-    void makeAMove(final String userID, final String gameID, final int x, final int y, final GameSymbolType symbol)
-            throws InvalidMoveException;
+    /**
+     * The results and the rank of a user
+     * 
+     * @return a future failed with {@link UserNotFoundException} if there is no such user
+     */
+    Future<Standing> getStanding(final String userID);
 }
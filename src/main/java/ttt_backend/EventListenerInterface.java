@@ -2,6 +2,6 @@ package ttt_backend;
 
 public interface EventListenerInterface {
 
-    void onEvent(String event);
+    void onEvent(String gameId, GameEvent event);
 
 }
@@ -0,0 +1,89 @@
+package ttt_backend;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ *
+ * Fenwick (binary indexed) tree counting values in 0..n, e.g. the users
+ * with a given number of points: adding a value and counting the values
+ * up to a bound both take O(log n).
+ *
+ * The capacity doubles as larger values are added. From a power of two
+ * capacity N to 2N, the new node 2N covers all the values and the other
+ * new nodes only values above N, so growing is a copy plus the total.
+ *
+ * Writes must be serialized by the caller; reads are lock free.
+ *
+ */
+public final class FenwickTree {
+
+	private static final int MIN_CAPACITY = 64;
+
+	/* node i (1-based) counts the values in (i - lowbit(i), i], value v being at i = v + 1 */
+	private volatile AtomicIntegerArray tree;
+
+	public FenwickTree() {
+		this.tree = new AtomicIntegerArray(MIN_CAPACITY + 1);
+	}
+
+	/**
+	 *
+	 * Add (or with a negative delta remove) occurrences of a value
+	 *
+	 * @param value a non-negative value
+	 * @param delta
+	 */
+	public void add(final int value, final int delta) {
+		var t = this.tree;
+		int capacity = t.length() - 1;
+		if (value >= capacity) {
+			t = this.grow(value);
+			capacity = t.length() - 1;
+		}
+		for (int i = value + 1; i <= capacity; i += i & -i) {
+			t.set(i, t.get(i) + delta);
+		}
+	}
+
+	/**
+	 *
+	 * Count the values not greater than a bound
+	 *
+	 * @param value
+	 * @return
+	 */
+	public int countUpTo(final int value) {
+		if (value < 0) {
+			return 0;
+		}
+		var t = this.tree;
+		int sum = 0;
+		for (int i = Math.min(value + 1, t.length() - 1); i > 0; i -= i & -i) {
+			sum += t.get(i);
+		}
+		return sum;
+	}
+
+	/* the number of values: the last node covers all of them */
+	public int count() {
+		var t = this.tree;
+		return t.get(t.length() - 1);
+	}
+
+	private AtomicIntegerArray grow(final int value) {
+		var t = this.tree;
+		int capacity = t.length() - 1;
+		while (capacity <= value) {
+			var larger = new AtomicIntegerArray(2 * capacity + 1);
+			for (int i = 1; i <= capacity; i++) {
+				larger.set(i, t.get(i));
+			}
+			larger.set(2 * capacity, t.get(capacity));
+			t = larger;
+			capacity *= 2;
+		}
+		this.tree = t;
+		return t;
+	}
+
+}
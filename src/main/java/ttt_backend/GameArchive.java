@@ -0,0 +1,182 @@
+package ttt_backend;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.logging.Logger;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.WorkerExecutor;
+import ttt_backend.entities.GameRecord;
+import ttt_backend.entities.Game.GameState;
+import ttt_backend.entities.Game.GameSymbolType;
+
+/**
+ *
+ * On-disk archive of the finished games.
+ *
+ * Each game is stored as a fixed-size binary record appended to the archive
+ * file. The index file is addressed by the game number: the slot of
+ * game-N, at offset N * 8, holds the position of its record plus one
+ * (zero meaning not archived), so a lookup costs two positioned reads.
+ *
+ * All the I/O runs on a dedicated worker thread.
+ *
+ */
+public class GameArchive {
+
+	/* db files */
+	static final String DB_ARCHIVE = "games.archive";
+	static final String DB_INDEX = "games.index";
+
+	/*
+	 * record layout:
+	 * game number (8), result (1), number of moves (1), moves (8),
+	 * cross user id (1 + 22), circle user id (1 + 22)
+	 */
+	static final int RECORD_SIZE = 64;
+	private static final int USER_ID_SIZE = 22;
+
+	private static final byte RESULT_TIE = 0;
+	private static final byte RESULT_CROSS = 1;
+	private static final byte RESULT_CIRCLE = 2;
+
+	private static final Logger logger = Logger.getLogger("[GameArchive]");
+
+	private final FileChannel archive;
+	private final FileChannel index;
+	private final WorkerExecutor io;
+
+	public GameArchive(final Vertx vertx) {
+		this(vertx, Path.of("."));
+	}
+
+	public GameArchive(final Vertx vertx, final Path dir) {
+		try {
+			this.archive = FileChannel.open(dir.resolve(DB_ARCHIVE), StandardOpenOption.CREATE,
+					StandardOpenOption.READ, StandardOpenOption.WRITE);
+			this.index = FileChannel.open(dir.resolve(DB_INDEX), StandardOpenOption.CREATE,
+					StandardOpenOption.READ, StandardOpenOption.WRITE);
+			logger.info("Archived games: " + archive.size() / RECORD_SIZE);
+		} catch (final IOException ex) {
+			throw new IllegalStateException("Cannot open the games archive", ex);
+		}
+		this.io = vertx.createSharedWorkerExecutor("ttt-game-archive", 1);
+	}
+
+	/**
+	 *
+	 * Append a finished game to the archive
+	 *
+	 * @param game
+	 * @return
+	 */
+	public Future<Void> archive(final GameRecord game) {
+		return io.executeBlocking(() -> {
+			this.write(game);
+			return null;
+		}, true);
+	}
+
+	/**
+	 *
+	 * Find an archived game
+	 *
+	 * @param gameId
+	 * @return
+	 */
+	public Future<Optional<GameRecord>> find(final String gameId) {
+		return io.executeBlocking(() -> this.read(gameId), false);
+	}
+
+	/**
+	 *
+	 * The highest number of the archived games: the slot of the last
+	 * game in the index is its last one
+	 *
+	 * @return the number, or -1 if no game is archived
+	 */
+	public long lastGameNumber() {
+		try {
+			return index.size() / 8 - 1;
+		} catch (final IOException ex) {
+			throw new IllegalStateException("Cannot read the games index", ex);
+		}
+	}
+
+	private void write(final GameRecord game) throws IOException {
+		long number = gameNumber(game.id());
+		if (number < 0) {
+			throw new IllegalArgumentException("Invalid game id: " + game.id());
+		}
+		var rec = ByteBuffer.allocate(RECORD_SIZE);
+		rec.putLong(number);
+		rec.put(game.winner().map(s -> s == GameSymbolType.CROSS ? RESULT_CROSS : RESULT_CIRCLE).orElse(RESULT_TIE));
+		rec.put((byte) game.numMoves());
+		rec.putLong(game.moves());
+		putUserId(rec, game.crossUserId());
+		putUserId(rec, game.circleUserId());
+		rec.flip();
+
+		long pos = archive.size();
+		archive.write(rec, pos);
+		var slot = ByteBuffer.allocate(8).putLong(0, pos + 1);
+		index.write(slot, number * 8);
+	}
+
+	private Optional<GameRecord> read(final String gameId) throws IOException {
+		long number = gameNumber(gameId);
+		if (number < 0 || number * 8 + 8 > index.size()) {
+			return Optional.empty();
+		}
+		var slot = ByteBuffer.allocate(8);
+		index.read(slot, number * 8);
+		long pos = slot.getLong(0) - 1;
+		if (pos < 0) {
+			return Optional.empty();
+		}
+		var rec = ByteBuffer.allocate(RECORD_SIZE);
+		archive.read(rec, pos);
+		rec.flip();
+		rec.getLong();
+		byte result = rec.get();
+		int numMoves = rec.get();
+		long moves = rec.getLong();
+		var crossUserId = getUserId(rec);
+		var circleUserId = getUserId(rec);
+		Optional<GameSymbolType> winner = result == RESULT_CROSS ? Optional.of(GameSymbolType.CROSS)
+				: result == RESULT_CIRCLE ? Optional.of(GameSymbolType.CIRCLE) : Optional.empty();
+		return Optional.of(new GameRecord(gameId, GameState.FINISHED, crossUserId, circleUserId, moves, numMoves,
+				winner));
+	}
+
+	/* Aux methods */
+
+	private static void putUserId(final ByteBuffer rec, final String userId) {
+		var bytes = userId.getBytes(StandardCharsets.UTF_8);
+		if (bytes.length > USER_ID_SIZE) {
+			throw new IllegalArgumentException("User id too long: " + userId);
+		}
+		rec.put((byte) bytes.length);
+		rec.put(bytes);
+		rec.position(rec.position() + USER_ID_SIZE - bytes.length);
+	}
+
+	private static String getUserId(final ByteBuffer rec) {
+		int len = rec.get();
+		var bytes = new byte[len];
+		rec.get(bytes);
+		rec.position(rec.position() + USER_ID_SIZE - len);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	static long gameNumber(final String gameId) {
+		return gameId == null ? -1 : Ids.parse(Ids.GAME, gameId);
+	}
+
+}
@@ -0,0 +1,267 @@
+package ttt_backend;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.WebSocketFrame;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import ttt_backend.entities.OpenGame;
+import ttt_backend.entities.Game.GameSymbolType;
+
+/**
+ * 
+ * An immutable game event, serialized once when it is created.
+ * 
+ * The same instance is delivered to all the subscribers of a game, 
+ * which write the shared encoded content without re-encoding it.
+ * 
+ * Besides JSON, each event has a compact binary encoding, used by the
+ * clients negotiating the binary subprotocol:
+ * game-started [1, seq], new-move [2, x, y, symbol, seq], game-ended [3, result, seq],
+ * resync [4, 0], where symbol is 1 for cross and 2 for circle, and result is 0 for tie
+ * or the symbol of the winner.
+ * 
+ * The events of a game carry their sequence number in the stream of the
+ * game ("seq" in JSON), from 1 and with no gaps, so a client can resume the
+ * stream after the last event it got (see {@link GameEventLog}), and tell a
+ * gap (events dropped for a slow subscriber). In the binary frames it ends
+ * the frame as an unsigned LEB128 varint: a single byte for the events of a game.
+ * 
+ * The lobby events carry the number of their game and the sequence number
+ * of the change, as 8 bytes big endian: game-opened [5, open, game, seq],
+ * where open has bit 1 set if cross is free and bit 2 if circle is free, and
+ * game-filled [6, game, seq].
+ * 
+ */
+public final class GameEvent {
+
+	/* event types of the binary encoding */
+	static final byte BIN_GAME_STARTED = 1;
+	static final byte BIN_NEW_MOVE = 2;
+	static final byte BIN_GAME_ENDED = 3;
+	static final byte BIN_RESYNC = 4;
+	static final byte BIN_GAME_OPENED = 5;
+	static final byte BIN_GAME_FILLED = 6;
+
+	/* compact JSON encoding of the event */
+	private final Buffer json;
+
+	/* binary encoding of the event */
+	private final Buffer binary;
+
+	/* position in the stream of the game, from 1; 0 for the events out of the streams (resync, lobby) */
+	private final int seq;
+
+	/* an event of the stream of a game: the binary encoding is followed by the seq */
+	private GameEvent(final JsonObject ev, final byte[] binary, final int seq) {
+		this(ev.toBuffer(), appendVarint(Buffer.buffer(binary.length + 5).appendBytes(binary), seq), seq);
+	}
+
+	GameEvent(final Buffer json, final Buffer binary, final int seq) {
+		this.json = json;
+		this.binary = binary;
+		this.seq = seq;
+	}
+
+	public static GameEvent gameStarted(final int seq) {
+		var ev = new JsonObject();
+		ev.put("event", "game-started");
+		ev.put("seq", seq);
+		return new GameEvent(ev, new byte[] { BIN_GAME_STARTED }, seq);
+	}
+
+	public static GameEvent newMove(final int x, final int y, final GameSymbolType symbol, final int seq) {
+		var ev = new JsonObject();
+		ev.put("event", "new-move");
+		ev.put("x", x);
+		ev.put("y", y);
+		ev.put("symbol", symbolName(symbol));
+		ev.put("seq", seq);
+		return new GameEvent(ev, new byte[] { BIN_NEW_MOVE, (byte) x, (byte) y, symbolCode(symbol) }, seq);
+	}
+
+	/**
+	 * 
+	 * Game ended event
+	 * 
+	 * @param winner the winner symbol, or null if tie
+	 * @param seq
+	 * @return
+	 */
+	public static GameEvent gameEnded(final GameSymbolType winner, final int seq) {
+		var ev = new JsonObject();
+		ev.put("event", "game-ended");
+		if (winner == null) {
+			ev.put("result", "tie");
+		} else {
+			ev.put("winner", symbolName(winner));
+		}
+		ev.put("seq", seq);
+		return new GameEvent(ev, new byte[] { BIN_GAME_ENDED, winner == null ? 0 : symbolCode(winner) }, seq);
+	}
+
+	/**
+	 * 
+	 * Resync event, replacing events dropped for a slow subscriber:
+	 * the client should fetch the state of the game
+	 * 
+	 * @param gameId
+	 * @return
+	 */
+	public static GameEvent resync(final String gameId) {
+		var ev = new JsonObject();
+		ev.put("event", "resync");
+		ev.put("gameId", gameId);
+		return new GameEvent(ev, new byte[] { BIN_RESYNC }, 0);
+	}
+
+	/**
+	 * 
+	 * Lobby event: a game is waiting for a player, or its free symbols
+	 * changed; it replaces the entry of the game, if listed
+	 * 
+	 * @param game
+	 * @param seq the sequence number of the change
+	 * @return
+	 */
+	public static GameEvent gameOpened(final OpenGame game, final long seq) {
+		var ev = new JsonObject();
+		ev.put("event", "game-opened");
+		ev.put("gameId", game.gameId());
+		game.crossUserId().ifPresent(id -> ev.put("cross", id));
+		game.circleUserId().ifPresent(id -> ev.put("circle", id));
+		ev.put("openSymbols", openSymbols(game));
+		ev.put("seq", seq);
+		int open = (game.isOpen(GameSymbolType.CROSS) ? 1 : 0) | (game.isOpen(GameSymbolType.CIRCLE) ? 2 : 0);
+		return new GameEvent(ev.toBuffer(), Buffer.buffer(17).appendByte(BIN_GAME_OPENED).appendByte((byte) open)
+				.appendLong(Ids.parse(Ids.GAME, game.gameId())).appendLong(seq), 0);
+	}
+
+	/**
+	 * 
+	 * Lobby event: a game is no longer waiting for a player
+	 * 
+	 * @param gameId
+	 * @param seq the sequence number of the change
+	 * @return
+	 */
+	public static GameEvent gameFilled(final String gameId, final long seq) {
+		var ev = new JsonObject();
+		ev.put("event", "game-filled");
+		ev.put("gameId", gameId);
+		ev.put("seq", seq);
+		return new GameEvent(ev.toBuffer(), Buffer.buffer(17).appendByte(BIN_GAME_FILLED)
+				.appendLong(Ids.parse(Ids.GAME, gameId)).appendLong(seq), 0);
+	}
+
+	/**
+	 * 
+	 * The free symbols of a game waiting for a player
+	 * 
+	 * @param game
+	 * @return
+	 */
+	public static JsonArray openSymbols(final OpenGame game) {
+		var open = new JsonArray();
+		if (game.isOpen(GameSymbolType.CROSS)) {
+			open.add(symbolName(GameSymbolType.CROSS));
+		}
+		if (game.isOpen(GameSymbolType.CIRCLE)) {
+			open.add(symbolName(GameSymbolType.CIRCLE));
+		}
+		return open;
+	}
+
+	/**
+	 * 
+	 * The encoded event
+	 * 
+	 * @return
+	 */
+	public Buffer json() {
+		return json;
+	}
+
+	/**
+	 * 
+	 * The binary encoded event
+	 * 
+	 * @return
+	 */
+	public Buffer binary() {
+		return binary;
+	}
+
+	/**
+	 * 
+	 * The position of the event in the stream of its game
+	 * 
+	 * @return from 1, or 0 if not part of the stream of a game
+	 */
+	public int seq() {
+		return seq;
+	}
+
+	/**
+	 * 
+	 * Check if this is the first event of a game
+	 * 
+	 * @return true for game-started
+	 */
+	public boolean startsGame() {
+		return binary.getByte(0) == BIN_GAME_STARTED;
+	}
+
+	/**
+	 * 
+	 * Check if this is the last event of a game
+	 * 
+	 * @return true for game-ended
+	 */
+	public boolean endsGame() {
+		return binary.getByte(0) == BIN_GAME_ENDED;
+	}
+
+	/**
+	 * 
+	 * A text frame sharing the encoded content of the event,
+	 * so that no bytes are copied or encoded per subscriber.
+	 * 
+	 * @return
+	 */
+	public WebSocketFrame toTextFrame() {
+		return SharedFrames.text(json);
+	}
+
+	/**
+	 * 
+	 * A binary frame sharing the binary encoding of the event
+	 * 
+	 * @return
+	 */
+	public WebSocketFrame toBinaryFrame() {
+		return SharedFrames.binary(binary);
+	}
+
+	@Override
+	public String toString() {
+		return json.toString();
+	}
+
+	private static Buffer appendVarint(final Buffer buffer, final int value) {
+		int v = value;
+		while ((v & ~0x7F) != 0) {
+			buffer.appendByte((byte) (v & 0x7F | 0x80));
+			v >>>= 7;
+		}
+		return buffer.appendByte((byte) v);
+	}
+
+	private static String symbolName(final GameSymbolType symbol) {
+		return symbol == GameSymbolType.CROSS ? "cross" : "circle";
+	}
+
+	private static byte symbolCode(final GameSymbolType symbol) {
+		return symbol == GameSymbolType.CROSS ? (byte) 1 : (byte) 2;
+	}
+
+}
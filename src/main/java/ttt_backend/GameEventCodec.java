@@ -0,0 +1,49 @@
+package ttt_backend;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.MessageCodec;
+
+/**
+ * 
+ * Event bus codec for game events.
+ * 
+ * Local deliveries pass the same immutable instance to all the consumers,
+ * instead of copying it for each of them.
+ * 
+ */
+public class GameEventCodec implements MessageCodec<GameEvent, GameEvent> {
+
+	@Override
+	public void encodeToWire(final Buffer buffer, final GameEvent ev) {
+		buffer.appendInt(ev.json().length());
+		buffer.appendBuffer(ev.json());
+		buffer.appendByte((byte) ev.binary().length());
+		buffer.appendBuffer(ev.binary());
+		buffer.appendInt(ev.seq());
+	}
+
+	@Override
+	public GameEvent decodeFromWire(final int pos, final Buffer buffer) {
+		int len = buffer.getInt(pos);
+		int binPos = pos + 4 + len;
+		int binLen = buffer.getByte(binPos);
+		return new GameEvent(buffer.getBuffer(pos + 4, binPos), buffer.getBuffer(binPos + 1, binPos + 1 + binLen),
+				buffer.getInt(binPos + 1 + binLen));
+	}
+
+	@Override
+	public GameEvent transform(final GameEvent ev) {
+		return ev;
+	}
+
+	@Override
+	public String name() {
+		return "ttt-game-event";
+	}
+
+	@Override
+	public byte systemCodecID() {
+		return -1;
+	}
+
+}
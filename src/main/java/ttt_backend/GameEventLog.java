@@ -0,0 +1,159 @@
+package ttt_backend;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+import io.vertx.core.Vertx;
+
+/**
+ *
+ * The last events of each game, by sequence number, so that a subscriber
+ * reconnecting after a network blip gets the events it missed instead of
+ * fetching the whole game.
+ *
+ * Each game has a ring of a fixed number of events, created with its
+ * first event. Sequence numbers are assigned, and the events stored and
+ * delivered, under the lock of the ring: the subscribers get the events of
+ * a game in sequence order. Replaying costs O(missed events). The ring of
+ * a game owned by this node is dropped some time after the game leaves its
+ * shard (see {@link #expire}); the ring of a game owned by another node,
+ * some time after its game-ended event.
+ *
+ */
+public class GameEventLog {
+
+	/* a game has at most 11 events (started, 9 moves, ended): all are kept */
+	public static final int DEFAULT_CAPACITY = 16;
+	public static final long DEFAULT_RETENTION_MS = 30_000;
+
+	private static final class Ring {
+		private final GameEvent[] events;
+		/* sequence number of the last event */
+		private int last;
+
+		Ring(final int capacity) {
+			this.events = new GameEvent[capacity];
+		}
+	}
+
+	private final Vertx vertx;
+	private final int capacity;
+	private final long retentionMs;
+	private final ConcurrentHashMap<String, Ring> games;
+
+	public GameEventLog(final Vertx vertx) {
+		this(vertx, DEFAULT_CAPACITY, DEFAULT_RETENTION_MS);
+	}
+
+	/**
+	 *
+	 * @param vertx
+	 * @param capacity events kept for each game
+	 * @param retentionMs how long the events of a game are kept after it is gone
+	 */
+	public GameEventLog(final Vertx vertx, final int capacity, final long retentionMs) {
+		this.vertx = vertx;
+		this.capacity = capacity;
+		this.retentionMs = retentionMs;
+		this.games = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 *
+	 * Append a new event to the stream of a game, and deliver it
+	 *
+	 * @param gameId
+	 * @param event the event, given its sequence number
+	 * @param deliver
+	 * @return the event
+	 */
+	public GameEvent append(final String gameId, final IntFunction<GameEvent> event, final Consumer<GameEvent> deliver) {
+		var ring = games.computeIfAbsent(gameId, id -> new Ring(capacity));
+		GameEvent ev;
+		synchronized (ring) {
+			ev = event.apply(ring.last + 1);
+			this.store(ring, ev);
+			deliver.accept(ev);
+		}
+		return ev;
+	}
+
+	/**
+	 *
+	 * Record an event numbered elsewhere (by the node owning the game),
+	 * and deliver it unless it is already recorded
+	 *
+	 * @param gameId
+	 * @param ev
+	 * @param deliver
+	 */
+	public void record(final String gameId, final GameEvent ev, final Consumer<GameEvent> deliver) {
+		var ring = games.computeIfAbsent(gameId, id -> new Ring(capacity));
+		synchronized (ring) {
+			if (ev.seq() <= ring.last) {
+				return;
+			}
+			this.store(ring, ev);
+			deliver.accept(ev);
+		}
+		if (ev.endsGame()) {
+			this.expire(gameId);
+		}
+	}
+
+	/**
+	 *
+	 * Drop the events of a game after the retention time, so that the
+	 * subscribers of a game just gone can still get its last events
+	 *
+	 * @param gameId
+	 */
+	public void expire(final String gameId) {
+		vertx.setTimer(retentionMs, id -> games.remove(gameId));
+	}
+
+	/**
+	 *
+	 * The events of a game after a sequence number
+	 *
+	 * @param gameId
+	 * @param lastSeq the sequence number of the last event received, 0 if none
+	 * @return the events in order, or null if they are no longer kept
+	 */
+	public List<GameEvent> since(final String gameId, final int lastSeq) {
+		var ring = games.get(gameId);
+		if (ring == null) {
+			/* no event yet, or dropped */
+			return lastSeq == 0 ? List.of() : null;
+		}
+		synchronized (ring) {
+			if (lastSeq < 0 || lastSeq > ring.last || lastSeq < ring.last - capacity) {
+				return null;
+			}
+			var missed = new ArrayList<GameEvent>(ring.last - lastSeq);
+			for (int seq = lastSeq + 1; seq <= ring.last; seq++) {
+				var ev = ring.events[seq % capacity];
+				if (ev == null || ev.seq() != seq) {
+					return null;
+				}
+				missed.add(ev);
+			}
+			return missed;
+		}
+	}
+
+	/* number of games with events kept */
+	public int games() {
+		return games.size();
+	}
+
+	/* events with gaps (lost on the event bus) are stored anyway: the ring only moves forward */
+	private void store(final Ring ring, final GameEvent ev) {
+		ring.events[ev.seq() % capacity] = ev;
+		ring.last = ev.seq();
+	}
+
+}
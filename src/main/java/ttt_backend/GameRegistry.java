@@ -0,0 +1,114 @@
+package ttt_backend;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+
+/**
+ * 
+ * Registry of the ongoing games, sharded by game id.
+ * 
+ * Each shard is a verticle instance, so shards are spread over the 
+ * event loops of Vert.x and each game is pinned to one of them.
+ * 
+ */
+public class GameRegistry {
+
+	private final List<GameShard> deployed;
+	private volatile GameShard[] shards;
+
+	/* counter to create ids, shared by all the event loops */
+	private final AtomicLong gamesIdCount;
+
+	/* number of games held by the shards */
+	private final LongAdder liveGames;
+
+	/* ids are allocated in the partition of this node */
+	private final ClusterPartitioning partitioning;
+
+	public GameRegistry() {
+		this(ClusterPartitioning.SINGLE_NODE);
+	}
+
+	public GameRegistry(final ClusterPartitioning partitioning) {
+		this.partitioning = partitioning;
+		this.deployed = new ArrayList<>();
+		this.shards = new GameShard[0];
+		this.gamesIdCount = new AtomicLong();
+		this.liveGames = new LongAdder();
+	}
+
+	/**
+	 * 
+	 * Deploy the shards
+	 * 
+	 * @param vertx
+	 * @param numShards
+	 * @return
+	 */
+	public Future<?> deploy(final Vertx vertx, final int numShards) {
+		return vertx.deployVerticle(this::newShard, new DeploymentOptions().setInstances(numShards))
+				.onSuccess(id -> {
+					synchronized (deployed) {
+						this.shards = deployed.toArray(new GameShard[0]);
+					}
+				});
+	}
+
+	private GameShard newShard() {
+		synchronized (deployed) {
+			var shard = new GameShard(deployed.size());
+			deployed.add(shard);
+			return shard;
+		}
+	}
+
+	/**
+	 * 
+	 * Allocate the next ids after a game number already used, e.g. by
+	 * the archived games, which stay queryable by id after a restart
+	 * 
+	 * @param number
+	 */
+	public void allocateAfter(final long number) {
+		if (number >= 0) {
+			gamesIdCount.accumulateAndGet(number / partitioning.nodes(), Math::max);
+		}
+	}
+
+	public String nextGameId() {
+		return Ids.format(Ids.GAME, partitioning.localIdNumber(gamesIdCount.incrementAndGet()));
+	}
+
+	public void gameAdded() {
+		liveGames.increment();
+	}
+
+	public void gameRemoved() {
+		liveGames.decrement();
+	}
+
+	public long liveGames() {
+		return liveGames.sum();
+	}
+
+	/**
+	 * 
+	 * Get the shard owning a game
+	 * 
+	 * @param gameId
+	 * @return
+	 */
+	public GameShard shardOf(final String gameId) {
+		var all = this.shards;
+		/* the ids of a node are dense once divided by the number of nodes */
+		long number = Math.max(0, Ids.parse(Ids.GAME, gameId));
+		return all[(int) ((number / partitioning.nodes()) % all.length)];
+	}
+
+}
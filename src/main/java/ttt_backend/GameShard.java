@@ -0,0 +1,115 @@
+package ttt_backend;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.VerticleBase;
+import io.vertx.core.Vertx;
+import ttt_backend.entities.Game;
+
+/**
+ * 
+ * A partition of the ongoing games, owned by a single event loop.
+ * 
+ * All the accesses to the games of the shard are executed on the
+ * context of the shard, so games are never mutated concurrently
+ * and need no locks.
+ * 
+ */
+public class GameShard extends VerticleBase {
+
+	/* an operation on the games of the shard */
+	@FunctionalInterface
+	public interface GameTask<T> {
+		T run(Games games) throws Exception;
+	}
+
+	/* 
+	 * Games of the shard, by id. The games are keyed by the number of 
+	 * their id, in a primitive map: no key object and no node per game.
+	 */
+	public static final class Games {
+
+		private final LongObjectMap<Game> games = new LongObjectMap<>();
+
+		public Game get(final String gameId) {
+			long key = Ids.parse(Ids.GAME, gameId);
+			return key < 0 ? null : games.get(key);
+		}
+
+		public void put(final String gameId, final Game game) {
+			long key = Ids.parse(Ids.GAME, gameId);
+			if (key < 0) {
+				throw new IllegalArgumentException("Invalid game id " + gameId);
+			}
+			games.put(key, game);
+		}
+
+		public Game remove(final String gameId) {
+			long key = Ids.parse(Ids.GAME, gameId);
+			return key < 0 ? null : games.remove(key);
+		}
+
+		public int size() {
+			return games.size();
+		}
+	}
+
+	private final int index;
+
+	/* games owned by this shard */
+	private final Games games;
+
+	public GameShard(final int index) {
+		this.index = index;
+		this.games = new Games();
+	}
+
+	public int getIndex() {
+		return index;
+	}
+
+	/**
+	 * 
+	 * Execute a task on the owning event loop of the shard.
+	 * 
+	 * The returned future is completed on the context of the caller.
+	 * 
+	 * @param task
+	 * @return
+	 */
+	public <T> Future<T> submit(final GameTask<T> task) {
+		var caller = Vertx.currentContext();
+		if (caller == this.context) {
+			try {
+				return Future.succeededFuture(task.run(games));
+			} catch (final Exception ex) {
+				return Future.failedFuture(ex);
+			}
+		}
+		Promise<T> promise = Promise.promise();
+		this.context.runOnContext(v -> {
+			try {
+				T res = task.run(games);
+				complete(caller, () -> promise.complete(res));
+			} catch (final Exception ex) {
+				complete(caller, () -> promise.fail(ex));
+			}
+		});
+		return promise.future();
+	}
+
+	private static void complete(final Context caller, final Runnable action) {
+		if (caller == null) {
+			action.run();
+		} else {
+			caller.runOnContext(v -> action.run());
+		}
+	}
+
+	@Override
+	public Future<?> start() {
+		return Future.succeededFuture();
+	}
+
+}
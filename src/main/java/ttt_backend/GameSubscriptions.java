@@ -0,0 +1,141 @@
+package ttt_backend;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+
+/**
+ *
+ * In-process registry of the subscribers to the events of the games.
+ *
+ * Each game has a copy-on-write array of subscribers: subscribing and
+ * unsubscribing copy the array, publishing just iterates over it.
+ * An event is delivered on the context of the subscriber, directly when
+ * published from that context.
+ *
+ * The subscribers of a game are removed when its game-ended event is
+ * published, or one by one when they unsubscribe (e.g. their socket is closed).
+ *
+ */
+public class GameSubscriptions {
+
+	private record Subscriber(EventListenerInterface listener, Context context) {}
+
+	private final ConcurrentHashMap<String, Subscriber[]> games;
+	private final LongAdder subscribers;
+
+	public GameSubscriptions() {
+		this.games = new ConcurrentHashMap<>();
+		this.subscribers = new LongAdder();
+	}
+
+	/**
+	 *
+	 * Subscribe a listener to the events of a game, delivered on the given context
+	 *
+	 * @param gameId
+	 * @param listener
+	 * @param context
+	 * @return false if the listener was already subscribed
+	 */
+	public boolean subscribe(final String gameId, final EventListenerInterface listener, final Context context) {
+		var added = new boolean[1];
+		games.compute(gameId, (id, subs) -> {
+			if (subs == null) {
+				added[0] = true;
+				return new Subscriber[] { new Subscriber(listener, context) };
+			}
+			if (indexOf(subs, listener) >= 0) {
+				return subs;
+			}
+			var copy = Arrays.copyOf(subs, subs.length + 1);
+			copy[subs.length] = new Subscriber(listener, context);
+			added[0] = true;
+			return copy;
+		});
+		if (added[0]) {
+			subscribers.increment();
+		}
+		return added[0];
+	}
+
+	/**
+	 *
+	 * Unsubscribe a listener from the events of a game
+	 *
+	 * @param gameId
+	 * @param listener
+	 */
+	public void unsubscribe(final String gameId, final EventListenerInterface listener) {
+		var removed = new boolean[1];
+		games.computeIfPresent(gameId, (id, subs) -> {
+			int i = indexOf(subs, listener);
+			if (i < 0) {
+				return subs;
+			}
+			removed[0] = true;
+			if (subs.length == 1) {
+				return null;
+			}
+			var copy = new Subscriber[subs.length - 1];
+			System.arraycopy(subs, 0, copy, 0, i);
+			System.arraycopy(subs, i + 1, copy, i, subs.length - i - 1);
+			return copy;
+		});
+		if (removed[0]) {
+			subscribers.decrement();
+		}
+	}
+
+	/**
+	 *
+	 * Deliver an event to the subscribers of a game.
+	 * After game-ended, the game has no subscribers anymore.
+	 *
+	 * @param gameId
+	 * @param event
+	 */
+	public void publish(final String gameId, final GameEvent event) {
+		var subs = games.get(gameId);
+		if (subs == null) {
+			return;
+		}
+		var current = Vertx.currentContext();
+		for (Subscriber s : subs) {
+			if (s.context() == current) {
+				s.listener().onEvent(gameId, event);
+			} else {
+				s.context().runOnContext(v -> s.listener().onEvent(gameId, event));
+			}
+		}
+		if (event.endsGame()) {
+			var removed = games.remove(gameId);
+			if (removed != null) {
+				subscribers.add(-removed.length);
+			}
+		}
+	}
+
+	/* number of subscriptions, over all the games */
+	public long subscribers() {
+		return subscribers.sum();
+	}
+
+	/* number of games with subscribers */
+	public int games() {
+		return games.size();
+	}
+
+	private static int indexOf(final Subscriber[] subs, final EventListenerInterface listener) {
+		for (int i = 0; i < subs.length; i++) {
+			if (subs[i].listener() == listener) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+}
@@ -0,0 +1,161 @@
+package ttt_backend;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.WorkerExecutor;
+import ttt_backend.entities.User;
+import ttt_backend.entities.UserStats;
+
+/**
+ *
+ * Write-behind adapter of the user repository.
+ *
+ * Registrations are collected in a queue and flushed in batches (group
+ * commits) on a dedicated worker thread, either every flush interval or as
+ * soon as a batch is full. Each caller is answered, on its own context,
+ * only once its user is durable. No blocking I/O runs on the event loop.
+ *
+ * The results of the users are saved the same way, in the order they are
+ * queued, with no caller waiting for them.
+ *
+ */
+public class GroupCommitUserRepo implements AsyncUserRepoInterface {
+
+	private static final Logger logger = Logger.getLogger("[GroupCommitUserRepo]");
+
+	/* a registration waiting to be flushed */
+	private record PendingUser(String username, Promise<User> promise, Context context) {}
+
+	private final Vertx vertx;
+	private final UserRepoInterface store;
+	private final int batchSize;
+
+	private final ConcurrentLinkedQueue<PendingUser> pending;
+	private final AtomicInteger pendingCount;
+	private final ConcurrentLinkedQueue<UserStats> pendingStats;
+
+	/* a single thread, so that group commits are serialized */
+	private final WorkerExecutor flusher;
+
+	public GroupCommitUserRepo(final Vertx vertx, final UserRepoInterface store, final long flushIntervalMs,
+			final int batchSize) {
+		this.vertx = vertx;
+		this.store = store;
+		this.batchSize = batchSize;
+		this.pending = new ConcurrentLinkedQueue<>();
+		this.pendingCount = new AtomicInteger();
+		this.pendingStats = new ConcurrentLinkedQueue<>();
+		this.flusher = vertx.createSharedWorkerExecutor("ttt-user-store", 1);
+		vertx.setPeriodic(flushIntervalMs, id -> {
+			this.flush();
+			this.flushStats();
+		});
+	}
+
+	@Override
+	public Future<User> addUser(final String username) {
+		var ctx = vertx.getOrCreateContext();
+		Promise<User> promise = Promise.promise();
+		pending.add(new PendingUser(username, promise, ctx));
+		if (pendingCount.incrementAndGet() >= batchSize) {
+			this.flush();
+		}
+		return promise.future();
+	}
+
+	@Override
+	public User getUserById(final String id) {
+		return store.getUserById(id);
+	}
+
+	@Override
+	public int countUsers() {
+		return store.countUsers();
+	}
+
+	@Override
+	public List<User> findUsersByPrefix(final String prefix, final int limit) {
+		return store.findUsersByPrefix(prefix, limit);
+	}
+
+	@Override
+	public User findUserByName(final String name) {
+		return store.findUserByName(name);
+	}
+
+	@Override
+	public void saveStats(final List<UserStats> stats) {
+		pendingStats.addAll(stats);
+	}
+
+	@Override
+	public List<UserStats> allStats() {
+		return store.allStats();
+	}
+
+	/**
+	 *
+	 * Drain up to a batch of pending registrations and commit them together
+	 *
+	 */
+	private void flush() {
+		var batch = new ArrayList<PendingUser>(Math.min(batchSize, Math.max(pendingCount.get(), 1)));
+		PendingUser p;
+		while (batch.size() < batchSize && (p = pending.poll()) != null) {
+			batch.add(p);
+		}
+		if (batch.isEmpty()) {
+			return;
+		}
+		pendingCount.addAndGet(-batch.size());
+		var names = new ArrayList<String>(batch.size());
+		for (PendingUser u : batch) {
+			names.add(u.username());
+		}
+		flusher.executeBlocking(() -> store.addUsers(names), true).onComplete(res -> {
+			if (res.succeeded()) {
+				List<User> users = res.result();
+				for (int i = 0; i < batch.size(); i++) {
+					var u = batch.get(i);
+					var user = users.get(i);
+					u.context().runOnContext(v -> u.promise().complete(user));
+				}
+			} else {
+				logger.log(Level.WARNING, "Group commit failed", res.cause());
+				for (PendingUser u : batch) {
+					u.context().runOnContext(v -> u.promise().fail(res.cause()));
+				}
+			}
+		});
+		/* more than a batch was waiting */
+		if (pendingCount.get() >= batchSize) {
+			this.flush();
+		}
+	}
+
+	/* save the queued results; only called by the timer, so the batches are saved in order */
+	private void flushStats() {
+		if (pendingStats.isEmpty()) {
+			return;
+		}
+		var stats = new ArrayList<UserStats>();
+		UserStats s;
+		while ((s = pendingStats.poll()) != null) {
+			stats.add(s);
+		}
+		flusher.executeBlocking(() -> {
+			store.saveStats(stats);
+			return null;
+		}, true).onFailure(ex -> logger.log(Level.WARNING, "Cannot save the results of " + stats.size() + " users", ex));
+	}
+
+}
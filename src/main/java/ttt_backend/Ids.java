@@ -0,0 +1,52 @@
+package ttt_backend;
+
+/**
+ *
+ * Ids of games and users: externally strings such as game-12 or user-7,
+ * internally their number, used as a dense numeric key.
+ *
+ */
+public final class Ids {
+
+	public static final String GAME = "game-";
+	public static final String USER = "user-";
+
+	/* 18 digits always fit a long */
+	private static final int MAX_DIGITS = 18;
+
+	private Ids() {}
+
+	public static String format(final String prefix, final long number) {
+		return prefix + number;
+	}
+
+	/**
+	 *
+	 * The number of an id in the canonical form prefix + number,
+	 * with no sign and no leading zeros, so that each number has one id only
+	 *
+	 * @param prefix
+	 * @param id
+	 * @return the number, or -1 if the id is not in the canonical form
+	 */
+	public static long parse(final String prefix, final String id) {
+		int len = id.length() - prefix.length();
+		if (len < 1 || len > MAX_DIGITS || !id.startsWith(prefix)) {
+			return -1;
+		}
+		int start = prefix.length();
+		if (id.charAt(start) == '0' && len > 1) {
+			return -1;
+		}
+		long n = 0;
+		for (int i = start; i < id.length(); i++) {
+			int d = id.charAt(i) - '0';
+			if (d < 0 || d > 9) {
+				return -1;
+			}
+			n = n * 10 + d;
+		}
+		return n;
+	}
+
+}
@@ -0,0 +1,473 @@
+package ttt_backend;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import ttt_backend.entities.User;
+import ttt_backend.entities.UserStats;
+
+/**
+ *
+ * User repository based on an append-only journal plus a periodic snapshot.
+ *
+ * Each new user is appended as a compact one-line record to the journal,
+ * so a registration costs O(1) instead of rewriting the whole dbase.
+ * When the journal grows beyond a threshold it is compacted in background
+ * into a new snapshot. At startup the latest snapshot is loaded and then
+ * the journal tail is replayed.
+ *
+ * The results of the users are stored in the same files, as records with
+ * the counters of a user: the last record of a user replaces the previous ones.
+ *
+ */
+public class JournalDAO implements UserRepoInterface {
+
+	/* db files */
+	static final String DB_SNAPSHOT = "users.snapshot";
+	static final String DB_JOURNAL = "users.journal";
+	static final String DB_JOURNAL_COMPACTING = "users.journal.compacting";
+
+	/* number of journal records triggering a compaction */
+	static final int DEFAULT_COMPACTION_THRESHOLD = 10_000;
+
+	private static final long CLOSE_TIMEOUT_SECONDS = 30;
+
+	private static final Logger logger = Logger.getLogger("[JournalDAO]");
+
+	private final Path snapshotFile;
+	private final Path journalFile;
+	private final Path compactingFile;
+	private final int compactionThreshold;
+	private final ClusterPartitioning partitioning;
+
+	/* list of registered users */
+	private final UserIndex users;
+	/* number of ids allocated by this node */
+	private int usersIdCount;
+	/* results of the users who played */
+	private final Map<String, UserStats> stats;
+
+	/* journal currently open for appending */
+	private FileOutputStream journalStream;
+	private Writer journal;
+	private int journalRecords;
+	private boolean compacting;
+
+	private final ExecutorService compactor;
+
+	public JournalDAO() {
+		this(Path.of("."), DEFAULT_COMPACTION_THRESHOLD);
+	}
+
+	public JournalDAO(final Path dir, final int compactionThreshold) {
+		this(dir, compactionThreshold, ClusterPartitioning.SINGLE_NODE);
+	}
+
+	public JournalDAO(final Path dir, final int compactionThreshold, final ClusterPartitioning partitioning) {
+		this.partitioning = partitioning;
+		this.snapshotFile = dir.resolve(DB_SNAPSHOT);
+		this.journalFile = dir.resolve(DB_JOURNAL);
+		this.compactingFile = dir.resolve(DB_JOURNAL_COMPACTING);
+		this.compactionThreshold = compactionThreshold;
+		this.users = new UserIndex(partitioning);
+		this.stats = new HashMap<>();
+		this.compactor = Executors.newSingleThreadExecutor(r -> {
+			var th = new Thread(r, "ttt-journal-compactor");
+			th.setDaemon(true);
+			return th;
+		});
+		this.initFromDB(dir);
+	}
+
+	private void initFromDB(final Path dir) {
+		try {
+			if (Files.exists(snapshotFile) || Files.exists(journalFile) || Files.exists(compactingFile)) {
+				this.replay(snapshotFile);
+				/*
+				 * a compaction interrupted by a crash (or failed) leaves its journal
+				 * segment behind: it is compacted now, before the journal is rotated again
+				 */
+				if (Files.exists(compactingFile)) {
+					this.replay(compactingFile);
+					this.writeSnapshot(users.users(), List.copyOf(stats.values()));
+					Files.delete(compactingFile);
+				}
+				this.journalRecords = this.replay(journalFile);
+				this.truncateTornRecord(journalFile);
+			} else {
+				this.importLegacyDB(dir.resolve(JsonDAO.DB_USERS));
+			}
+			/* indexed once loaded, rather than user by user */
+			this.users.indexNames();
+			this.openJournal();
+			logger.info("Loaded " + users.size() + " users, " + stats.size() + " with results");
+		} catch (final IOException ex) {
+			throw new IllegalStateException("Cannot open the users dbase", ex);
+		}
+	}
+
+	/**
+	 *
+	 * Replay a file of user records, one per line
+	 *
+	 * @param file
+	 * @return the number of records read
+	 * @throws IOException
+	 */
+	private int replay(final Path file) throws IOException {
+		if (!Files.exists(file)) {
+			return 0;
+		}
+		int count = 0;
+		try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = in.readLine()) != null) {
+				if (line.isEmpty()) {
+					continue;
+				}
+				try {
+					this.replayRecord(line);
+					count++;
+				} catch (final Exception ex) {
+					/* a torn last record after a crash */
+					logger.warning("Skipping corrupted record in " + file + ": " + line);
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 *
+	 * Cut a torn last record (a crash in the middle of a write) off a file,
+	 * so that the records appended next start on a line of their own
+	 *
+	 * @param file
+	 * @throws IOException
+	 */
+	private void truncateTornRecord(final Path file) throws IOException {
+		if (!Files.exists(file)) {
+			return;
+		}
+		try (var ch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			long size = ch.size();
+			var buf = ByteBuffer.allocate(4096);
+			long end = size;
+			/* the offset just past the last complete record */
+			long complete = 0;
+			search: while (end > 0) {
+				long start = Math.max(0, end - buf.capacity());
+				buf.clear().limit((int) (end - start));
+				while (buf.hasRemaining()) {
+					if (ch.read(buf, start + buf.position()) < 0) {
+						throw new IOException("Unexpected end of " + file);
+					}
+				}
+				for (int i = buf.limit() - 1; i >= 0; i--) {
+					if (buf.get(i) == '\n') {
+						complete = start + i + 1;
+						break search;
+					}
+				}
+				end = start;
+			}
+			if (complete < size) {
+				logger.warning("Truncating a torn record of " + (size - complete) + " bytes at the end of " + file);
+				ch.truncate(complete);
+				ch.force(true);
+			}
+		}
+	}
+
+	/**
+	 *
+	 * First start after JsonDAO: migrate the users.json content into a snapshot
+	 *
+	 * @param legacy
+	 * @throws IOException
+	 */
+	private void importLegacyDB(final Path legacy) throws IOException {
+		if (!Files.exists(legacy)) {
+			logger.info("No dbase, creating a new one");
+			return;
+		}
+		var array = new JsonArray(Files.readString(legacy, StandardCharsets.UTF_8));
+		for (int i = 0; i < array.size(); i++) {
+			var user = array.getJsonObject(i);
+			this.put(new User(user.getString("userId"), user.getString("userName")));
+		}
+		this.writeSnapshot(users.users(), List.of());
+		logger.info("Imported " + users.size() + " users from " + legacy);
+	}
+
+	private void replayRecord(final String line) {
+		var obj = new JsonObject(line);
+		if (obj.containsKey("wins")) {
+			var s = decodeStats(obj);
+			this.stats.put(s.userId(), s);
+		} else {
+			this.put(new User(obj.getString("userId"), obj.getString("userName")));
+		}
+	}
+
+	private void put(final User user) {
+		this.users.put(user);
+		long number = ClusterPartitioning.idNumber(user.id());
+		if (number >= 0) {
+			this.usersIdCount = Math.max(this.usersIdCount, (int) (number / partitioning.nodes()) + 1);
+		}
+	}
+
+	private void openJournal() throws IOException {
+		this.journalStream = new FileOutputStream(journalFile.toFile(), true);
+		this.journal = new BufferedWriter(new OutputStreamWriter(journalStream, StandardCharsets.UTF_8));
+	}
+
+	@Override
+	public synchronized User addUser(final String username) {
+		try {
+			var user = this.append(username);
+			journal.flush();
+			this.maybeCompact();
+			return user;
+		} catch (final IOException ex) {
+			throw new IllegalStateException("Cannot append to the users journal", ex);
+		}
+	}
+
+	/**
+	 *
+	 * Group commit: append all the users and sync the journal once
+	 *
+	 */
+	@Override
+	public synchronized List<User> addUsers(final List<String> usernames) {
+		try {
+			var list = new ArrayList<User>(usernames.size());
+			for (String name : usernames) {
+				list.add(this.append(name));
+			}
+			journal.flush();
+			journalStream.getChannel().force(false);
+			this.maybeCompact();
+			return list;
+		} catch (final IOException ex) {
+			throw new IllegalStateException("Cannot append to the users journal", ex);
+		}
+	}
+
+	private User append(final String username) throws IOException {
+		var newUserId = Ids.format(Ids.USER, partitioning.localIdNumber(usersIdCount));
+		var user = new User(newUserId, username);
+		journal.write(encode(user));
+		journal.write('\n');
+		this.users.put(user);
+		this.usersIdCount++;
+		this.journalRecords++;
+		return user;
+	}
+
+	private void maybeCompact() {
+		if (journalRecords >= compactionThreshold && !compacting) {
+			this.startCompaction();
+		}
+	}
+
+	/**
+	 *
+	 * Append the results of some users and sync the journal once
+	 *
+	 */
+	@Override
+	public synchronized void saveStats(final List<UserStats> updated) {
+		try {
+			for (UserStats s : updated) {
+				journal.write(encode(s));
+				journal.write('\n');
+				this.stats.put(s.userId(), s);
+				this.journalRecords++;
+			}
+			journal.flush();
+			journalStream.getChannel().force(false);
+			this.maybeCompact();
+		} catch (final IOException ex) {
+			throw new IllegalStateException("Cannot append to the users journal", ex);
+		}
+	}
+
+	@Override
+	public synchronized List<UserStats> allStats() {
+		return List.copyOf(stats.values());
+	}
+
+	@Override
+	public User getUserById(final String id) {
+		return this.users.get(id);
+	}
+
+	@Override
+	public int countUsers() {
+		return this.users.size();
+	}
+
+	@Override
+	public List<User> findUsersByPrefix(final String prefix, final int limit) {
+		return this.users.findByPrefix(prefix, limit);
+	}
+
+	@Override
+	public User findUserByName(final String name) {
+		return this.users.findByName(name);
+	}
+
+	/**
+	 *
+	 * Close the journal, once the background compaction (if any) is done:
+	 * the files can then be opened again
+	 *
+	 */
+	public void close() {
+		compactor.shutdown();
+		try {
+			if (!compactor.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+				logger.warning("Journal compaction still running at close");
+			}
+		} catch (final InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		synchronized (this) {
+			try {
+				journal.close();
+			} catch (final IOException ex) {
+				logger.log(Level.WARNING, "Cannot close the users journal", ex);
+			}
+		}
+	}
+
+	/**
+	 *
+	 * Rotate the journal and write a new snapshot in background.
+	 *
+	 * The current journal segment is renamed, so that new users keep being
+	 * appended to a fresh journal while the snapshot is written.
+	 *
+	 */
+	private void startCompaction() {
+		try {
+			journal.close();
+			if (Files.exists(compactingFile)) {
+				this.appendToCompacting();
+			} else {
+				Files.move(journalFile, compactingFile, StandardCopyOption.ATOMIC_MOVE);
+			}
+			this.openJournal();
+		} catch (final IOException ex) {
+			logger.log(Level.WARNING, "Journal rotation failed", ex);
+			try {
+				this.openJournal();
+			} catch (final IOException e) {
+				throw new IllegalStateException("Cannot reopen the users journal", e);
+			}
+			return;
+		}
+		this.compacting = true;
+		this.journalRecords = 0;
+		var view = users.users();
+		var statsView = List.copyOf(stats.values());
+		compactor.execute(() -> {
+			try {
+				this.writeSnapshot(view, statsView);
+				Files.deleteIfExists(compactingFile);
+				logger.info("Journal compacted - " + view.size() + " users");
+			} catch (final IOException ex) {
+				logger.log(Level.WARNING, "Journal compaction failed", ex);
+			} finally {
+				synchronized (this) {
+					this.compacting = false;
+				}
+			}
+		});
+	}
+
+	/*
+	 * The segment of a failed compaction is not in the snapshot yet: the
+	 * journal is appended to it rather than replacing it. A crash in between
+	 * leaves records in both, replayed twice to the same state.
+	 */
+	private void appendToCompacting() throws IOException {
+		try (var out = FileChannel.open(compactingFile, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+				var in = FileChannel.open(journalFile, StandardOpenOption.READ)) {
+			long size = in.size();
+			for (long pos = 0; pos < size;) {
+				pos += in.transferTo(pos, size - pos, out);
+			}
+			out.force(false);
+		}
+		Files.delete(journalFile);
+	}
+
+	private void writeSnapshot(final List<User> view, final List<UserStats> statsView) throws IOException {
+		var tmp = snapshotFile.resolveSibling(DB_SNAPSHOT + ".tmp");
+		try (var out = new FileOutputStream(tmp.toFile());
+				var writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+			for (User u : view) {
+				writer.write(encode(u));
+				writer.write('\n');
+			}
+			for (UserStats s : statsView) {
+				writer.write(encode(s));
+				writer.write('\n');
+			}
+			writer.flush();
+			out.getChannel().force(true);
+		}
+		Files.move(tmp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/* Aux methods */
+
+	static String encode(final User user) {
+		var obj = new JsonObject();
+		obj.put("userId", user.id());
+		obj.put("userName", user.name());
+		return obj.encode();
+	}
+
+	static String encode(final UserStats s) {
+		var obj = new JsonObject();
+		obj.put("userId", s.userId());
+		obj.put("userName", s.userName());
+		obj.put("wins", s.wins());
+		obj.put("losses", s.losses());
+		obj.put("ties", s.ties());
+		return obj.encode();
+	}
+
+	static UserStats decodeStats(final JsonObject obj) {
+		return new UserStats(obj.getString("userId"), obj.getString("userName"), obj.getInteger("wins"),
+				obj.getInteger("losses"), obj.getInteger("ties"));
+	}
+
+}
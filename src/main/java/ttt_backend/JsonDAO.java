@@ -3,7 +3,9 @@ package ttt_backend;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.FileWriter;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
@@ -80,4 +82,28 @@ public class JsonDAO implements UserRepoInterface {
 		return this.users.get(id);
 	}
 
+	@Override
+	public int countUsers() {
+		return this.users.size();
+	}
+
+	/* a scan of all the users */
+	@Override
+	public List<User> findUsersByPrefix(final String prefix, final int limit) {
+		return this.users.values().stream()
+				.filter(u -> u.name().regionMatches(true, 0, prefix, 0, prefix.length()))
+				.sorted(Comparator.comparing(User::name, String.CASE_INSENSITIVE_ORDER)
+						.thenComparing(u -> ClusterPartitioning.idNumber(u.id())))
+				.limit(limit)
+				.toList();
+	}
+
+	@Override
+	public User findUserByName(final String name) {
+		return this.users.values().stream()
+				.filter(u -> u.name().equalsIgnoreCase(name))
+				.min(Comparator.comparing(u -> ClusterPartitioning.idNumber(u.id())))
+				.orElse(null);
+	}
+
 }
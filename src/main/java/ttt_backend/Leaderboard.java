@@ -0,0 +1,164 @@
+package ttt_backend;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.logging.Logger;
+
+import ttt_backend.entities.Game;
+import ttt_backend.entities.Standing;
+import ttt_backend.entities.User;
+import ttt_backend.entities.UserStats;
+import ttt_backend.entities.Game.GameSymbolType;
+
+/**
+ *
+ * Results of the users across games, updated incrementally as games end.
+ *
+ * The users who played are kept in a skip list ordered by points (then by
+ * id), so the top K are read in O(log n + K), and the number of users with
+ * each number of points in a Fenwick tree, so the rank of a user is found
+ * in O(log n). Neither read scans the users.
+ *
+ * Updates are serialized by a lock held for a few operations in memory;
+ * reads take no lock, so they never delay the shards recording results.
+ * The counters are saved through the user repository, in update order.
+ *
+ * Games against the server (bots) are not counted.
+ *
+ */
+public class Leaderboard {
+
+	private static final Logger logger = Logger.getLogger("[Leaderboard]");
+
+	/* position in the skip list: more points first */
+	private record Position(int points, String userId) implements Comparable<Position> {
+		@Override
+		public int compareTo(final Position other) {
+			int c = Integer.compare(other.points, points);
+			return c != 0 ? c : userId.compareTo(other.userId);
+		}
+	}
+
+	private final AsyncUserRepoInterface repo;
+
+	/* current results, by user */
+	private final ConcurrentHashMap<String, UserStats> stats;
+	private final ConcurrentSkipListMap<Position, UserStats> standings;
+	/* number of users by points */
+	private final FenwickTree points;
+
+	public Leaderboard(final AsyncUserRepoInterface repo) {
+		this.repo = repo;
+		this.stats = new ConcurrentHashMap<>();
+		this.standings = new ConcurrentSkipListMap<>();
+		this.points = new FenwickTree();
+		for (UserStats s : repo.allStats()) {
+			this.update(stats.get(s.userId()), s);
+		}
+		logger.info("Leaderboard: " + stats.size() + " players");
+	}
+
+	/**
+	 *
+	 * Count the result of a finished game
+	 *
+	 * @param game
+	 */
+	public void recordResult(final Game game) {
+		var cross = game.getUser(GameSymbolType.CROSS).orElse(null);
+		var circle = game.getUser(GameSymbolType.CIRCLE).orElse(null);
+		if (cross == null || circle == null || Bot.levelOf(cross) != null || Bot.levelOf(circle) != null) {
+			return;
+		}
+		var winner = game.getWinner().orElse(null);
+		synchronized (this) {
+			var c = this.record(cross, winner == null ? 0 : winner == GameSymbolType.CROSS ? 1 : -1);
+			var o = this.record(circle, winner == null ? 0 : winner == GameSymbolType.CIRCLE ? 1 : -1);
+			/* queued under the lock, so the last saved counters are the current ones */
+			repo.saveStats(List.of(c, o));
+		}
+	}
+
+	/**
+	 *
+	 * The first users of the leaderboard
+	 *
+	 * @param limit
+	 * @return
+	 */
+	public List<Standing> top(final int limit) {
+		var list = new ArrayList<Standing>(Math.min(limit, 64));
+		int rank = 0;
+		int previousPoints = -1;
+		for (UserStats entry : standings.values()) {
+			if (list.size() == limit) {
+				break;
+			}
+			/* an entry being replaced by one with other points */
+			var s = stats.get(entry.userId());
+			if (s == null || s.points() != entry.points()) {
+				continue;
+			}
+			if (s.points() != previousPoints) {
+				rank = list.size() + 1;
+				previousPoints = s.points();
+			}
+			list.add(new Standing(rank, s));
+		}
+		return list;
+	}
+
+	/**
+	 *
+	 * The standing of a user
+	 *
+	 * @param userId
+	 * @return the standing, or null if the user has not played yet
+	 */
+	public Standing standingOf(final String userId) {
+		var s = stats.get(userId);
+		if (s == null) {
+			return null;
+		}
+		return new Standing(this.rankOf(s.points()), s);
+	}
+
+	/* 1 plus the users with more points */
+	public int rankOf(final int userPoints) {
+		return 1 + points.count() - points.countUpTo(userPoints);
+	}
+
+	public int players() {
+		return stats.size();
+	}
+
+	/* result: 1 win, 0 tie, -1 loss */
+	private UserStats record(final User user, final int result) {
+		var old = stats.get(user.id());
+		var s = old == null ? UserStats.none(user) : old;
+		var updated = result > 0 ? s.withWin() : result < 0 ? s.withLoss() : s.withTie();
+		this.update(old, updated);
+		return updated;
+	}
+
+	/*
+	 * The new entry is added before the current results are replaced and
+	 * the old entry removed, so readers see the user at every moment: they
+	 * skip the entries whose points are not the current ones.
+	 */
+	private void update(final UserStats old, final UserStats updated) {
+		var position = new Position(updated.points(), updated.userId());
+		standings.put(position, updated);
+		stats.put(updated.userId(), updated);
+		points.add(updated.points(), 1);
+		if (old != null) {
+			points.add(old.points(), -1);
+			if (old.points() != updated.points()) {
+				standings.remove(new Position(old.points(), old.userId()));
+			}
+		}
+	}
+
+}
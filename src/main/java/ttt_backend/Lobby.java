@@ -0,0 +1,121 @@
+package ttt_backend;
+
+import java.util.ArrayList;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.vertx.core.Context;
+import ttt_backend.entities.Game;
+import ttt_backend.entities.LobbyPage;
+import ttt_backend.entities.OpenGame;
+
+/**
+ *
+ * Index of the games waiting for a player, with the changes published to
+ * the lobby subscribers as game-opened and game-filled events.
+ *
+ * The games are kept in a skip list by game number, so a page is read in
+ * O(log n + page size) from the last id of the previous page, and stays
+ * consistent while games are opened and filled. Each change has a
+ * sequence number, taken after the index is updated: a page reports the
+ * last sequence number it includes, so a client applies the events with
+ * a greater one on top of the pages it read, and never misses a change.
+ *
+ * The changes of a game are made on the shard owning it, so they are
+ * published in order; the changes of different games are concurrent.
+ *
+ */
+public class Lobby {
+
+	/* subscriptions to the lobby, under this id */
+	private static final String LOBBY = "lobby";
+
+	private final ConcurrentSkipListMap<Long, OpenGame> games;
+	private final AtomicLong seq;
+	private final GameSubscriptions subscribers;
+
+	public Lobby() {
+		this.games = new ConcurrentSkipListMap<>();
+		this.seq = new AtomicLong();
+		this.subscribers = new GameSubscriptions();
+	}
+
+	/**
+	 *
+	 * Update the entry of a game: listed while waiting for a player
+	 * with a free symbol, removed otherwise
+	 *
+	 * @param game
+	 */
+	public void update(final Game game) {
+		if (game.getState() == Game.GameState.WAITING_PLAYER && !game.bothPlayersJoined()) {
+			var open = OpenGame.of(game);
+			games.put(number(game.getId()), open);
+			long n = seq.incrementAndGet();
+			/* the events are encoded only if there is someone to deliver them to */
+			if (subscribers.games() > 0) {
+				subscribers.publish(LOBBY, GameEvent.gameOpened(open, n));
+			}
+		} else if (games.remove(number(game.getId())) != null) {
+			long n = seq.incrementAndGet();
+			if (subscribers.games() > 0) {
+				subscribers.publish(LOBBY, GameEvent.gameFilled(game.getId(), n));
+			}
+		}
+	}
+
+	/**
+	 *
+	 * A page of the games waiting for a player
+	 *
+	 * @param afterGameId the last id of the previous page, or null for the first page
+	 * @param limit
+	 * @return
+	 */
+	public LobbyPage page(final String afterGameId, final int limit) {
+		/* read first: the page includes all the changes up to it */
+		long last = seq.get();
+		var tail = afterGameId == null ? games : games.tailMap(number(afterGameId), false);
+		var page = new ArrayList<OpenGame>(Math.min(limit, 64));
+		boolean more = false;
+		for (OpenGame g : tail.values()) {
+			if (page.size() == limit) {
+				more = true;
+				break;
+			}
+			page.add(g);
+		}
+		return new LobbyPage(page, last, more ? Optional.of(page.get(page.size() - 1).gameId()) : Optional.empty());
+	}
+
+	/**
+	 *
+	 * Deliver the changes of the lobby to a listener, on the given context
+	 *
+	 * @param listener
+	 * @param context
+	 * @return a sequence number: all the changes after it are delivered
+	 */
+	public long subscribe(final EventListenerInterface listener, final Context context) {
+		subscribers.subscribe(LOBBY, listener, context);
+		return seq.get();
+	}
+
+	public void unsubscribe(final EventListenerInterface listener) {
+		subscribers.unsubscribe(LOBBY, listener);
+	}
+
+	public int openGames() {
+		return games.size();
+	}
+
+	public long subscribers() {
+		return subscribers.subscribers();
+	}
+
+	private static long number(final String gameId) {
+		return Ids.parse(Ids.GAME, gameId);
+	}
+
+}
@@ -0,0 +1,137 @@
+package ttt_backend;
+
+/**
+ *
+ * Hash map with primitive long keys, with open addressing and linear probing.
+ *
+ * Keys and values are kept in two parallel arrays, so an entry costs two
+ * array slots, with no boxed key and no node object. Removals shift back the
+ * following entries of the probe sequence, so there are no tombstones.
+ *
+ * Not thread safe. Null values are not allowed.
+ *
+ */
+public final class LongObjectMap<V> {
+
+	private static final int MIN_CAPACITY = 16;
+
+	private long[] keys;
+	private Object[] values;
+	private int size;
+	/* size triggering a resize, at 2/3 of the capacity */
+	private int threshold;
+
+	public LongObjectMap() {
+		this.allocate(MIN_CAPACITY);
+	}
+
+	@SuppressWarnings("unchecked")
+	public V get(final long key) {
+		int mask = values.length - 1;
+		for (int i = slot(key, mask); values[i] != null; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				return (V) values[i];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 *
+	 * Associate a value to a key
+	 *
+	 * @param key
+	 * @param value not null
+	 * @return the previous value, or null
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(final long key, final V value) {
+		if (value == null) {
+			throw new IllegalArgumentException("Null value");
+		}
+		int mask = values.length - 1;
+		int i = slot(key, mask);
+		for (; values[i] != null; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				var prev = (V) values[i];
+				values[i] = value;
+				return prev;
+			}
+		}
+		keys[i] = key;
+		values[i] = value;
+		if (++size > threshold) {
+			this.rehash(values.length * 2);
+		}
+		return null;
+	}
+
+	/**
+	 *
+	 * Remove the value of a key
+	 *
+	 * @param key
+	 * @return the removed value, or null
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(final long key) {
+		int mask = values.length - 1;
+		int i = slot(key, mask);
+		for (; values[i] != null; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				var prev = (V) values[i];
+				this.shiftBack(i, mask);
+				size--;
+				return prev;
+			}
+		}
+		return null;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/* fill the hole at i with the following entries that cannot be found past it */
+	private void shiftBack(int hole, final int mask) {
+		for (int i = (hole + 1) & mask; values[i] != null; i = (i + 1) & mask) {
+			int home = slot(keys[i], mask);
+			/* the entry stays if its home is cyclically in (hole, i] */
+			if (((i - home) & mask) >= ((i - hole) & mask)) {
+				keys[hole] = keys[i];
+				values[hole] = values[i];
+				hole = i;
+			}
+		}
+		values[hole] = null;
+	}
+
+	private void rehash(final int capacity) {
+		var oldKeys = keys;
+		var oldValues = values;
+		this.allocate(capacity);
+		int mask = capacity - 1;
+		for (int j = 0; j < oldValues.length; j++) {
+			if (oldValues[j] != null) {
+				int i = slot(oldKeys[j], mask);
+				while (values[i] != null) {
+					i = (i + 1) & mask;
+				}
+				keys[i] = oldKeys[j];
+				values[i] = oldValues[j];
+			}
+		}
+	}
+
+	private void allocate(final int capacity) {
+		this.keys = new long[capacity];
+		this.values = new Object[capacity];
+		this.threshold = capacity / 3 * 2;
+	}
+
+	/* Fibonacci hashing: dense keys are spread over the table */
+	private static int slot(final long key, final int mask) {
+		return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+	}
+
+}
@@ -0,0 +1,59 @@
+package ttt_backend;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+
+/**
+ * 
+ * Lock-free pairing of waiting entries.
+ * 
+ * At most one entry waits at a time, in a single slot: an entry either 
+ * takes the waiting one, forming a pair, or becomes the waiting one.
+ * Both cases are a single compare-and-set, so concurrent callers from 
+ * different event loops never block each other.
+ * 
+ */
+public class Matchmaker<T> {
+
+	private final AtomicReference<T> waiting;
+
+	public Matchmaker() {
+		this.waiting = new AtomicReference<>();
+	}
+
+	/**
+	 * 
+	 * Offer an entry for pairing
+	 * 
+	 * @param entry
+	 * @return the waiting entry it is paired with, or null if the entry is now waiting
+	 */
+	public T offer(final T entry) {
+		while (true) {
+			T current = waiting.get();
+			if (current == null) {
+				if (waiting.compareAndSet(null, entry)) {
+					return null;
+				}
+			} else if (waiting.compareAndSet(current, null)) {
+				return current;
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * Remove the waiting entry, if it matches
+	 * 
+	 * @param filter
+	 * @return the removed entry, or null
+	 */
+	public T cancel(final Predicate<T> filter) {
+		T current = waiting.get();
+		if (current != null && filter.test(current) && waiting.compareAndSet(current, null)) {
+			return current;
+		}
+		return null;
+	}
+
+}
@@ -0,0 +1,179 @@
+package ttt_backend;
+
+import java.util.logging.Logger;
+
+/**
+ *
+ * Table of the outcome of every reachable tic-tac-toe position with
+ * perfect play, built once by a full minimax search.
+ *
+ * A position is indexed in base 3 (digit i is 0 for an empty cell i, 1 for
+ * cross, 2 for circle), and its outcome for the player to move is stored in
+ * 2 bits: the whole table takes 3^9 / 4 bytes, about 5 KB.
+ * The optimal moves of a position are then found with at most 9 lookups.
+ *
+ * Positions are given as two bitboards, as in Game: bit (y * 3 + x) is set
+ * if the cell is occupied by the player.
+ *
+ */
+public final class PerfectPlay {
+
+	/* outcomes for the player to move; 0 is an unreachable position */
+	public static final int LOSS = 1;
+	public static final int DRAW = 2;
+	public static final int WIN = 3;
+
+	private static final int CELLS = 9;
+	private static final int FULL_GRID = 0x1FF;
+	private static final int[] WIN_MASKS = {
+		0b000_000_111, 0b000_111_000, 0b111_000_000,
+		0b001_001_001, 0b010_010_010, 0b100_100_100,
+		0b100_010_001, 0b001_010_100
+	};
+	private static final int[] POW3 = { 1, 3, 9, 27, 81, 243, 729, 2187, 6561 };
+
+	private static final Logger logger = Logger.getLogger("[PerfectPlay]");
+
+	/* outcome of each position, 4 per byte */
+	private static final byte[] TABLE = new byte[(POW3[CELLS - 1] * 3 + 3) / 4];
+	private static final int POSITIONS;
+
+	static {
+		long start = System.nanoTime();
+		POSITIONS = search(0, 0, 0);
+		logger.info("Perfect play table: " + POSITIONS + " positions, " + TABLE.length + " bytes, built in "
+				+ (System.nanoTime() - start) / 1000 + " us");
+	}
+
+	private PerfectPlay() {}
+
+	/**
+	 *
+	 * Build the table, if not built yet
+	 *
+	 * @return the number of reachable positions
+	 */
+	public static int load() {
+		return POSITIONS;
+	}
+
+	/**
+	 *
+	 * Outcome of a position for the player to move
+	 *
+	 * @param cross
+	 * @param circle
+	 * @return LOSS, DRAW or WIN, or 0 if the position is not reachable
+	 */
+	public static int outcome(final int cross, final int circle) {
+		return get(index(cross, circle));
+	}
+
+	/**
+	 *
+	 * The moves of the player to move, grouped by the outcome they lead to
+	 *
+	 * @param cross
+	 * @param circle
+	 * @return the cells of the moves as bitmasks, indexed by outcome (LOSS, DRAW, WIN)
+	 */
+	public static int[] movesByOutcome(final int cross, final int circle) {
+		var moves = new int[WIN + 1];
+		int base = index(cross, circle);
+		/* cross moves first: same number of cells means cross to move */
+		int digit = Integer.bitCount(cross) == Integer.bitCount(circle) ? 1 : 2;
+		int free = ~(cross | circle) & FULL_GRID;
+		for (int cell = 0; cell < CELLS; cell++) {
+			if ((free & (1 << cell)) != 0) {
+				/* the outcome for the opponent, turned into the outcome for the mover */
+				int next = get(base + digit * POW3[cell]);
+				if (next != 0) {
+					moves[WIN + LOSS - next] |= 1 << cell;
+				}
+			}
+		}
+		return moves;
+	}
+
+	/**
+	 *
+	 * The moves completing a line for the player to move
+	 *
+	 * @param cross
+	 * @param circle
+	 * @return the cells of the moves as a bitmask
+	 */
+	public static int winningMoves(final int cross, final int circle) {
+		int mover = Integer.bitCount(cross) == Integer.bitCount(circle) ? cross : circle;
+		int free = ~(cross | circle) & FULL_GRID;
+		int moves = 0;
+		for (int cell = 0; cell < CELLS; cell++) {
+			int bit = 1 << cell;
+			if ((free & bit) != 0 && isWin(mover | bit)) {
+				moves |= bit;
+			}
+		}
+		return moves;
+	}
+
+	/* minimax from a position, filling the table; returns the number of new positions */
+	private static int search(final int cross, final int circle, final int index) {
+		if (get(index) != 0) {
+			return 0;
+		}
+		boolean crossToMove = Integer.bitCount(cross) == Integer.bitCount(circle);
+		int lastMover = crossToMove ? circle : cross;
+		int free = ~(cross | circle) & FULL_GRID;
+		if (isWin(lastMover)) {
+			set(index, LOSS);
+			return 1;
+		}
+		if (free == 0) {
+			set(index, DRAW);
+			return 1;
+		}
+		int count = 1;
+		int best = LOSS;
+		for (int cell = 0; cell < CELLS; cell++) {
+			int bit = 1 << cell;
+			if ((free & bit) != 0) {
+				int next = crossToMove ? index + POW3[cell] : index + 2 * POW3[cell];
+				count += crossToMove ? search(cross | bit, circle, next) : search(cross, circle | bit, next);
+				best = Math.max(best, WIN + LOSS - get(next));
+			}
+		}
+		set(index, best);
+		return count;
+	}
+
+	private static boolean isWin(final int cells) {
+		for (int mask : WIN_MASKS) {
+			if ((cells & mask) == mask) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static int index(final int cross, final int circle) {
+		int index = 0;
+		for (int cell = 0; cell < CELLS; cell++) {
+			int bit = 1 << cell;
+			if ((cross & bit) != 0) {
+				index += POW3[cell];
+			} else if ((circle & bit) != 0) {
+				index += 2 * POW3[cell];
+			}
+		}
+		return index;
+	}
+
+	private static int get(final int index) {
+		return (TABLE[index >> 2] >> ((index & 3) * 2)) & 3;
+	}
+
+	private static void set(final int index, final int outcome) {
+		TABLE[index >> 2] |= (byte) (outcome << ((index & 3) * 2));
+	}
+
+}
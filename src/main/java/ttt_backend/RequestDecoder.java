@@ -0,0 +1,443 @@
+package ttt_backend;
+
+import java.nio.charset.StandardCharsets;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import ttt_backend.entities.Game.GameSymbolType;
+import ttt_backend.exceptions.BadRequestException;
+
+/**
+ *
+ * Decoder of the bodies of the REST commands.
+ *
+ * The bodies are flat JSON objects with fixed fields, so they are scanned
+ * straight from the buffer into a small record: keys and symbols are matched
+ * on the bytes, numbers are parsed in place, and only the string values
+ * that are kept (ids, names) are allocated. Unknown fields are skipped,
+ * but their syntax is checked as the JSON parser would.
+ *
+ * Coordinates are accepted both as numbers and as strings, e.g. "x": 1 or "x": "1".
+ *
+ */
+public final class RequestDecoder {
+
+	public record RegisterUser(String userName) {}
+
+	public record JoinGame(String userId, String gameId, GameSymbolType symbol) {}
+
+	public record MakeAMove(String userId, String gameId, int x, int y, GameSymbolType symbol) {}
+
+	/* the field names, as bytes */
+	private static final byte[] USER_NAME = ascii("userName");
+	private static final byte[] USER_ID = ascii("userId");
+	private static final byte[] GAME_ID = ascii("gameId");
+	private static final byte[] SYMBOL = ascii("symbol");
+	private static final byte[] X = ascii("x");
+	private static final byte[] Y = ascii("y");
+
+	private static final byte[] CROSS = ascii("cross");
+	private static final byte[] CIRCLE = ascii("circle");
+
+	/* the literals of the skipped values */
+	private static final byte[] TRUE = ascii("true");
+	private static final byte[] FALSE = ascii("false");
+	private static final byte[] NULL = ascii("null");
+
+	/* nesting of the skipped values */
+	private static final int MAX_DEPTH = 16;
+
+	private final Buffer buf;
+	private final int end;
+	private int pos;
+	/* fields read so far */
+	private int fields;
+
+	/* bounds of the last key or string read, within the quotes */
+	private int tokenStart;
+	private int tokenEnd;
+	private boolean tokenEscaped;
+
+	private RequestDecoder(final Buffer buf) {
+		this.buf = buf;
+		this.end = buf.length();
+	}
+
+	public static RegisterUser registerUser(final Buffer body) throws BadRequestException {
+		var in = new RequestDecoder(body);
+		String userName = null;
+		in.beginObject();
+		while (in.nextField()) {
+			if (in.keyIs(USER_NAME)) {
+				userName = in.readString();
+			} else {
+				in.skipValue(0);
+			}
+		}
+		in.endOfInput();
+		return new RegisterUser(required(userName, "userName"));
+	}
+
+	public static JoinGame joinGame(final Buffer body) throws BadRequestException {
+		var in = new RequestDecoder(body);
+		String userId = null;
+		String gameId = null;
+		GameSymbolType symbol = null;
+		in.beginObject();
+		while (in.nextField()) {
+			if (in.keyIs(USER_ID)) {
+				userId = in.readString();
+			} else if (in.keyIs(GAME_ID)) {
+				gameId = in.readString();
+			} else if (in.keyIs(SYMBOL)) {
+				symbol = in.readSymbol();
+			} else {
+				in.skipValue(0);
+			}
+		}
+		in.endOfInput();
+		return new JoinGame(required(userId, "userId"), required(gameId, "gameId"), required(symbol, "symbol"));
+	}
+
+	public static MakeAMove makeAMove(final Buffer body) throws BadRequestException {
+		var in = new RequestDecoder(body);
+		String userId = null;
+		String gameId = null;
+		GameSymbolType symbol = null;
+		int x = -1;
+		int y = -1;
+		in.beginObject();
+		while (in.nextField()) {
+			if (in.keyIs(USER_ID)) {
+				userId = in.readString();
+			} else if (in.keyIs(GAME_ID)) {
+				gameId = in.readString();
+			} else if (in.keyIs(SYMBOL)) {
+				symbol = in.readSymbol();
+			} else if (in.keyIs(X)) {
+				x = in.readCoordinate("x");
+			} else if (in.keyIs(Y)) {
+				y = in.readCoordinate("y");
+			} else {
+				in.skipValue(0);
+			}
+		}
+		in.endOfInput();
+		if (x < 0 || y < 0) {
+			throw new BadRequestException("Missing field " + (x < 0 ? "x" : "y"));
+		}
+		return new MakeAMove(required(userId, "userId"), required(gameId, "gameId"), x, y,
+				required(symbol, "symbol"));
+	}
+
+	/**
+	 *
+	 * The body of a 4xx reply
+	 *
+	 * @param ex
+	 * @return
+	 */
+	public static JsonObject error(final BadRequestException ex) {
+		return new JsonObject().put("result", "bad-request").put("error", ex.getMessage());
+	}
+
+	/* Scanning */
+
+	private void beginObject() throws BadRequestException {
+		this.skipSpaces();
+		this.expect('{');
+	}
+
+	/* move to the value of the next field, reading its key; false at the end of the object */
+	private boolean nextField() throws BadRequestException {
+		this.skipSpaces();
+		int c = this.peek();
+		if (c == '}') {
+			pos++;
+			return false;
+		}
+		if (fields > 0) {
+			if (c != ',') {
+				throw this.error("Expected , or }");
+			}
+			pos++;
+			this.skipSpaces();
+			c = this.peek();
+		}
+		fields++;
+		if (c != '"') {
+			throw this.error("Expected a field name");
+		}
+		this.scanString();
+		this.skipSpaces();
+		this.expect(':');
+		this.skipSpaces();
+		return true;
+	}
+
+	private void endOfInput() throws BadRequestException {
+		this.skipSpaces();
+		if (pos != end) {
+			throw this.error("Unexpected content after the object");
+		}
+	}
+
+	private boolean keyIs(final byte[] key) throws BadRequestException {
+		if (tokenEscaped) {
+			return this.unescape().equals(new String(key, StandardCharsets.US_ASCII));
+		}
+		if (tokenEnd - tokenStart != key.length) {
+			return false;
+		}
+		for (int i = 0; i < key.length; i++) {
+			if (buf.getByte(tokenStart + i) != key[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private String readString() throws BadRequestException {
+		if (this.peek() != '"') {
+			throw this.error("Expected a string");
+		}
+		this.scanString();
+		if (!tokenEscaped) {
+			return buf.getString(tokenStart, tokenEnd, "UTF-8");
+		}
+		return this.unescape();
+	}
+
+	/* the last string read, with escapes: rare, so the JSON parser unescapes it */
+	private String unescape() throws BadRequestException {
+		try {
+			return new JsonArray(
+					"[" + buf.getString(tokenStart - 1, tokenEnd + 1, "UTF-8") + "]").getString(0);
+		} catch (final RuntimeException ex) {
+			throw this.error("Invalid string");
+		}
+	}
+
+	private GameSymbolType readSymbol() throws BadRequestException {
+		if (this.peek() != '"') {
+			throw this.error("Expected a symbol");
+		}
+		this.scanString();
+		if (this.keyIs(CROSS)) {
+			return GameSymbolType.CROSS;
+		} else if (this.keyIs(CIRCLE)) {
+			return GameSymbolType.CIRCLE;
+		}
+		throw new BadRequestException("The symbol must be cross or circle");
+	}
+
+	/* a non-negative int, as a number or as a string */
+	private int readCoordinate(final String field) throws BadRequestException {
+		boolean quoted = this.peek() == '"';
+		if (quoted) {
+			pos++;
+		}
+		int start = pos;
+		long value = 0;
+		while (pos < end && pos - start < 9) {
+			int d = buf.getByte(pos) - '0';
+			if (d < 0 || d > 9) {
+				break;
+			}
+			value = value * 10 + d;
+			pos++;
+		}
+		boolean valid = pos > start && (quoted ? this.next() == '"' : pos == end || isDelimiter(buf.getByte(pos)));
+		if (!valid) {
+			throw new BadRequestException("The field " + field + " must be an integer");
+		}
+		return (int) value;
+	}
+
+	/* skip a value of an unknown field */
+	private void skipValue(final int depth) throws BadRequestException {
+		if (depth > MAX_DEPTH) {
+			throw this.error("Too deeply nested");
+		}
+		int c = this.peek();
+		if (c == '"') {
+			this.scanString();
+		} else if (c == '{' || c == '[') {
+			int close = c == '{' ? '}' : ']';
+			pos++;
+			this.skipSpaces();
+			if (this.peek() == close) {
+				pos++;
+				return;
+			}
+			while (true) {
+				if (close == '}') {
+					this.skipSpaces();
+					if (this.peek() != '"') {
+						throw this.error("Expected a field name");
+					}
+					this.scanString();
+					this.skipSpaces();
+					this.expect(':');
+				}
+				this.skipSpaces();
+				this.skipValue(depth + 1);
+				this.skipSpaces();
+				int n = this.next();
+				if (n == close) {
+					return;
+				} else if (n != ',') {
+					throw this.error("Expected , or " + (char) close);
+				}
+			}
+		} else if (c == 't') {
+			this.skipLiteral(TRUE);
+		} else if (c == 'f') {
+			this.skipLiteral(FALSE);
+		} else if (c == 'n') {
+			this.skipLiteral(NULL);
+		} else {
+			this.skipNumber();
+		}
+	}
+
+	private void skipLiteral(final byte[] literal) throws BadRequestException {
+		for (byte b : literal) {
+			if (pos >= end || buf.getByte(pos) != b) {
+				throw this.error("Expected a value");
+			}
+			pos++;
+		}
+		this.endOfValue();
+	}
+
+	/* -?(0|[1-9][0-9]*)(.[0-9]+)?([eE][+-]?[0-9]+)? */
+	private void skipNumber() throws BadRequestException {
+		if (this.peek() == '-') {
+			pos++;
+		}
+		if (this.peek() == '0') {
+			pos++;
+		} else {
+			this.skipDigits();
+		}
+		if (pos < end && buf.getByte(pos) == '.') {
+			pos++;
+			this.skipDigits();
+		}
+		if (pos < end && (buf.getByte(pos) == 'e' || buf.getByte(pos) == 'E')) {
+			pos++;
+			if (pos < end && (buf.getByte(pos) == '+' || buf.getByte(pos) == '-')) {
+				pos++;
+			}
+			this.skipDigits();
+		}
+		this.endOfValue();
+	}
+
+	/* at least one digit */
+	private void skipDigits() throws BadRequestException {
+		int start = pos;
+		while (pos < end && buf.getByte(pos) >= '0' && buf.getByte(pos) <= '9') {
+			pos++;
+		}
+		if (pos == start) {
+			throw this.error("Expected a value");
+		}
+	}
+
+	private void endOfValue() throws BadRequestException {
+		if (pos < end && !isDelimiter(buf.getByte(pos))) {
+			throw this.error("Expected a value");
+		}
+	}
+
+	/* scan a string starting at pos, setting the token bounds */
+	private void scanString() throws BadRequestException {
+		pos++;
+		tokenStart = pos;
+		tokenEscaped = false;
+		while (pos < end) {
+			byte b = buf.getByte(pos);
+			if (b == '"') {
+				tokenEnd = pos++;
+				return;
+			}
+			if (b >= 0 && b < 0x20) {
+				throw this.error("Control character in a string");
+			}
+			if (b == '\\') {
+				tokenEscaped = true;
+				pos++;
+				this.skipEscape();
+			} else {
+				pos++;
+			}
+		}
+		throw this.error("Unterminated string");
+	}
+
+	/* the escape after a backslash */
+	private void skipEscape() throws BadRequestException {
+		int c = this.next();
+		if (c == 'u') {
+			for (int i = 0; i < 4; i++) {
+				if (Character.digit(this.next(), 16) < 0) {
+					throw this.error("Invalid unicode escape");
+				}
+			}
+		} else if ("\"\\/bfnrt".indexOf(c) < 0) {
+			throw this.error("Invalid escape");
+		}
+	}
+
+	private void skipSpaces() {
+		while (pos < end) {
+			byte b = buf.getByte(pos);
+			if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+				return;
+			}
+			pos++;
+		}
+	}
+
+	private int peek() throws BadRequestException {
+		if (pos >= end) {
+			throw this.error("Unexpected end of the body");
+		}
+		return buf.getByte(pos);
+	}
+
+	private int next() throws BadRequestException {
+		int c = this.peek();
+		pos++;
+		return c;
+	}
+
+	private void expect(final char c) throws BadRequestException {
+		if (this.next() != c) {
+			throw this.error("Expected " + c);
+		}
+	}
+
+	private BadRequestException error(final String message) {
+		return new BadRequestException(message + " at offset " + pos);
+	}
+
+	private static boolean isDelimiter(final byte b) {
+		return b == ',' || b == '}' || b == ']' || b == ' ' || b == '\n' || b == '\r' || b == '\t';
+	}
+
+	private static <T> T required(final T value, final String field) throws BadRequestException {
+		if (value == null) {
+			throw new BadRequestException("Missing field " + field);
+		}
+		return value;
+	}
+
+	private static byte[] ascii(final String s) {
+		return s.getBytes(StandardCharsets.US_ASCII);
+	}
+
+}
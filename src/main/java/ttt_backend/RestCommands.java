@@ -1,20 +1,32 @@
 package ttt_backend;
 
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import io.vertx.core.Future;
 import io.vertx.core.VerticleBase;
 import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.HttpMethod;
 import io.vertx.core.http.HttpServer;
 import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
-import io.vertx.ext.web.handler.StaticHandler;
+import io.vertx.ext.web.handler.BodyHandler;
 import ttt_backend.entities.Game;
+import ttt_backend.entities.OpenGame;
+import ttt_backend.entities.Standing;
+import ttt_backend.entities.User;
+import ttt_backend.exceptions.BadRequestException;
+import ttt_backend.exceptions.GameNotFoundException;
 import ttt_backend.exceptions.InvalidJoinException;
+import ttt_backend.exceptions.UserNotFoundException;
+import ttt_backend.metrics.Counter;
+import ttt_backend.metrics.LatencyHistogram;
+import ttt_backend.metrics.Metrics;
 
 public class RestCommands extends VerticleBase {
     static private final Logger logger = Logger.getLogger("[RestCommands]");
@@ -23,22 +35,97 @@ public class RestCommands extends VerticleBase {
     private final int port;
     private final HttpServer server;
 
+    /* replies of the moves, encoded once */
+    private static final Buffer MOVE_ACCEPTED = new JsonObject().put("result", "accepted").toBuffer();
+    private static final Buffer MOVE_INVALID = new JsonObject().put("result", "invalid-move").toBuffer();
+    private final StaticAssets assets;
+    private final long maxBodyBytes;
+    private final AdmissionControl admission;
+
+    /* size of the pages of users found */
+    private static final int DEFAULT_USERS_LIMIT = 20;
+    private static final int MAX_USERS_LIMIT = 100;
+
+    /* size of the lobby pages */
+    private static final int DEFAULT_LOBBY_LIMIT = 20;
+    private static final int MAX_LOBBY_LIMIT = 100;
+
+    /* size of the leaderboard pages */
+    private static final int DEFAULT_LEADERBOARD_LIMIT = 10;
+    private static final int MAX_LEADERBOARD_LIMIT = 100;
+
+    /* instrumentation, shared by all the instances */
+    private record Endpoint(Counter requests, LatencyHistogram latency) {}
+
+    private final Metrics metrics;
+    private final LatencyHistogram parseLatency;
+    private final Endpoint registerUser;
+    private final Endpoint findUsers;
+    private final Endpoint createGame;
+    private final Endpoint createBotGame;
+    private final Endpoint joinGame;
+    private final Endpoint makeAMove;
+    private final Endpoint getGame;
+    private final Endpoint matchmake;
+    private final Endpoint lobby;
+    private final Endpoint leaderboard;
+    private final Endpoint userStats;
+
     public RestCommands(final Vertx vertx, final CommandsInterface backend, final HttpServer server,
-            final int httpPort) {
+            final int httpPort, final Metrics metrics, final StaticAssets assets, final long maxBodyBytes,
+            final AdmissionControl admission) {
         this.vertx = vertx;
+        this.maxBodyBytes = maxBodyBytes;
+        this.admission = admission;
+        this.assets = assets;
         this.backend = backend;
         this.server = server;
         this.port = httpPort;
+        this.metrics = metrics;
+        this.parseLatency = metrics.histogram("ttt_stage_latency_seconds", "Latency of the stages of the request path",
+                "stage=\"parse\"");
+        this.registerUser = endpoint(metrics, "registerUser");
+        this.findUsers = endpoint(metrics, "findUsers");
+        this.createGame = endpoint(metrics, "createGame");
+        this.createBotGame = endpoint(metrics, "createBotGame");
+        this.joinGame = endpoint(metrics, "joinGame");
+        this.makeAMove = endpoint(metrics, "makeAMove");
+        this.getGame = endpoint(metrics, "getGame");
+        this.matchmake = endpoint(metrics, "matchmake");
+        this.lobby = endpoint(metrics, "lobby");
+        this.leaderboard = endpoint(metrics, "leaderboard");
+        this.userStats = endpoint(metrics, "userStats");
     }
 
     public Future<?> start() {
         logger.log(Level.INFO, "Rest Commands initializing...");
         var router = Router.router(this.vertx);
-        router.route(HttpMethod.POST, "/api/registerUser").handler(this::registerUser);
-        router.route(HttpMethod.POST, "/api/createGame").handler(this::createNewGame);
-        router.route(HttpMethod.POST, "/api/joinGame").handler(this::joinGame);
-        router.route(HttpMethod.POST, "/api/makeAMove").handler(this::makeAMove);
-        router.route("/public/*").handler(StaticHandler.create());
+        /* requests are admitted before their body is read, then bodies are aggregated, up to a limit (413 beyond) */
+        var body = BodyHandler.create(false).setBodyLimit(this.maxBodyBytes);
+        router.route(HttpMethod.POST, "/api/registerUser").handler(admission.endpoint("registerUser", false))
+                .handler(body).handler(this::registerUser);
+        router.route(HttpMethod.POST, "/api/createGame").handler(admission.endpoint("createGame", false))
+                .handler(body).handler(this::createNewGame);
+        router.route(HttpMethod.POST, "/api/createBotGame").handler(admission.endpoint("createBotGame", false))
+                .handler(body).handler(this::createBotGame);
+        router.route(HttpMethod.POST, "/api/joinGame").handler(admission.endpoint("joinGame", false))
+                .handler(body).handler(this::joinGame);
+        router.route(HttpMethod.POST, "/api/makeAMove").handler(admission.endpoint("makeAMove", false))
+                .handler(body).handler(this::makeAMove);
+        router.route(HttpMethod.POST, "/api/matchmake").handler(admission.endpoint("matchmake", true))
+                .handler(body).handler(this::matchmake);
+        router.route(HttpMethod.GET, "/api/games/:gameId").handler(admission.endpoint("getGame", false))
+                .handler(this::getGame);
+        router.route(HttpMethod.GET, "/api/users").handler(admission.endpoint("findUsers", false))
+                .handler(this::findUsers);
+        router.route(HttpMethod.GET, "/api/lobby").handler(admission.endpoint("lobby", false))
+                .handler(this::getLobby);
+        router.route(HttpMethod.GET, "/api/leaderboard").handler(admission.endpoint("leaderboard", false))
+                .handler(this::getLeaderboard);
+        router.route(HttpMethod.GET, "/api/users/:userId/stats").handler(admission.endpoint("userStats", false))
+                .handler(this::getUserStats);
+        router.route(HttpMethod.GET, "/metrics").handler(this::scrapeMetrics);
+        router.route("/public/*").method(HttpMethod.GET).method(HttpMethod.HEAD).handler(assets::handle);
         /* start the server */
 
         var fut = server
@@ -53,107 +140,397 @@ public class RestCommands extends VerticleBase {
     }
 
     public void registerUser(final RoutingContext context) {
-        logger.log(Level.INFO, "RegisterUser request");
-        context.request().handler(buf -> {
-            /* add the new user */
-            JsonObject userInfo = buf.toJsonObject();
-            var userName = userInfo.getString("userName");
-            var user = this.backend.registerUser(userName);
-            var reply = new JsonObject();
-            reply.put("userId", user.id());
-            reply.put("userName", user.name());
-            try {
-                this.sendReply(context.response(), reply);
-            } catch (final Exception ex) {
+        if (logger.isLoggable(Level.FINE)) {
+            logger.log(Level.FINE, "RegisterUser request");
+        }
+        registerUser.requests().inc();
+        long parseStart = System.nanoTime();
+        RequestDecoder.RegisterUser cmd;
+        try {
+            cmd = RequestDecoder.registerUser(body(context));
+        } catch (final BadRequestException ex) {
+            this.sendBadRequest(context.response(), ex);
+            return;
+        }
+        parseLatency.recordSince(parseStart);
+        long start = System.nanoTime();
+        /* add the new user */
+        this.backend.registerUser(cmd.userName()).onComplete(res -> {
+            registerUser.latency().recordSince(start);
+            if (res.succeeded()) {
+                var user = res.result();
+                var reply = new JsonObject();
+                reply.put("userId", user.id());
+                reply.put("userName", user.name());
+                try {
+                    this.sendReply(context.response(), reply);
+                } catch (final Exception ex) {
+                    this.sendError(context.response());
+                }
+            } else {
                 this.sendError(context.response());
             }
         });
     }
 
-    public void createNewGame(final RoutingContext context) {
-        var game = this.backend.createNewGame();
-        var reply = new JsonObject();
-        reply.put("gameId", game.getId());
+    /* users by name, e.g. /api/users?prefix=ann&limit=10 or /api/users?name=anna */
+    public void findUsers(final RoutingContext context) {
+        findUsers.requests().inc();
+        var request = context.request();
+        var prefix = request.getParam("prefix");
+        var name = request.getParam("name");
+        int limit;
         try {
-            this.sendReply(context.response(), reply);
-        } catch (final Exception ex) {
-            this.sendError(context.response());
+            limit = limit(request.getParam("limit"), DEFAULT_USERS_LIMIT, MAX_USERS_LIMIT);
+            if ((prefix == null) == (name == null)) {
+                throw new BadRequestException("Either prefix or name is required");
+            }
+        } catch (final BadRequestException ex) {
+            this.sendBadRequest(context.response(), ex);
+            return;
         }
+        long start = System.nanoTime();
+        Future<List<User>> found = prefix != null ? this.backend.findUsers(prefix, limit)
+                : this.backend.findUserByName(name).map(List::of)
+                        .recover(ex -> ex instanceof UserNotFoundException ? Future.succeededFuture(List.of())
+                                : Future.failedFuture(ex));
+        found.onComplete(res -> {
+            findUsers.latency().recordSince(start);
+            if (res.succeeded()) {
+                var list = new JsonArray();
+                for (User u : res.result()) {
+                    list.add(new JsonObject().put("userId", u.id()).put("userName", u.name()));
+                }
+                this.sendReply(context.response(), new JsonObject().put("users", list));
+            } else {
+                this.sendError(context.response());
+            }
+        });
     }
 
-    public void joinGame(final RoutingContext context) {
-        logger.log(Level.INFO, "JoinGame request - " + context.currentRoute().getPath());
-        context.request().handler(buf -> {
-            JsonObject joinInfo = buf.toJsonObject();
-            String userId = joinInfo.getString("userId");
-            String gameId = joinInfo.getString("gameId");
-            String symbol = joinInfo.getString("symbol");
-            var gameSym = symbol.equals("cross") ? Game.GameSymbolType.CROSS : Game.GameSymbolType.CIRCLE;
-            var reply = new JsonObject();
-            try {
-                this.backend.joinGame(userId, gameId, gameSym);
-                reply.put("result", "accepted");
+    public void createNewGame(final RoutingContext context) {
+        createGame.requests().inc();
+        long start = System.nanoTime();
+        this.backend.createNewGame().onComplete(res -> {
+            createGame.latency().recordSince(start);
+            if (res.succeeded()) {
+                var reply = new JsonObject();
+                reply.put("gameId", res.result().getId());
                 try {
                     this.sendReply(context.response(), reply);
-                    logger.log(Level.INFO, "Join succeeded");
                 } catch (final Exception ex) {
                     this.sendError(context.response());
                 }
+            } else {
+                this.sendError(context.response());
+            }
+        });
+    }
 
-            } catch (final InvalidJoinException e) {
+    /* a game against the server, started when the user subscribes to its events */
+    public void createBotGame(final RoutingContext context) {
+        createBotGame.requests().inc();
+        long parseStart = System.nanoTime();
+        String userId;
+        Game.GameSymbolType gameSym;
+        Bot.Level level;
+        try {
+            JsonObject info = body(context).toJsonObject();
+            userId = info.getString("userId");
+            gameSym = "cross".equals(info.getString("symbol")) ? Game.GameSymbolType.CROSS
+                    : Game.GameSymbolType.CIRCLE;
+            level = Bot.Level.parse(info.getString("level", "perfect"));
+        } catch (final Exception ex) {
+            this.sendBadRequest(context.response(), new BadRequestException("Invalid bot game request"));
+            return;
+        }
+        parseLatency.recordSince(parseStart);
+        long start = System.nanoTime();
+        this.backend.createBotGame(userId, gameSym, level).onComplete(res -> {
+            createBotGame.latency().recordSince(start);
+            var reply = new JsonObject();
+            if (res.succeeded()) {
+                reply.put("result", "accepted");
+                reply.put("gameId", res.result().getId());
+            } else if (res.cause() instanceof InvalidJoinException) {
                 reply.put("result", "denied");
-                try {
-                    this.sendReply(context.response(), reply);
-                    logger.log(Level.INFO, "Join failed");
-                } catch (final Exception ex2) {
-                    this.sendError(context.response());
-                }
+            } else {
+                this.sendError(context.response());
+                return;
             }
+            this.sendReply(context.response(), reply);
         });
     }
 
-    public void makeAMove(final RoutingContext context) {
-        logger.log(Level.INFO, "MakeAMove request - " + context.currentRoute().getPath());
-        context.request().handler(buf -> {
+    public void joinGame(final RoutingContext context) {
+        if (logger.isLoggable(Level.FINE)) {
+            logger.log(Level.FINE, "JoinGame request - " + context.currentRoute().getPath());
+        }
+        joinGame.requests().inc();
+        long parseStart = System.nanoTime();
+        RequestDecoder.JoinGame cmd;
+        try {
+            cmd = RequestDecoder.joinGame(body(context));
+        } catch (final BadRequestException ex) {
+            this.sendBadRequest(context.response(), ex);
+            return;
+        }
+        parseLatency.recordSince(parseStart);
+        long start = System.nanoTime();
+        this.backend.joinGame(cmd.userId(), cmd.gameId(), cmd.symbol()).onComplete(res -> {
+            joinGame.latency().recordSince(start);
             var reply = new JsonObject();
+            if (res.succeeded()) {
+                reply.put("result", "accepted");
+                logger.log(Level.FINE, "Join succeeded");
+            } else if (res.cause() instanceof InvalidJoinException) {
+                reply.put("result", "denied");
+                logger.log(Level.FINE, "Join failed");
+            } else {
+                this.sendError(context.response());
+                return;
+            }
             try {
-                JsonObject moveInfo = buf.toJsonObject();
-                logger.log(Level.INFO, "move info: " + moveInfo);
+                this.sendReply(context.response(), reply);
+            } catch (final Exception ex) {
+                this.sendError(context.response());
+            }
+        });
+    }
+
+    public void makeAMove(final RoutingContext context) {
+        if (logger.isLoggable(Level.FINE)) {
+            logger.log(Level.FINE, "MakeAMove request - " + context.currentRoute().getPath());
+        }
+        makeAMove.requests().inc();
+        long parseStart = System.nanoTime();
+        RequestDecoder.MakeAMove cmd;
+        try {
+            cmd = RequestDecoder.makeAMove(body(context));
+        } catch (final BadRequestException ex) {
+            this.sendBadRequest(context.response(), ex);
+            return;
+        }
+        if (logger.isLoggable(Level.FINE)) {
+            logger.log(Level.FINE, "move info: " + cmd);
+        }
+        parseLatency.recordSince(parseStart);
+        long start = System.nanoTime();
+        this.backend.makeAMove(cmd.userId(), cmd.gameId(), cmd.x(), cmd.y(), cmd.symbol()).onComplete(res -> {
+            makeAMove.latency().recordSince(start);
+            /* shared replies: nothing to encode per move */
+            this.sendReply(context.response(), res.succeeded() ? MOVE_ACCEPTED : MOVE_INVALID);
+        });
+    }
 
-                String userId = moveInfo.getString("userId");
-                String gameId = moveInfo.getString("gameId");
-                String symbol = moveInfo.getString("symbol");
-                int x = Integer.parseInt(moveInfo.getString("x"));
-                int y = Integer.parseInt(moveInfo.getString("y"));
+    /* long poll: the reply is sent once an opponent is found */
+    public void matchmake(final RoutingContext context) {
+        matchmake.requests().inc();
+        long parseStart = System.nanoTime();
+        String userId;
+        try {
+            userId = body(context).toJsonObject().getString("userId");
+        } catch (final RuntimeException ex) {
+            userId = null;
+        }
+        if (userId == null) {
+            this.sendBadRequest(context.response(), new BadRequestException("Missing field userId"));
+            return;
+        }
+        parseLatency.recordSince(parseStart);
+        long start = System.nanoTime();
+        var waiting = userId;
+        context.response().closeHandler(v -> this.backend.cancelMatchmaking(waiting));
+        this.backend.matchmake(userId).onComplete(res -> {
+            matchmake.latency().recordSince(start);
+            var reply = new JsonObject();
+            if (res.succeeded()) {
+                var match = res.result();
+                reply.put("result", "matched");
+                reply.put("gameId", match.gameId());
+                reply.put("symbol", match.symbol() == Game.GameSymbolType.CROSS ? "cross" : "circle");
+            } else if (res.cause() instanceof InvalidJoinException) {
+                reply.put("result", "denied");
+            } else {
+                this.sendError(context.response());
+                return;
+            }
+            this.sendReply(context.response(), reply);
+        });
+    }
 
-                var gameSym = symbol.equals("cross") ? Game.GameSymbolType.CROSS : Game.GameSymbolType.CIRCLE;
-                this.backend.makeAMove(userId, gameId, x, y, gameSym);
-                reply.put("result", "accepted");
-                try {
-                    this.sendReply(context.response(), reply);
-                } catch (final Exception ex) {
-                    this.sendError(context.response());
+    public void getGame(final RoutingContext context) {
+        var gameId = context.pathParam("gameId");
+        getGame.requests().inc();
+        long start = System.nanoTime();
+        this.backend.getGame(gameId).onComplete(res -> {
+            getGame.latency().recordSince(start);
+            if (res.succeeded()) {
+                var game = res.result();
+                var reply = new JsonObject();
+                reply.put("gameId", game.id());
+                reply.put("state", game.state().name().toLowerCase());
+                reply.put("cross", game.crossUserId());
+                reply.put("circle", game.circleUserId());
+                var moves = new JsonArray();
+                for (int i = 0; i < game.numMoves(); i++) {
+                    moves.add(new JsonObject().put("x", game.moveX(i)).put("y", game.moveY(i)));
                 }
+                reply.put("moves", moves);
+                if (game.state() == Game.GameState.FINISHED) {
+                    reply.put("winner", game.winner().map(s -> s == Game.GameSymbolType.CROSS ? "cross" : "circle")
+                            .orElse("tie"));
+                }
+                this.sendReply(context.response(), reply);
+            } else if (res.cause() instanceof GameNotFoundException) {
+                context.response().setStatusCode(404).end();
+            } else {
+                this.sendError(context.response());
+            }
+        });
+    }
 
-            } catch (final Exception ex) {
-                reply.put("result", "invalid-move");
-                try {
-                    this.sendReply(context.response(), reply);
-                } catch (final Exception ex2) {
-                    this.sendError(context.response());
+    /* a page of the games waiting for a player, e.g. /api/lobby?after=game-12&limit=20 */
+    public void getLobby(final RoutingContext context) {
+        lobby.requests().inc();
+        var after = context.request().getParam("after");
+        int limit;
+        try {
+            limit = limit(context.request().getParam("limit"), DEFAULT_LOBBY_LIMIT, MAX_LOBBY_LIMIT);
+            if (after != null && Ids.parse(Ids.GAME, after) < 0) {
+                throw new BadRequestException("Invalid game id " + after);
+            }
+        } catch (final BadRequestException ex) {
+            this.sendBadRequest(context.response(), ex);
+            return;
+        }
+        long start = System.nanoTime();
+        this.backend.getLobby(after, limit).onComplete(res -> {
+            lobby.latency().recordSince(start);
+            if (res.succeeded()) {
+                var page = res.result();
+                var games = new JsonArray();
+                for (OpenGame g : page.games()) {
+                    var entry = new JsonObject().put("gameId", g.gameId());
+                    g.crossUserId().ifPresent(id -> entry.put("cross", id));
+                    g.circleUserId().ifPresent(id -> entry.put("circle", id));
+                    games.add(entry.put("openSymbols", GameEvent.openSymbols(g)));
                 }
+                var reply = new JsonObject().put("games", games).put("seq", page.seq());
+                page.next().ifPresent(id -> reply.put("next", id));
+                this.sendReply(context.response(), reply);
+            } else {
+                this.sendError(context.response());
+            }
+        });
+    }
+
+    /* the first users, e.g. /api/leaderboard?limit=20 */
+    public void getLeaderboard(final RoutingContext context) {
+        leaderboard.requests().inc();
+        int limit;
+        try {
+            limit = limit(context.request().getParam("limit"), DEFAULT_LEADERBOARD_LIMIT, MAX_LEADERBOARD_LIMIT);
+        } catch (final BadRequestException ex) {
+            this.sendBadRequest(context.response(), ex);
+            return;
+        }
+        long start = System.nanoTime();
+        this.backend.getLeaderboard(limit).onComplete(res -> {
+            leaderboard.latency().recordSince(start);
+            if (res.succeeded()) {
+                var list = new JsonArray();
+                for (Standing s : res.result()) {
+                    list.add(encode(s));
+                }
+                this.sendReply(context.response(), new JsonObject().put("leaderboard", list));
+            } else {
+                this.sendError(context.response());
+            }
+        });
+    }
+
+    public void getUserStats(final RoutingContext context) {
+        var userId = context.pathParam("userId");
+        userStats.requests().inc();
+        long start = System.nanoTime();
+        this.backend.getStanding(userId).onComplete(res -> {
+            userStats.latency().recordSince(start);
+            if (res.succeeded()) {
+                this.sendReply(context.response(), encode(res.result()));
+            } else if (res.cause() instanceof UserNotFoundException) {
+                context.response().setStatusCode(404).end();
+            } else {
+                this.sendError(context.response());
             }
         });
+    }
 
+    public void scrapeMetrics(final RoutingContext context) {
+        context.response()
+                .putHeader("content-type", "text/plain; version=0.0.4")
+                .end(metrics.scrape());
     }
 
     /* Aux methods */
 
+    private static Endpoint endpoint(final Metrics metrics, final String name) {
+        var label = "endpoint=\"" + name + "\"";
+        return new Endpoint(
+                metrics.counter("ttt_http_requests_total", "REST requests received", label),
+                metrics.histogram("ttt_stage_latency_seconds", "Latency of the stages of the request path",
+                        "stage=\"command\"," + label));
+    }
+
+    /* the limit query parameter, in 1..max */
+    private static int limit(final String param, final int defaultLimit, final int max) throws BadRequestException {
+        if (param == null) {
+            return defaultLimit;
+        }
+        try {
+            int limit = Integer.parseInt(param);
+            if (limit >= 1 && limit <= max) {
+                return limit;
+            }
+        } catch (final NumberFormatException ex) {
+            /* reported below */
+        }
+        throw new BadRequestException("The limit must be in 1.." + max);
+    }
+
+    private static JsonObject encode(final Standing standing) {
+        var stats = standing.stats();
+        return new JsonObject()
+                .put("rank", standing.rank())
+                .put("userId", stats.userId())
+                .put("userName", stats.userName())
+                .put("points", stats.points())
+                .put("wins", stats.wins())
+                .put("losses", stats.losses())
+                .put("ties", stats.ties());
+    }
+
     private void sendReply(final HttpServerResponse response, final JsonObject reply) {
         response.putHeader("content-type", "application/json");
         response.end(reply.toString());
     }
 
+    private void sendReply(final HttpServerResponse response, final Buffer reply) {
+        response.putHeader("content-type", "application/json");
+        response.end(reply);
+    }
+
+    private void sendBadRequest(final HttpServerResponse response, final BadRequestException ex) {
+        response.setStatusCode(400);
+        this.sendReply(response, RequestDecoder.error(ex));
+    }
+
+    /* the body aggregated by the body handler, empty if none */
+    private static Buffer body(final RoutingContext context) {
+        var body = context.body().buffer();
+        return body == null ? Buffer.buffer() : body;
+    }
+
     private void sendError(final HttpServerResponse response) {
         response.setStatusCode(500);
         response.putHeader("content-type", "application/json");
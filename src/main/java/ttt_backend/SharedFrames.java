@@ -0,0 +1,73 @@
+package ttt_backend;
+
+import java.nio.charset.StandardCharsets;
+import java.util.logging.Logger;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.WebSocketFrame;
+import io.vertx.core.http.WebSocketFrameType;
+import io.vertx.core.http.impl.ws.WebSocketFrameImpl;
+import io.vertx.core.internal.buffer.BufferInternal;
+
+/**
+ *
+ * WebSocket frames sharing an encoded buffer, so that an event written to
+ * many sockets is neither copied nor encoded again for each of them.
+ *
+ * Binary frames use the public API, which wraps the buffer. The public API
+ * has no text frame made from a buffer, only from a String: text frames
+ * are made with the internal classes of Vert.x, in this class only.
+ * Checked with Vert.x 5.0.4: review it when upgrading Vert.x. If the
+ * internals are gone, text frames fall back to the public API, decoding
+ * the buffer each time.
+ *
+ */
+final class SharedFrames {
+
+	private static final Logger logger = Logger.getLogger("[SharedFrames]");
+
+	private static final boolean INTERNALS = probe();
+
+	private SharedFrames() {
+	}
+
+	/**
+	 *
+	 * A final text frame with the content of a buffer
+	 *
+	 * @param utf8 UTF-8 encoded text
+	 * @return
+	 */
+	static WebSocketFrame text(final Buffer utf8) {
+		if (INTERNALS) {
+			return internalText(utf8);
+		}
+		return WebSocketFrame.textFrame(utf8.toString(StandardCharsets.UTF_8), true);
+	}
+
+	/**
+	 *
+	 * A final binary frame with the content of a buffer
+	 *
+	 * @param data
+	 * @return
+	 */
+	static WebSocketFrame binary(final Buffer data) {
+		return WebSocketFrame.binaryFrame(data, true);
+	}
+
+	private static WebSocketFrame internalText(final Buffer utf8) {
+		return new WebSocketFrameImpl(WebSocketFrameType.TEXT, ((BufferInternal) utf8).getByteBuf(), true);
+	}
+
+	private static boolean probe() {
+		try {
+			var frame = internalText(Buffer.buffer("{}"));
+			return frame.isText() && "{}".equals(frame.textData());
+		} catch (final LinkageError | ClassCastException ex) {
+			logger.warning("Shared text frames not available, text events are encoded per socket: " + ex);
+			return false;
+		}
+	}
+
+}
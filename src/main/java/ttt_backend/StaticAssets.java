@@ -0,0 +1,198 @@
+package ttt_backend;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.MimeMapping;
+import io.vertx.ext.web.RoutingContext;
+import ttt_backend.metrics.Counter;
+import ttt_backend.metrics.Metrics;
+
+/**
+ *
+ * Static files of the web frontend, prepared once at startup.
+ *
+ * Each file gets strong ETags from the hash of its content and, if it
+ * compresses well, a gzip variant written to a cache directory (named by the
+ * hash, so it is reused across restarts until the file changes).
+ * Requests are then served with sendFile, with no compression or hashing
+ * per request, and revalidations with a matching ETag get a 304.
+ *
+ * The files are loaded with blocking I/O: call {@link #load} out of the event loops.
+ *
+ */
+public class StaticAssets {
+
+	private static final Logger logger = Logger.getLogger("[StaticAssets]");
+
+	/* variants saving less than this are not worth a Content-Encoding */
+	private static final double MIN_GZIP_SAVING = 0.1;
+
+	/* a file of the webroot */
+	private record Asset(String path, long length, String etag, String gzipPath, long gzipLength,
+			String gzipEtag, String contentType) {}
+
+	private final Map<String, Asset> assets;
+	/* path of the requests mapped to the webroot, e.g. /public/ */
+	private final String prefix;
+	private final String cacheControl;
+
+	/* instrumentation */
+	private final Counter served;
+	private final Counter gzipped;
+	private final Counter notModified;
+
+	private StaticAssets(final Map<String, Asset> assets, final String prefix, final long maxAgeSeconds,
+			final Metrics metrics) {
+		this.assets = assets;
+		this.prefix = prefix;
+		this.cacheControl = "public, max-age=" + maxAgeSeconds;
+		this.served = metrics.counter("ttt_static_responses_total", "Static files served", "status=\"200\"");
+		this.notModified = metrics.counter("ttt_static_responses_total", "Static files served", "status=\"304\"");
+		this.gzipped = metrics.counter("ttt_static_gzip_responses_total", "Static files served gzipped", "");
+	}
+
+	/**
+	 *
+	 * Prepare the files of a webroot
+	 *
+	 * @param webroot
+	 * @param prefix path of the requests mapped to the webroot, e.g. /public/
+	 * @param cacheDir where the gzip variants are written
+	 * @param maxAgeSeconds how long browsers can use a file before revalidating it
+	 * @param metrics
+	 * @return
+	 * @throws IOException
+	 */
+	public static StaticAssets load(final Path webroot, final String prefix, final Path cacheDir,
+			final long maxAgeSeconds, final Metrics metrics) throws IOException {
+		var assets = new HashMap<String, Asset>();
+		if (Files.isDirectory(webroot)) {
+			Files.createDirectories(cacheDir);
+			try (Stream<Path> files = Files.walk(webroot)) {
+				for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+					var name = webroot.relativize(file).toString().replace('\\', '/');
+					assets.put(name, prepare(file, cacheDir));
+				}
+			}
+		}
+		logger.info("Static assets: " + assets.size() + " files from " + webroot.toAbsolutePath());
+		return new StaticAssets(Map.copyOf(assets), prefix, maxAgeSeconds, metrics);
+	}
+
+	private static Asset prepare(final Path file, final Path cacheDir) throws IOException {
+		var content = Files.readAllBytes(file);
+		var hash = sha256(content);
+		var gz = cacheDir.resolve(hash + ".gz");
+		if (!Files.exists(gz)) {
+			var tmp = cacheDir.resolve(hash + ".gz.tmp");
+			try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(tmp))) {
+				out.write(content);
+			}
+			Files.move(tmp, gz, StandardCopyOption.REPLACE_EXISTING);
+		}
+		long gzipLength = Files.size(gz);
+		boolean worth = gzipLength < content.length * (1 - MIN_GZIP_SAVING);
+		var type = MimeMapping.mimeTypeForFilename(file.getFileName().toString());
+		if (type == null) {
+			type = "application/octet-stream";
+		} else if (type.startsWith("text/") || type.endsWith("json") || type.endsWith("javascript")) {
+			type += ";charset=UTF-8";
+		}
+		var tag = hash.substring(0, 32);
+		return new Asset(file.toAbsolutePath().toString(), content.length, "\"" + tag + "\"",
+				worth ? gz.toAbsolutePath().toString() : null, gzipLength, "\"" + tag + "-gz\"", type);
+	}
+
+	/**
+	 *
+	 * Serve a file, or reply 404 if there is no such file
+	 *
+	 * @param context
+	 */
+	public void handle(final RoutingContext context) {
+		var request = context.request();
+		var path = context.normalizedPath();
+		var asset = path.startsWith(prefix) ? assets.get(path.substring(prefix.length())) : null;
+		if (asset == null) {
+			context.response().setStatusCode(404).end();
+			return;
+		}
+		/* each variant has its own tag */
+		boolean gzip = asset.gzipPath() != null && acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+		var etag = gzip ? asset.gzipEtag() : asset.etag();
+		var response = context.response();
+		response.putHeader(HttpHeaders.ETAG, etag)
+				.putHeader(HttpHeaders.CACHE_CONTROL, cacheControl)
+				.putHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+				.putHeader(HttpHeaders.CONTENT_TYPE, asset.contentType());
+		if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+			notModified.inc();
+			response.setStatusCode(304).end();
+			return;
+		}
+		served.inc();
+		if (request.method() == HttpMethod.HEAD) {
+			if (gzip) {
+				response.putHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+			}
+			response.putHeader(HttpHeaders.CONTENT_LENGTH,
+					String.valueOf(gzip ? asset.gzipLength() : asset.length())).end();
+		} else if (gzip) {
+			gzipped.inc();
+			response.putHeader(HttpHeaders.CONTENT_ENCODING, "gzip").sendFile(asset.gzipPath());
+		} else {
+			response.sendFile(asset.path());
+		}
+	}
+
+	/* Aux methods */
+
+	private static boolean matches(final String ifNoneMatch, final String etag) {
+		if (ifNoneMatch == null) {
+			return false;
+		}
+		for (String tag : ifNoneMatch.split(",")) {
+			var t = tag.trim();
+			if (t.equals("*") || t.equals(etag) || t.equals("W/" + etag)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean acceptsGzip(final String acceptEncoding) {
+		if (acceptEncoding == null) {
+			return false;
+		}
+		for (String coding : acceptEncoding.split(",")) {
+			var parts = coding.trim().split(";");
+			if (parts[0].trim().equalsIgnoreCase("gzip")) {
+				return parts.length == 1 || !parts[1].replace(" ", "").equals("q=0");
+			}
+		}
+		return false;
+	}
+
+	private static String sha256(final byte[] content) {
+		try {
+			return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+		} catch (final NoSuchAlgorithmException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+
+}
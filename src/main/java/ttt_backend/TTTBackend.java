@@ -1,16 +1,28 @@
 package ttt_backend;
 
-import java.util.HashMap;
+import java.util.List;
+import java.util.function.IntFunction;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
-import io.vertx.core.eventbus.EventBus;
-import io.vertx.core.json.*;
 import ttt_backend.entities.Game;
+import ttt_backend.entities.GameRecord;
+import ttt_backend.entities.LobbyPage;
+import ttt_backend.entities.Match;
+import ttt_backend.entities.Standing;
 import ttt_backend.entities.User;
+import ttt_backend.entities.UserStats;
 import ttt_backend.entities.Game.GameSymbolType;
+import ttt_backend.exceptions.GameNotFoundException;
 import ttt_backend.exceptions.InvalidJoinException;
 import ttt_backend.exceptions.InvalidMoveException;
+import ttt_backend.exceptions.UserNotFoundException;
+import ttt_backend.metrics.LatencyHistogram;
+import ttt_backend.metrics.Metrics;
 
 /**
  *
@@ -22,22 +34,61 @@ public class TTTBackend implements CommandsInterface {
 
 	private static final Logger logger = Logger.getLogger("[TicTacToe Backend]");
 
-	/* list on ongoing games */
-	private final HashMap<String, Game> games;
-
-	/* counters to create ids */
-	private int gamesIdCount;
+	/* ongoing games, sharded over the event loops */
+	private final GameRegistry games;
 
 	/* port of the endpoint */
 	private final Vertx vertx;
 
-	private final UserRepoInterface repo;
+	private final AsyncUserRepoInterface repo;
+
+	/* finished games */
+	private final GameArchive archive;
+
+	/* users waiting for an opponent */
+	private record Waiting(User user, EventListenerInterface listener, Promise<Match> promise, Context context) {}
+	private final Matchmaker<Waiting> matchmaker;
+
+	/* instrumentation */
+	private final LatencyHistogram publishLatency;
+
+	/* subscribers to the events of the games */
+	private final GameSubscriptions subscriptions;
+
+	/* last events of the games, to resume their streams */
+	private final GameEventLog events;
+
+	/* results of the users across games */
+	private final Leaderboard leaderboard;
+
+	/* games waiting for a player */
+	private final Lobby lobby;
 
-	public TTTBackend(final Vertx vertx, final UserRepoInterface repo) {
+	public TTTBackend(final Vertx vertx, final AsyncUserRepoInterface repo, final GameRegistry games,
+			final GameArchive archive, final Metrics metrics) {
 		logger.setLevel(Level.INFO);
 		this.repo = repo;
 		this.vertx = vertx;
-		this.games = new HashMap<>();
+		this.games = games;
+		this.archive = archive;
+		this.matchmaker = new Matchmaker<>();
+		this.subscriptions = new GameSubscriptions();
+		this.events = new GameEventLog(vertx);
+		this.leaderboard = new Leaderboard(repo);
+		this.lobby = new Lobby();
+		this.publishLatency = metrics.histogram("ttt_stage_latency_seconds", "Latency of the stages of the request path",
+				"stage=\"publish\"");
+		metrics.gauge("ttt_live_games", "Games held in memory", games::liveGames);
+		metrics.gauge("ttt_subscriptions", "Subscriptions to game events", subscriptions::subscribers);
+		metrics.gauge("ttt_subscribed_games", "Games with subscribers", subscriptions::games);
+		metrics.gauge("ttt_event_log_games", "Games with events kept to resume their streams", events::games);
+		metrics.gauge("ttt_registered_users", "Registered users", repo::countUsers);
+		metrics.gauge("ttt_leaderboard_players", "Users with results", leaderboard::players);
+		metrics.gauge("ttt_lobby_open_games", "Games waiting for a player", lobby::openGames);
+		metrics.gauge("ttt_lobby_subscribers", "Subscriptions to the lobby", lobby::subscribers);
+		vertx.eventBus().registerDefaultCodec(GameEvent.class, new GameEventCodec());
+		/* the table of the bot is built at startup, not on its first move */
+		PerfectPlay.load();
 	}
 
 	/* List of handlers mapping the API */
@@ -48,22 +99,73 @@ public class TTTBackend implements CommandsInterface {
 	 * 
 	 * @param context
 	 */
-	public User registerUser(final String username) {
+	public Future<User> registerUser(final String username) {
 		return this.repo.addUser(username);
 	}
 
+	/**
+	 * 
+	 * Find users by the prefix of their name, in the in-memory index of the repository
+	 * 
+	 * @param prefix
+	 * @param limit
+	 */
+	public Future<List<User>> findUsers(final String prefix, final int limit) {
+		return Future.succeededFuture(this.repo.findUsersByPrefix(prefix, limit));
+	}
+
+	/**
+	 * 
+	 * Find a user by name
+	 * 
+	 * @param username
+	 */
+	public Future<User> findUserByName(final String username) {
+		var user = this.repo.findUserByName(username);
+		return user == null ? Future.failedFuture(new UserNotFoundException()) : Future.succeededFuture(user);
+	}
+
 	/**
 	 * 
 	 * Create a New Game
 	 * 
 	 * @param context
 	 */
-	public Game createNewGame() {
-		this.gamesIdCount++;
-		var newGameId = "game-" + gamesIdCount;
-		var game = new Game(newGameId);
-		this.games.put(newGameId, game);
-		return game;
+	public Future<Game> createNewGame() {
+		var newGameId = this.games.nextGameId();
+		return this.games.shardOf(newGameId).submit(games -> {
+			var game = new Game(newGameId);
+			games.put(newGameId, game);
+			this.games.gameAdded();
+			this.lobby.update(game);
+			return game;
+		});
+	}
+
+	/**
+	 * 
+	 * Create a game against the server: the user joins with a symbol
+	 * and the bot with the other one
+	 * 
+	 * @param userId
+	 * @param symbol
+	 * @param level
+	 */
+	public Future<Game> createBotGame(final String userId, final GameSymbolType symbol, final Bot.Level level) {
+		return this.repo.findUserById(userId).compose(user -> {
+			if (user == null) {
+				return Future.failedFuture(new InvalidJoinException());
+			}
+			var newGameId = this.games.nextGameId();
+			return this.games.shardOf(newGameId).submit(games -> {
+				var game = new Game(newGameId);
+				game.joinGame(user, symbol);
+				game.joinGame(level.user(), symbol == GameSymbolType.CROSS ? GameSymbolType.CIRCLE : GameSymbolType.CROSS);
+				games.put(newGameId, game);
+				this.games.gameAdded();
+				return game;
+			});
+		});
 	}
 
 	/**
@@ -72,11 +174,16 @@ public class TTTBackend implements CommandsInterface {
 	 * 
 	 * @param context
 	 */
-	public void joinGame(final String userId, final String gameId, final GameSymbolType gameSymbol)
-			throws InvalidJoinException {
-		var user = this.repo.getUserById(userId);
-		var game = this.games.get(gameId);
-		game.joinGame(user, gameSymbol);
+	public Future<Void> joinGame(final String userId, final String gameId, final GameSymbolType gameSymbol) {
+		return this.repo.findUserById(userId).compose(user -> this.games.shardOf(gameId).submit(games -> {
+			var game = games.get(gameId);
+			if (game == null || user == null) {
+				throw new InvalidJoinException();
+			}
+			game.joinGame(user, gameSymbol);
+			this.lobby.update(game);
+			return null;
+		}));
 	}
 
 	/**
@@ -85,61 +192,264 @@ public class TTTBackend implements CommandsInterface {
 	 * 
 	 * @param context
 	 */
-	public void makeAMove(final String userID, final String gameID, final int x, final int y,
-			final GameSymbolType symbol) throws InvalidMoveException {
-		var user = this.repo.getUserById(userID);
-		var game = this.games.get(gameID);
-		game.makeAmove(user, symbol, x, y);
+	public Future<Void> makeAMove(final String userID, final String gameID, final int x, final int y,
+			final GameSymbolType symbol) {
+		return this.repo.findUserById(userID).compose(user -> this.games.shardOf(gameID).submit(games -> {
+			var game = games.get(gameID);
+			if (game == null) {
+				throw new InvalidMoveException();
+			}
+			game.makeAmove(user, symbol, x, y);
+			this.notifyMove(game, x, y, symbol);
+			this.playBot(game);
+			if (game.isGameEnd()) {
+				this.leaderboard.recordResult(game);
+				this.evict(game);
+			}
+			return null;
+		}));
+	}
 
-		/* notifying events */
+	/**
+	 * 
+	 * Get a game, either ongoing or archived
+	 * 
+	 * @param gameId
+	 */
+	public Future<GameRecord> getGame(final String gameId) {
+		return this.games.shardOf(gameId).submit(games -> {
+			var game = games.get(gameId);
+			return game == null ? null : GameRecord.of(game);
+		}).compose(rec -> {
+			if (rec != null) {
+				return Future.succeededFuture(rec);
+			}
+			return this.archive.find(gameId).compose(found -> found.isPresent() 
+					? Future.succeededFuture(found.get())
+					: Future.failedFuture(new GameNotFoundException()));
+		});
+	}
 
-		var eb = this.vertx.eventBus();
+	public Future<Match> matchmake(final String userId) {
+		return this.matchmake(userId, null);
+	}
 
-		/* about the new move */
+	/**
+	 * 
+	 * Wait for an opponent. The first user waiting gets the cross symbol.
+	 * 
+	 * @param userId
+	 * @param listener if not null, subscribed to the events of the game before it starts
+	 */
+	public Future<Match> matchmake(final String userId, final EventListenerInterface listener) {
+		return this.repo.findUserById(userId).compose(user -> user == null 
+				? Future.failedFuture(new InvalidJoinException())
+				: this.enqueue(user, listener));
+	}
 
-		var evMove = new JsonObject();
-		evMove.put("event", "new-move");
-		evMove.put("x", x);
-		evMove.put("y", y);
-		evMove.put("symbol", symbol);
+	private Future<Match> enqueue(final User user, final EventListenerInterface listener) {
+		var userId = user.id();
+		var me = new Waiting(user, listener, Promise.promise(), vertx.getOrCreateContext());
+		var opponent = this.matchmaker.offer(me);
+		while (opponent != null && opponent.user().id().equals(userId)) {
+			/* the same user queued twice: the older request is superseded */
+			var superseded = opponent;
+			superseded.context().runOnContext(v -> superseded.promise().tryFail(new InvalidJoinException()));
+			opponent = this.matchmaker.offer(me);
+		}
+		if (opponent != null) {
+			this.startMatch(opponent, me);
+		}
+		return me.promise().future();
+	}
 
-		/* the event is notified on the event bus 'address' of the specific game */
+	public void cancelMatchmaking(final String userId) {
+		var removed = this.matchmaker.cancel(w -> w.user().id().equals(userId));
+		if (removed != null) {
+			removed.context().runOnContext(v -> removed.promise().tryFail(new InvalidJoinException()));
+		}
+	}
 
-		var gameAddress = this.getBusAddressForAGame(gameID);
-		eb.publish(gameAddress, evMove);
+	/**
+	 * 
+	 * The users with the most points: read from the leaderboard, with no lock
+	 * 
+	 * @param limit
+	 */
+	public Future<List<Standing>> getLeaderboard(final int limit) {
+		return Future.succeededFuture(this.leaderboard.top(limit));
+	}
 
-		/* a game-ended event is notified too if the game is ended */
+	/**
+	 * 
+	 * The results and the rank of a user, all zero if not played yet
+	 * 
+	 * @param userId
+	 */
+	public Future<Standing> getStanding(final String userId) {
+		var standing = this.leaderboard.standingOf(userId);
+		if (standing != null) {
+			return Future.succeededFuture(standing);
+		}
+		return this.repo.findUserById(userId).compose(user -> user == null
+				? Future.failedFuture(new UserNotFoundException())
+				: Future.succeededFuture(new Standing(this.leaderboard.rankOf(0), UserStats.none(user))));
+	}
 
-		if (game.isGameEnd()) {
+	/**
+	 * 
+	 * A page of the games waiting for a player, read from the lobby with no lock
+	 * 
+	 * @param afterGameId the last id of the previous page, or null
+	 * @param limit
+	 */
+	public Future<LobbyPage> getLobby(final String afterGameId, final int limit) {
+		return Future.succeededFuture(this.lobby.page(afterGameId, limit));
+	}
 
-			var evEnd = new JsonObject();
-			evEnd.put("event", "game-ended");
+	/**
+	 * 
+	 * Notify the changes of the lobby to a listener
+	 * 
+	 * @param listener
+	 * @return a sequence number: all the changes after it are notified
+	 */
+	public long subscribeToLobby(final EventListenerInterface listener) {
+		return this.lobby.subscribe(listener, vertx.getOrCreateContext());
+	}
+
+	public void unsubscribeFromLobby(final EventListenerInterface listener) {
+		this.lobby.unsubscribe(listener);
+	}
 
-			if (game.isTie()) {
-				evEnd.put("result", "tie");
+	/*
+	 * Create, join and start the game of a pair. The matches are delivered 
+	 * to both users before game-started is published, so that they know their
+	 * symbol when the game starts.
+	 */
+	private void startMatch(final Waiting cross, final Waiting circle) {
+		var gameId = this.games.nextGameId();
+		this.subscribe(cross, gameId);
+		this.subscribe(circle, gameId);
+		this.games.shardOf(gameId).submit(games -> {
+			var game = new Game(gameId);
+			game.joinGame(cross.user(), GameSymbolType.CROSS);
+			game.joinGame(circle.user(), GameSymbolType.CIRCLE);
+			game.start();
+			games.put(gameId, game);
+			this.games.gameAdded();
+			return null;
+		}).onComplete(res -> {
+			if (res.succeeded()) {
+				Future.all(deliver(cross, new Match(gameId, GameSymbolType.CROSS)),
+						deliver(circle, new Match(gameId, GameSymbolType.CIRCLE)))
+						.onComplete(v -> this.publish(gameId, GameEvent::gameStarted));
 			} else {
-				var sym = game.getWinner().get();
-				if (sym.equals(Game.GameSymbolType.CROSS)) {
-					evEnd.put("winner", "cross");
-				} else {
-					evEnd.put("winner", "circle");
-				}
+				logger.log(Level.WARNING, "Cannot start the game " + gameId, res.cause());
+				this.unsubscribeFromGameEvents(gameId, cross.listener());
+				this.unsubscribeFromGameEvents(gameId, circle.listener());
+				cross.context().runOnContext(v -> cross.promise().tryFail(res.cause()));
+				circle.context().runOnContext(v -> circle.promise().tryFail(res.cause()));
 			}
-			eb.publish(gameAddress, evEnd);
-		}
+		});
+	}
 
+	/* each listener gets its events on its own context */
+	private void subscribe(final Waiting w, final String gameId) {
+		if (w.listener() != null) {
+			this.subscriptions.subscribe(gameId, w.listener(), w.context());
+		}
 	}
 
-	public void subscribeToGameEvents(final String gameId, final EventListenerInterface listener) {
-		EventBus eb = vertx.eventBus();
+	private static Future<Void> deliver(final Waiting w, final Match match) {
+		Promise<Void> delivered = Promise.promise();
+		w.context().runOnContext(v -> {
+			w.promise().tryComplete(match);
+			delivered.complete();
+		});
+		return delivered.future();
+	}
 
-		var gameAddress = getBusAddressForAGame(gameId);
-		eb.consumer(gameAddress, msg -> {
-			JsonObject ev = (JsonObject) msg.body();
-			logger.log(Level.INFO, "Notifying event to the frontend: " + ev.encodePrettily());
-			listener.onEvent(ev.encodePrettily());
+	/* 
+	 * Move a finished game to the archive. The game is removed from 
+	 * the live games only once archived, so it is always queryable.
+	 */
+	private void evict(final Game game) {
+		var gameId = game.getId();
+		this.archive.archive(GameRecord.of(game)).onComplete(res -> {
+			if (res.failed()) {
+				logger.log(Level.WARNING, "Cannot archive " + gameId, res.cause());
+			}
+			this.games.shardOf(gameId).submit(games -> {
+				if (games.remove(gameId) != null) {
+					this.games.gameRemoved();
+					this.events.expire(gameId);
+				}
+				return null;
+			});
 		});
+	}
+
+	/* the reply of the bot, if it has the turn; executed on the shard owning the game */
+	private void playBot(final Game game) throws InvalidMoveException {
+		if (game.isGameEnd()) {
+			return;
+		}
+		var symbol = game.getCurrentTurn();
+		var bot = game.getUser(symbol).orElse(null);
+		var level = Bot.levelOf(bot);
+		if (level != null) {
+			int cell = Bot.chooseMove(game, level);
+			game.makeAmove(bot, symbol, cell % 3, cell / 3);
+			this.notifyMove(game, cell % 3, cell / 3, symbol);
+		}
+	}
+
+	/* notifying events about a move, executed on the shard owning the game */
+	private void notifyMove(final Game game, final int x, final int y, final GameSymbolType symbol) {
+		long start = System.nanoTime();
+		this.publish(game.getId(), seq -> GameEvent.newMove(x, y, symbol, seq));
 
+		/* a game-ended event is notified too if the game is ended */
+
+		if (game.isGameEnd()) {
+			var winner = game.getWinner().orElse(null);
+			this.publish(game.getId(), seq -> GameEvent.gameEnded(winner, seq));
+		}
+		publishLatency.recordSince(start);
+
+	}
+
+	/**
+	 * 
+	 * Append an event to the stream of a game and notify it to the subscribers
+	 * 
+	 * @param gameId
+	 * @param event the event, given its sequence number
+	 */
+	protected void publish(final String gameId, final IntFunction<GameEvent> event) {
+		this.events.append(gameId, event, ev -> this.notifySubscribers(gameId, ev));
+	}
+
+	/**
+	 * 
+	 * Notify an event of a game owned by another node, already numbered
+	 * 
+	 * @param gameId
+	 * @param event
+	 */
+	protected void publishRemote(final String gameId, final GameEvent event) {
+		this.events.record(gameId, event, ev -> this.notifySubscribers(gameId, ev));
+	}
+
+	private void notifySubscribers(final String gameId, final GameEvent event) {
+		if (logger.isLoggable(Level.FINE)) {
+			logger.log(Level.FINE, "Notifying event to the frontend: " + event);
+		}
+		this.subscriptions.publish(gameId, event);
+	}
+
+	public void subscribeToGameEvents(final String gameId, final EventListenerInterface listener) {
 		/*
 		 * 
 		 * When both players joined the game and both
@@ -147,29 +457,67 @@ public class TTTBackend implements CommandsInterface {
 		 * the game can start
 		 * 
 		 */
-		var game = this.games.get(gameId);
-		if (game.bothPlayersJoined()) {
-			try {
-				game.start();
-				var evGameStarted = new JsonObject();
-				evGameStarted.put("event", "game-started");
-				eb.publish(gameAddress, evGameStarted);
-			} catch (final Exception ex) {
-				ex.printStackTrace();
+		this.subscriptions.subscribe(gameId, listener, vertx.getOrCreateContext());
+		this.startIfReady(gameId);
+	}
+
+	/**
+	 * 
+	 * Subscribe a listener to the events of a game, after notifying it the
+	 * events following the last one it got. Called on the context of the
+	 * listener, so the missed events come before the new ones.
+	 * 
+	 * @param gameId
+	 * @param lastSeq the sequence number of the last event received, 0 if none
+	 * @param listener
+	 * @return false if the missed events are no longer kept: the listener gets a resync event instead
+	 */
+	public boolean resumeGameEvents(final String gameId, final int lastSeq, final EventListenerInterface listener) {
+		this.subscriptions.subscribe(gameId, listener, vertx.getOrCreateContext());
+		var missed = this.events.since(gameId, lastSeq);
+		if (missed == null) {
+			listener.onEvent(gameId, GameEvent.resync(gameId));
+		} else {
+			for (GameEvent ev : missed) {
+				listener.onEvent(gameId, ev);
 			}
 		}
+		this.startIfReady(gameId);
+		return missed != null;
 	}
 
 	/**
 	 * 
-	 * Get the address on the Vert.x event bus
-	 * to handle events related to a specific game
+	 * Stop notifying the events of a game to a listener
 	 * 
 	 * @param gameId
-	 * @return
+	 * @param listener
 	 */
-	private String getBusAddressForAGame(final String gameId) {
-		return "ttt-events-" + gameId;
+	public void unsubscribeFromGameEvents(final String gameId, final EventListenerInterface listener) {
+		this.subscriptions.unsubscribe(gameId, listener);
+	}
+
+	/**
+	 * 
+	 * Start a game, if both players joined and it is not started yet
+	 * 
+	 * @param gameId
+	 */
+	protected Future<Void> startIfReady(final String gameId) {
+		return this.games.shardOf(gameId).submit(games -> {
+			var game = games.get(gameId);
+			if (game != null && game.getState() == Game.GameState.WAITING_PLAYER && game.bothPlayersJoined()) {
+				try {
+					game.start();
+					this.lobby.update(game);
+					this.publish(gameId, GameEvent::gameStarted);
+					this.playBot(game);
+				} catch (final Exception ex) {
+					ex.printStackTrace();
+				}
+			}
+			return null;
+		});
 	}
 
 }
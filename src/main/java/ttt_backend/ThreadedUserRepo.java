@@ -0,0 +1,142 @@
+package ttt_backend;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import ttt_backend.entities.User;
+import ttt_backend.entities.UserStats;
+
+/**
+ *
+ * Adapter of the user repository running its blocking lookups off the
+ * event loops, one thread per call: virtual threads where the JVM has them
+ * (Java 21+), else a bounded pool of platform threads.
+ *
+ * The commands (joinGame, makeAMove, ...) then wait for a slow repository
+ * without blocking the other games of their event loop. Only the lookups
+ * move: the games are still mutated on the shards owning them, so they
+ * need no locks, and their events are still published through Vert.x.
+ * Registrations are left to the delegate, which already commits them on a
+ * worker thread.
+ *
+ */
+public class ThreadedUserRepo implements AsyncUserRepoInterface {
+
+	private static final Logger logger = Logger.getLogger("[ThreadedUserRepo]");
+
+	/* where the commands wait for the repository */
+	public enum Execution {
+		/* on the event loop of the request */
+		EVENT_LOOP,
+		/* on a thread per lookup, virtual if available */
+		VIRTUAL_THREADS
+	}
+
+	private final Vertx vertx;
+	private final AsyncUserRepoInterface delegate;
+	private final ExecutorService threads;
+
+	/* instrumentation */
+	private final AtomicInteger inFlight;
+
+	/**
+	 *
+	 * @param vertx
+	 * @param delegate
+	 * @param poolSize threads of the pool used when there are no virtual threads
+	 */
+	public ThreadedUserRepo(final Vertx vertx, final AsyncUserRepoInterface delegate, final int poolSize) {
+		this.vertx = vertx;
+		this.delegate = delegate;
+		this.threads = newExecutor(poolSize);
+		this.inFlight = new AtomicInteger();
+	}
+
+	@Override
+	public Future<User> addUser(final String username) {
+		return delegate.addUser(username);
+	}
+
+	@Override
+	public User getUserById(final String id) {
+		return delegate.getUserById(id);
+	}
+
+	@Override
+	public Future<User> findUserById(final String id) {
+		return this.call(() -> delegate.getUserById(id));
+	}
+
+	@Override
+	public int countUsers() {
+		return delegate.countUsers();
+	}
+
+	@Override
+	public List<User> findUsersByPrefix(final String prefix, final int limit) {
+		return delegate.findUsersByPrefix(prefix, limit);
+	}
+
+	@Override
+	public User findUserByName(final String name) {
+		return delegate.findUserByName(name);
+	}
+
+	@Override
+	public void saveStats(final List<UserStats> stats) {
+		delegate.saveStats(stats);
+	}
+
+	@Override
+	public List<UserStats> allStats() {
+		return delegate.allStats();
+	}
+
+	public int inFlight() {
+		return inFlight.get();
+	}
+
+	/* run a blocking call on a thread, completing on the context of the caller */
+	private <T> Future<T> call(final Callable<T> call) {
+		var ctx = vertx.getOrCreateContext();
+		Promise<T> promise = Promise.promise();
+		inFlight.incrementAndGet();
+		threads.execute(() -> {
+			try {
+				T res = call.call();
+				ctx.runOnContext(v -> promise.complete(res));
+			} catch (final Exception ex) {
+				ctx.runOnContext(v -> promise.fail(ex));
+			} finally {
+				inFlight.decrementAndGet();
+			}
+		});
+		return promise.future();
+	}
+
+	/* Executors.newVirtualThreadPerTaskExecutor() is looked up, to keep running on Java 17 */
+	private static ExecutorService newExecutor(final int poolSize) {
+		try {
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			logger.info("Repository lookups on virtual threads");
+			return (ExecutorService) factory.invoke(null);
+		} catch (final ReflectiveOperationException ex) {
+			logger.info("No virtual threads: repository lookups on " + poolSize + " platform threads");
+			var count = new AtomicInteger();
+			return Executors.newFixedThreadPool(poolSize, r -> {
+				var t = new Thread(r, "ttt-repo-" + count.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			});
+		}
+	}
+
+}
@@ -0,0 +1,168 @@
+package ttt_backend;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import ttt_backend.entities.User;
+
+/**
+ *
+ * In-memory index of the users of a node, by id.
+ *
+ * The ids allocated by the node (user-N, with N in the partition of the node)
+ * are dense, so only the names are stored, in an array indexed by N / nodes;
+ * the id and the User are rebuilt on lookup. Ids in any other form, e.g.
+ * imported from a legacy dbase, are kept in a plain map.
+ *
+ * Users can also be found by name, once {@link #indexNames()} is called
+ * (after the bulk load at startup): see {@link UserNameIndex}.
+ *
+ * Writes must be serialized by the caller; reads are lock free and
+ * see every user added before.
+ *
+ */
+public class UserIndex {
+
+	private static final int INITIAL_CAPACITY = 1024;
+	/* ids far beyond the allocated ones go to the map, not to a huge sparse array */
+	private static final int MAX_GAP = 1 << 20;
+
+	private final ClusterPartitioning partitioning;
+
+	/* names of the users allocated by the node, by local index */
+	private volatile String[] names;
+	/* number of slots of names in use, published after the slots */
+	private volatile int length;
+	private volatile int count;
+
+	private final ConcurrentHashMap<String, User> others;
+
+	/* null until the names are indexed */
+	private volatile UserNameIndex byName;
+
+	public UserIndex(final ClusterPartitioning partitioning) {
+		this.partitioning = partitioning;
+		this.names = new String[INITIAL_CAPACITY];
+		this.others = new ConcurrentHashMap<>();
+	}
+
+	public void put(final User user) {
+		int i = this.localIndex(user.id());
+		if (i < 0 || i - length > MAX_GAP) {
+			if (others.put(user.id(), user) == null && byName != null) {
+				byName.add(user, -1);
+			}
+			return;
+		}
+		var all = this.names;
+		if (i >= all.length) {
+			all = Arrays.copyOf(all, Math.max(all.length * 2, i + 1));
+			this.names = all;
+		}
+		boolean added = all[i] == null;
+		if (added) {
+			count++;
+		}
+		all[i] = user.name();
+		if (i >= length) {
+			this.length = i + 1;
+		}
+		if (added && byName != null) {
+			byName.add(user, i);
+		}
+	}
+
+	/**
+	 *
+	 * Start indexing the users by name, beginning with the ones already added
+	 *
+	 */
+	public void indexNames() {
+		int n = this.length;
+		var all = this.names;
+		var slots = new int[count];
+		int k = 0;
+		for (int i = 0; i < n; i++) {
+			if (all[i] != null) {
+				slots[k++] = i;
+			}
+		}
+		this.byName = new UserNameIndex(this, slots, List.copyOf(others.values()));
+	}
+
+	/**
+	 *
+	 * The users with a name starting with a prefix, ignoring case, in name order
+	 *
+	 * @param prefix
+	 * @param limit
+	 * @return the users, none if the names are not indexed
+	 */
+	public List<User> findByPrefix(final String prefix, final int limit) {
+		var index = this.byName;
+		return index == null ? List.of() : index.findByPrefix(prefix, limit);
+	}
+
+	/**
+	 *
+	 * The first user with a name, ignoring case
+	 *
+	 * @param name
+	 * @return the user, or null if there is no such user or the names are not indexed
+	 */
+	public User findByName(final String name) {
+		var index = this.byName;
+		return index == null ? null : index.findByName(name);
+	}
+
+	public User get(final String id) {
+		int i = this.localIndex(id);
+		if (i >= 0 && i < this.length) {
+			var name = this.names[i];
+			if (name != null) {
+				return new User(id, name);
+			}
+		}
+		return others.isEmpty() ? null : others.get(id);
+	}
+
+	public int size() {
+		return count + others.size();
+	}
+
+	/* a copy of all the users */
+	public List<User> users() {
+		int n = this.length;
+		var all = this.names;
+		var list = new ArrayList<User>(count + others.size());
+		for (int i = 0; i < n; i++) {
+			if (all[i] != null) {
+				list.add(new User(Ids.format(Ids.USER, partitioning.localIdNumber(i)), all[i]));
+			}
+		}
+		list.addAll(others.values());
+		return list;
+	}
+
+	/* name and user of a slot in use, for the name index */
+	String nameAt(final int slot) {
+		return this.names[slot];
+	}
+
+	User userAt(final int slot) {
+		return new User(Ids.format(Ids.USER, partitioning.localIdNumber(slot)), this.names[slot]);
+	}
+
+	/* index of an id allocated by the node, or -1 */
+	private int localIndex(final String id) {
+		long number = Ids.parse(Ids.USER, id);
+		if (number < 0 || number % partitioning.nodes() != partitioning.node()) {
+			return -1;
+		}
+		long i = number / partitioning.nodes();
+		return i > Integer.MAX_VALUE - 8 ? -1 : (int) i;
+	}
+
+}
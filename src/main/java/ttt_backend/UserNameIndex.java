@@ -0,0 +1,328 @@
+package ttt_backend;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import ttt_backend.entities.User;
+
+/**
+ *
+ * Index of the users of a {@link UserIndex} by name, ignoring case, for
+ * exact and prefix lookups.
+ *
+ * The users allocated by the node are kept as their slots in UserIndex, in
+ * an array sorted by name, next to a sort key packing the first 8 characters
+ * of the name (12 bytes per user; the names are not copied): most comparisons
+ * are then between two longs of adjacent entries, not between two strings
+ * scattered in the heap. Users added since then go to a small skip list,
+ * merged into the arrays once it holds a fraction of their size, so adding
+ * a user costs O(log n) amortized. A lookup is a binary search on the
+ * arrays and a walk of both, merged in order, stopping at the first name
+ * without the prefix: no list is built but the result.
+ *
+ * Writes must be serialized by the caller; reads are lock free, and retried
+ * if a merge is published while they run.
+ *
+ */
+public final class UserNameIndex {
+
+	private static final Comparator<String> NAME_ORDER = String.CASE_INSENSITIVE_ORDER;
+
+	/* the skip list is merged when it reaches max(MIN_MERGE, users / MERGE_RATIO) */
+	private static final int MIN_MERGE = 4096;
+	private static final int MERGE_RATIO = 16;
+
+	/* order of the users not allocated by the node, after the others with the same name */
+	private static final long OTHER = Long.MAX_VALUE;
+	/* order of a probe, before all the users with the same name */
+	private static final long PROBE = -1;
+
+	/* characters packed in a sort key, 7 bits each */
+	private static final int KEY_CHARS = 8;
+
+	/* an entry of the skip list: order is the slot of the user, or OTHER */
+	private record Recent(String name, long key, long order, User user) implements Comparable<Recent> {
+		@Override
+		public int compareTo(final Recent other) {
+			int c = compareNames(key, name, other.key, other.name);
+			if (c != 0) {
+				return c;
+			}
+			c = Long.compare(order, other.order);
+			return c != 0 || order != OTHER ? c : user.id().compareTo(other.user.id());
+		}
+	}
+
+	/* slots sorted by name then by slot, and the sort keys of their names */
+	private record Sorted(int[] slots, long[] keys) {}
+
+	private final UserIndex users;
+
+	private volatile Sorted sorted;
+	/* added since the last merge */
+	private final ConcurrentSkipListSet<Recent> recent;
+	private int recentSlots;
+
+	/**
+	 *
+	 * Index the users already in a UserIndex
+	 *
+	 * @param users
+	 * @param slots the slots in use
+	 * @param others the users not allocated by the node
+	 */
+	UserNameIndex(final UserIndex users, final int[] slots, final List<User> others) {
+		this.users = users;
+		this.recent = new ConcurrentSkipListSet<>();
+		this.sorted = this.sort(slots);
+		for (User u : others) {
+			recent.add(new Recent(u.name(), keyOf(u.name()), OTHER, u));
+		}
+	}
+
+	/*
+	 * Names with an ASCII prefix are sorted as longs packing the top bits of
+	 * their key over their position, then the runs of equal keys by name;
+	 * the others by name, and both merged.
+	 */
+	private Sorted sort(final int[] slots) {
+		int n = slots.length;
+		int indexBits = 64 - Long.numberOfLeadingZeros(Math.max(1, n - 1));
+		int drop = Math.max(0, indexBits - 7);
+		var keyOf = new long[n];
+		var packed = new long[n];
+		var others = new ArrayList<Integer>();
+		int m = 0;
+		for (int i = 0; i < n; i++) {
+			keyOf[i] = keyOf(users.nameAt(slots[i]));
+			if (keyOf[i] >= 0) {
+				packed[m++] = (keyOf[i] >>> drop) << indexBits | i;
+			} else {
+				others.add(i);
+			}
+		}
+		Arrays.sort(packed, 0, m);
+		Comparator<Integer> byName = (a, b) -> {
+			int c = compareNames(keyOf[a], users.nameAt(slots[a]), keyOf[b], users.nameAt(slots[b]));
+			return c != 0 ? c : Integer.compare(slots[a], slots[b]);
+		};
+		long mask = (1L << indexBits) - 1;
+		var order = new int[n];
+		for (int start = 0; start < m;) {
+			int end = start + 1;
+			while (end < m && packed[end] >>> indexBits == packed[start] >>> indexBits) {
+				end++;
+			}
+			if (end - start == 1) {
+				order[start] = (int) (packed[start] & mask);
+			} else {
+				var run = new Integer[end - start];
+				for (int k = 0; k < run.length; k++) {
+					run[k] = (int) (packed[start + k] & mask);
+				}
+				Arrays.sort(run, byName);
+				for (int k = 0; k < run.length; k++) {
+					order[start + k] = run[k];
+				}
+			}
+			start = end;
+		}
+		others.sort(byName);
+		var all = new int[n];
+		var keys = new long[n];
+		int a = 0;
+		int b = 0;
+		for (int k = 0; k < n; k++) {
+			int i = b == others.size() || a < m && byName.compare(order[a], others.get(b)) < 0 ? order[a++] : others.get(b++);
+			all[k] = slots[i];
+			keys[k] = keyOf[i];
+		}
+		return new Sorted(all, keys);
+	}
+
+	/**
+	 *
+	 * Add a new user
+	 *
+	 * @param user
+	 * @param slot its slot in UserIndex, or -1 if not allocated by the node
+	 */
+	void add(final User user, final int slot) {
+		recent.add(new Recent(user.name(), keyOf(user.name()), slot >= 0 ? slot : OTHER, user));
+		if (slot >= 0 && ++recentSlots >= Math.max(MIN_MERGE, sorted.slots().length / MERGE_RATIO)) {
+			this.merge();
+		}
+	}
+
+	/**
+	 *
+	 * The users with a name starting with a prefix, ignoring case, in name order
+	 *
+	 * @param prefix
+	 * @param limit
+	 * @return
+	 */
+	public List<User> findByPrefix(final String prefix, final int limit) {
+		return this.find(prefix, false, limit);
+	}
+
+	/**
+	 *
+	 * The first user with a name, ignoring case
+	 *
+	 * @param name
+	 * @return the user, or null if there is no such user
+	 */
+	public User findByName(final String name) {
+		var found = this.find(name, true, 1);
+		return found.isEmpty() ? null : found.get(0);
+	}
+
+	/*
+	 * A merge publishes its arrays, then removes their entries from the skip
+	 * list: a lookup walking the skip list with older arrays may miss them.
+	 * So it is retried when new arrays were published meanwhile (merges are rare).
+	 */
+	private List<User> find(final String name, final boolean exact, final int limit) {
+		while (true) {
+			var base = this.sorted;
+			var result = this.find(base, name, exact, limit);
+			if (this.sorted == base) {
+				return result;
+			}
+		}
+	}
+
+	/* walk the arrays and the skip list together, from the first name not before the key */
+	private List<User> find(final Sorted base, final String name, final boolean exact, final int limit) {
+		var result = new ArrayList<User>(Math.min(limit, 16));
+		var slots = base.slots();
+		int i = this.lowerBound(base, name);
+		Iterator<Recent> more = recent.tailSet(new Recent(name, keyOf(name), PROBE, null)).iterator();
+		var r = next(more, name, exact);
+		while (result.size() < limit) {
+			boolean inBase = i < slots.length && matches(users.nameAt(slots[i]), name, exact);
+			if (!inBase && r == null) {
+				break;
+			}
+			int c = !inBase ? 1 : r == null ? -1 : this.compare(base, i, r);
+			if (c < 0) {
+				result.add(users.userAt(slots[i++]));
+			} else {
+				/* equal: merged into the arrays and not yet removed from the skip list */
+				if (c == 0) {
+					i++;
+				}
+				result.add(r.user());
+				r = next(more, name, exact);
+			}
+		}
+		return result;
+	}
+
+	private static Recent next(final Iterator<Recent> it, final String name, final boolean exact) {
+		if (!it.hasNext()) {
+			return null;
+		}
+		var r = it.next();
+		return matches(r.name(), name, exact) ? r : null;
+	}
+
+	private static boolean matches(final String candidate, final String name, final boolean exact) {
+		return exact ? NAME_ORDER.compare(candidate, name) == 0
+				: candidate.regionMatches(true, 0, name, 0, name.length());
+	}
+
+	/* first position of the arrays whose name is not before a name */
+	private int lowerBound(final Sorted base, final String name) {
+		long key = keyOf(name);
+		int lo = 0;
+		int hi = base.slots().length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (compareNames(base.keys()[mid], users.nameAt(base.slots()[mid]), key, name) < 0) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	/* merge the users of the node added since the last merge into new arrays */
+	private void merge() {
+		var base = this.sorted;
+		int n = base.slots().length;
+		var slots = new int[n + recentSlots];
+		var keys = new long[n + recentSlots];
+		var done = new ArrayList<Recent>(recentSlots);
+		int i = 0;
+		int k = 0;
+		for (Recent r : recent) {
+			if (r.order() == OTHER) {
+				continue;
+			}
+			while (i < n && this.compare(base, i, r) < 0) {
+				slots[k] = base.slots()[i];
+				keys[k++] = base.keys()[i++];
+			}
+			slots[k] = (int) r.order();
+			keys[k++] = r.key();
+			done.add(r);
+		}
+		System.arraycopy(base.slots(), i, slots, k, n - i);
+		System.arraycopy(base.keys(), i, keys, k, n - i);
+		/*
+		 * published before the removal: readers with these arrays may see an
+		 * entry twice; the ones with the previous arrays retry (see find)
+		 */
+		this.sorted = new Sorted(slots, keys);
+		for (Recent r : done) {
+			recent.remove(r);
+		}
+		this.recentSlots = 0;
+	}
+
+	/* the entry at position i of the arrays compared with an entry of the skip list */
+	private int compare(final Sorted base, final int i, final Recent r) {
+		int slot = base.slots()[i];
+		int c = compareNames(base.keys()[i], users.nameAt(slot), r.key(), r.name());
+		return c != 0 ? c : Long.compare(slot, r.order());
+	}
+
+	/* the names are compared only if their keys cannot tell them apart */
+	private static int compareNames(final long keyA, final String a, final long keyB, final String b) {
+		if (keyA >= 0 && keyB >= 0 && keyA != keyB) {
+			return Long.compare(keyA, keyB);
+		}
+		return NAME_ORDER.compare(a, b);
+	}
+
+	/*
+	 * The first characters of a name folded as by NAME_ORDER (lower case, for
+	 * ASCII), padded with zeros, so that keys are ordered as the names they
+	 * begin; -1 if they are not all ASCII.
+	 */
+	static long keyOf(final String name) {
+		long key = 0;
+		for (int i = 0; i < KEY_CHARS; i++) {
+			int c = 0;
+			if (i < name.length()) {
+				c = name.charAt(i);
+				if (c >= 128) {
+					return -1;
+				}
+				if (c >= 'A' && c <= 'Z') {
+					c += 'a' - 'A';
+				}
+			}
+			key = key << 7 | c;
+		}
+		return key;
+	}
+
+}
@@ -1,6 +1,10 @@
 package ttt_backend;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import ttt_backend.entities.User;
+import ttt_backend.entities.UserStats;
 
 public interface UserRepoInterface {
 
@@ -8,4 +12,55 @@ public interface UserRepoInterface {
 
     User getUserById(final String id);
 
+    int countUsers();
+
+    /**
+     * Find the users with a name starting with a prefix, ignoring case
+     * 
+     * @param prefix
+     * @param limit
+     * @return at most limit users, in name order
+     */
+    List<User> findUsersByPrefix(final String prefix, final int limit);
+
+    /**
+     * Find a user by name, ignoring case
+     * 
+     * @param name
+     * @return the first user registered with the name, or null if there is no such user
+     */
+    User findUserByName(final String name);
+
+    /**
+     * Add a batch of users, making them durable together.
+     * 
+     * @param usernames
+     * @return the new users, in the same order
+     */
+    default List<User> addUsers(final List<String> usernames) {
+        var list = new ArrayList<User>(usernames.size());
+        for (String name : usernames) {
+            list.add(this.addUser(name));
+        }
+        return list;
+    }
+
+    /**
+     * Store the results of some users, replacing their previous ones.
+     * Not persisted by default.
+     * 
+     * @param stats
+     */
+    default void saveStats(final List<UserStats> stats) {
+    }
+
+    /**
+     * The stored results of all the users who played
+     * 
+     * @return
+     */
+    default List<UserStats> allStats() {
+        return List.of();
+    }
+
 }
@@ -3,31 +3,321 @@ package ttt_backend;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import io.vertx.core.Future;
 import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.ServerWebSocket;
 import io.vertx.core.json.JsonObject;
+import ttt_backend.entities.Game;
+import ttt_backend.exceptions.BadRequestException;
+import ttt_backend.exceptions.InvalidJoinException;
+import ttt_backend.metrics.Counter;
+import ttt_backend.metrics.LatencyHistogram;
+import ttt_backend.metrics.Metrics;
 
+/**
+ *
+ * WebSocket adapter: game events are pushed to the client and, on the
+ * same socket, the client can send commands.
+ *
+ * A message with a "cmd" field is a command, e.g.
+ * { "requestId": 1, "cmd": "makeAMove", "userId": ..., "gameId": ..., "symbol": ..., "x": ..., "y": ... }.
+ * Commands can be pipelined: each one is dispatched as soon as it is received
+ * and its reply carries the same "requestId", e.g. { "requestId": 1, "result": "accepted" }.
+ * Replies may arrive in a different order than the commands, except for
+ * commands on the same game, which are executed in order.
+ *
+ * The "matchmake" command { "cmd": "matchmake", "userId": ... } waits for an
+ * opponent and is answered with { "result": "matched", "gameId": ..., "symbol": ... }
+ * once the game is created and started; game-started follows on the socket.
+ *
+ * The "createBotGame" command { "cmd": "createBotGame", "userId": ..., "symbol": ..., "level": ... }
+ * creates a game against the server (level among easy, medium, hard, perfect)
+ * and subscribes the socket to it, which starts the game.
+ *
+ * The "subscribeLobby" command delivers the changes of the lobby on the
+ * socket, as game-opened and game-filled events, and is answered with
+ * { "result": "accepted", "seq": ... }: the events with a greater "seq" are
+ * the changes after that point (see {@link Lobby}). With the coalesce
+ * policy, the lobby events of a slow subscriber are replaced by a resync
+ * event with "gameId": "lobby". "unsubscribeLobby" stops them.
+ *
+ * A message without "cmd" is the legacy subscription { "gameId": ... }.
+ *
+ * Game events carry their sequence number in the game ("seq"). A client
+ * reconnecting after a network blip subscribes again with the last one it
+ * got, { "gameId": ..., "lastSeq": ... } (or the "subscribe" command with
+ * "lastSeq"): the events it missed are sent first, then the new ones, with
+ * no duplicates. If they are no longer kept, a resync event is sent instead
+ * (and the reply of the command is { "result": "resync" }). A subscription
+ * without a string "gameId", or with a "lastSeq" that is not a non-negative
+ * integer, is answered with { "result": "bad-request", "error": ... }.
+ *
+ * A subscriber not reading its events fast enough is handled by the
+ * slow consumer policy, see {@link WebSocketListener}.
+ *
+ * Game events are JSON text frames, unless the client negotiates the
+ * {@link #BINARY_SUBPROTOCOL} subprotocol: then they are sent as the
+ * binary frames described in {@link GameEvent}, ending with their seq. Commands and
+ * replies are JSON text in both cases.
+ *
+ */
 public class WebSocketAcceptor {
 
+    /* opt-in subprotocol for binary game events */
+    public static final String BINARY_SUBPROTOCOL = "ttt.bin.v2";
+
     private static Logger logger = Logger.getLogger("[WebSocketAcceptor]");
 
-    public WebSocketAcceptor(final HttpServer server, final TTTBackend backend) {
+    private final TTTBackend backend;
+
+    /* instrumentation */
+    private final LatencyHistogram commandLatency;
+    private final Counter opened;
+    private final Counter closed;
+
+    /* fan-out to slow subscribers */
+    private final WebSocketListener.Backpressure backpressure;
+    private final int writeQueueMaxBytes;
+
+    public WebSocketAcceptor(final HttpServer server, final TTTBackend backend, final Metrics metrics,
+            final WebSocketListener.SlowConsumerPolicy policy, final int maxQueuedEvents,
+            final int writeQueueMaxBytes) {
+        this.backend = backend;
+        this.writeQueueMaxBytes = writeQueueMaxBytes;
+        this.backpressure = new WebSocketListener.Backpressure(policy, maxQueuedEvents,
+                metrics.histogram("ttt_stage_latency_seconds", "Latency of the stages of the request path",
+                        "stage=\"ws_write\""),
+                metrics.counter("ttt_ws_events_dropped_total", "Events dropped for slow subscribers", ""),
+                metrics.counter("ttt_ws_events_coalesced_total", "Events coalesced for slow subscribers", ""),
+                metrics.counter("ttt_ws_slow_consumer_disconnects_total", "Slow subscribers disconnected", ""));
+        this.commandLatency = metrics.histogram("ttt_stage_latency_seconds", "Latency of the stages of the request path",
+                "stage=\"command\",endpoint=\"websocket\"");
+        this.opened = metrics.counter("ttt_websockets_opened_total", "WebSockets accepted", "");
+        this.closed = metrics.counter("ttt_websockets_closed_total", "WebSockets closed", "");
         server.webSocketHandler(webSocket -> {
-            logger.log(Level.INFO, "New TTT subscription accepted.");
+            if (logger.isLoggable(Level.FINE)) {
+                logger.log(Level.FINE, "New TTT subscription accepted.");
+            }
+            opened.inc();
+            webSocket.setWriteQueueMaxSize(writeQueueMaxBytes);
+            var listener = new WebSocketListener(webSocket, backpressure);
+            webSocket.closeHandler(v -> {
+                closed.inc();
+                if (listener.getWaitingUser() != null) {
+                    backend.cancelMatchmaking(listener.getWaitingUser());
+                }
+                if (listener.isLobby()) {
+                    backend.unsubscribeFromLobby(listener);
+                }
+                for (String gameId : listener.getGames()) {
+                    backend.unsubscribeFromGameEvents(gameId, listener);
+                }
+            });
 
             /*
-             * 
+             *
              * Receiving a first message including the id of the game
-             * to observe
-             * 
+             * to observe, or commands
+             *
              */
-            webSocket.textMessageHandler(openMsg -> {
-                logger.log(Level.INFO, "For game: " + openMsg);
-                JsonObject obj = new JsonObject(openMsg);
-                String gameId = obj.getString("gameId");
-                backend.subscribeToGameEvents(gameId, new WebSocketListener(webSocket));
+            webSocket.textMessageHandler(msg -> {
+                JsonObject obj;
+                try {
+                    obj = new JsonObject(msg);
+                } catch (final Exception ex) {
+                    this.sendReply(webSocket, null, new JsonObject().put("result", "bad-request"));
+                    return;
+                }
+                if (obj.containsKey("cmd")) {
+                    this.dispatch(webSocket, listener, obj);
+                } else {
+                    if (logger.isLoggable(Level.FINE)) {
+                        logger.log(Level.FINE, "For game: " + msg);
+                    }
+                    try {
+                        this.subscribe(gameIdOf(obj), lastSeqOf(obj), listener);
+                    } catch (final BadRequestException ex) {
+                        this.sendReply(webSocket, null, RequestDecoder.error(ex));
+                    }
+                }
             });
         });
 
     }
 
+    private void dispatch(final ServerWebSocket webSocket, final WebSocketListener listener, final JsonObject cmd) {
+        var requestId = cmd.getValue("requestId");
+        long start = System.nanoTime();
+        Future<JsonObject> reply;
+        try {
+            reply = switch (cmd.getString("cmd")) {
+                case "registerUser" -> this.registerUser(cmd);
+                case "createGame" -> this.createNewGame();
+                case "createBotGame" -> this.createBotGame(cmd, listener);
+                case "joinGame" -> this.joinGame(cmd, listener);
+                case "makeAMove" -> this.makeAMove(cmd);
+                case "subscribe" -> this.subscribe(cmd, listener);
+                case "matchmake" -> this.matchmake(cmd, listener);
+                case "subscribeLobby" -> this.subscribeLobby(listener);
+                case "unsubscribeLobby" -> this.unsubscribeLobby(listener);
+                default -> Future.succeededFuture(new JsonObject().put("result", "unknown-command"));
+            };
+        } catch (final BadRequestException ex) {
+            reply = Future.succeededFuture(RequestDecoder.error(ex));
+        } catch (final Exception ex) {
+            reply = Future.succeededFuture(new JsonObject().put("result", "bad-request"));
+        }
+        reply.onComplete(res -> {
+            commandLatency.recordSince(start);
+            if (res.succeeded()) {
+                this.sendReply(webSocket, requestId, res.result());
+            } else {
+                this.sendReply(webSocket, requestId, new JsonObject().put("result", "error"));
+            }
+        });
+    }
+
+    /* Commands */
+
+    private Future<JsonObject> registerUser(final JsonObject cmd) {
+        return backend.registerUser(cmd.getString("userName")).map(user -> new JsonObject()
+                .put("result", "accepted")
+                .put("userId", user.id())
+                .put("userName", user.name()));
+    }
+
+    private Future<JsonObject> createNewGame() {
+        return backend.createNewGame().map(game -> new JsonObject()
+                .put("result", "accepted")
+                .put("gameId", game.getId()));
+    }
+
+    /* the game starts once the socket is subscribed */
+    private Future<JsonObject> createBotGame(final JsonObject cmd, final WebSocketListener listener) {
+        var level = Bot.Level.parse(cmd.getString("level", "perfect"));
+        return backend.createBotGame(cmd.getString("userId"), symbol(cmd), level).transform(res -> {
+            if (res.succeeded()) {
+                var gameId = res.result().getId();
+                this.subscribe(gameId, listener);
+                return Future.succeededFuture(new JsonObject().put("result", "accepted").put("gameId", gameId));
+            } else if (res.cause() instanceof InvalidJoinException) {
+                return Future.succeededFuture(new JsonObject().put("result", "denied"));
+            } else {
+                return Future.failedFuture(res.cause());
+            }
+        });
+    }
+
+    /* joining from the socket also subscribes it to the events of the game */
+    private Future<JsonObject> joinGame(final JsonObject cmd, final WebSocketListener listener) {
+        var gameId = cmd.getString("gameId");
+        return backend.joinGame(cmd.getString("userId"), gameId, symbol(cmd)).transform(res -> {
+            if (res.succeeded()) {
+                this.subscribe(gameId, listener);
+                return Future.succeededFuture(new JsonObject().put("result", "accepted"));
+            } else if (res.cause() instanceof InvalidJoinException) {
+                return Future.succeededFuture(new JsonObject().put("result", "denied"));
+            } else {
+                return Future.failedFuture(res.cause());
+            }
+        });
+    }
+
+    private Future<JsonObject> makeAMove(final JsonObject cmd) {
+        int x = Integer.parseInt(cmd.getValue("x").toString());
+        int y = Integer.parseInt(cmd.getValue("y").toString());
+        return backend.makeAMove(cmd.getString("userId"), cmd.getString("gameId"), x, y, symbol(cmd))
+                .transform(res -> Future.succeededFuture(
+                        new JsonObject().put("result", res.succeeded() ? "accepted" : "invalid-move")));
+    }
+
+    /* the socket is subscribed to the game before it starts, so it gets game-started */
+    private Future<JsonObject> matchmake(final JsonObject cmd, final WebSocketListener listener) {
+        var userId = cmd.getString("userId");
+        listener.setWaitingUser(userId);
+        return backend.matchmake(userId, listener).transform(res -> {
+            listener.setWaitingUser(null);
+            if (res.succeeded()) {
+                var match = res.result();
+                listener.addGame(match.gameId());
+                return Future.succeededFuture(new JsonObject()
+                        .put("result", "matched")
+                        .put("gameId", match.gameId())
+                        .put("symbol", match.symbol() == Game.GameSymbolType.CROSS ? "cross" : "circle"));
+            } else if (res.cause() instanceof InvalidJoinException) {
+                return Future.succeededFuture(new JsonObject().put("result", "denied"));
+            } else {
+                return Future.failedFuture(res.cause());
+            }
+        });
+    }
+
+    private Future<JsonObject> subscribe(final JsonObject cmd, final WebSocketListener listener)
+            throws BadRequestException {
+        boolean resumed = this.subscribe(gameIdOf(cmd), lastSeqOf(cmd), listener);
+        return Future.succeededFuture(new JsonObject().put("result", resumed ? "accepted" : "resync"));
+    }
+
+    /* resumed after the last event the client got, if any */
+    private boolean subscribe(final String gameId, final Integer lastSeq, final WebSocketListener listener) {
+        if (lastSeq == null) {
+            this.subscribe(gameId, listener);
+            return true;
+        }
+        listener.resumeGame(gameId, lastSeq);
+        return backend.resumeGameEvents(gameId, lastSeq, listener);
+    }
+
+    private Future<JsonObject> subscribeLobby(final WebSocketListener listener) {
+        listener.setLobby(true);
+        long seq = backend.subscribeToLobby(listener);
+        return Future.succeededFuture(new JsonObject().put("result", "accepted").put("seq", seq));
+    }
+
+    private Future<JsonObject> unsubscribeLobby(final WebSocketListener listener) {
+        listener.setLobby(false);
+        backend.unsubscribeFromLobby(listener);
+        return Future.succeededFuture(new JsonObject().put("result", "accepted"));
+    }
+
+    /*
+     * a socket is subscribed at most once to a game (the backend ignores
+     * a second subscription), but each join may be the one starting the game
+     */
+    private void subscribe(final String gameId, final WebSocketListener listener) {
+        listener.addGame(gameId);
+        backend.subscribeToGameEvents(gameId, listener);
+    }
+
+    /* Aux methods */
+
+    /* the game of a subscription, legacy or command */
+    static String gameIdOf(final JsonObject obj) throws BadRequestException {
+        if (obj.getValue("gameId") instanceof String gameId) {
+            return gameId;
+        }
+        throw new BadRequestException("The field gameId must be a string");
+    }
+
+    /* the last seq the client got, null if it has none */
+    static Integer lastSeqOf(final JsonObject obj) throws BadRequestException {
+        var lastSeq = obj.getValue("lastSeq");
+        if (lastSeq == null) {
+            return null;
+        }
+        if (lastSeq instanceof Integer seq && seq >= 0) {
+            return seq;
+        }
+        throw new BadRequestException("The field lastSeq must be a non-negative integer");
+    }
+
+    private static Game.GameSymbolType symbol(final JsonObject cmd) {
+        return "cross".equals(cmd.getString("symbol")) ? Game.GameSymbolType.CROSS : Game.GameSymbolType.CIRCLE;
+    }
+
+    private void sendReply(final ServerWebSocket webSocket, final Object requestId, final JsonObject reply) {
+        reply.put("requestId", requestId);
+        webSocket.writeTextMessage(reply.encode());
+    }
+
 }
@@ -1,22 +1,205 @@
 package ttt_backend;
 
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import io.vertx.core.http.ServerWebSocket;
+import ttt_backend.metrics.Counter;
+import ttt_backend.metrics.LatencyHistogram;
 
+/**
+ *
+ * Subscriber of game events on a WebSocket.
+ *
+ * Events are written as long as the write queue of the socket is not full.
+ * Then they are kept in a bounded queue, flushed when the socket drains, and
+ * when also that queue is full the slow consumer policy is applied.
+ *
+ * The events of a game already sent (by sequence number) are skipped, so a
+ * stream resumed after a reconnection has no duplicates, even if the missed
+ * events are replayed while new ones are published.
+ *
+ */
 public class WebSocketListener implements EventListenerInterface {
+
+    /* what to do when a subscriber does not keep up with its events */
+    public enum SlowConsumerPolicy {
+        /* drop the oldest queued event */
+        DROP_OLDEST,
+        /* replace the queued events of a game with a resync event, to fetch the game state */
+        COALESCE,
+        /* close the socket */
+        DISCONNECT
+    }
+
+    /* settings and metrics of the fan-out, shared by all the listeners */
+    public record Backpressure(SlowConsumerPolicy policy, int maxQueuedEvents, LatencyHistogram writeLatency,
+            Counter dropped, Counter coalesced, Counter disconnected) {}
+
+    /* an event waiting for the socket to drain */
+    private record Pending(String gameId, GameEvent event) {}
+
     private final ServerWebSocket webSocket;
+    /* games this socket is subscribed to, with the sequence number of the last event sent */
+    private final Map<String, Integer> games;
+    private final Backpressure backpressure;
+    private final ArrayDeque<Pending> pending;
+    /* games with a queued resync event (coalesce policy) */
+    private final Set<String> resyncs;
+    /* events are sent as binary frames instead of JSON text */
+    private final boolean binary;
+    /* subscribed to the changes of the lobby */
+    private boolean lobby;
+    /* user of this socket waiting for an opponent, if any */
+    private String waitingUser;
+    /* disconnected as a slow consumer */
+    private boolean disconnected;
     private final static Logger logger = Logger.getLogger("[WebSocketListener]");
 
-    public WebSocketListener(final ServerWebSocket webSocket) {
+    public WebSocketListener(final ServerWebSocket webSocket, final Backpressure backpressure) {
         this.webSocket = webSocket;
+        this.games = new HashMap<>();
+        this.backpressure = backpressure;
+        this.pending = new ArrayDeque<>();
+        this.resyncs = new HashSet<>();
+        this.binary = WebSocketAcceptor.BINARY_SUBPROTOCOL.equals(webSocket.subProtocol());
+        webSocket.drainHandler(v -> this.flush());
+    }
+
+    /**
+     * Track a subscription of the socket
+     *
+     * @param gameId
+     * @return false if the socket was already subscribed to the game
+     */
+    public boolean addGame(final String gameId) {
+        return games.putIfAbsent(gameId, 0) == null;
+    }
+
+    /**
+     * Track a subscription of the socket, resumed after an event
+     *
+     * @param gameId
+     * @param lastSeq the sequence number of the last event the client got
+     */
+    public void resumeGame(final String gameId, final int lastSeq) {
+        games.put(gameId, lastSeq);
+    }
+
+    /* games this socket is subscribed to, until their game-ended event */
+    public Set<String> getGames() {
+        return games.keySet();
+    }
+
+    public void setLobby(final boolean lobby) {
+        this.lobby = lobby;
+    }
+
+    public boolean isLobby() {
+        return lobby;
+    }
+
+    public void setWaitingUser(final String userId) {
+        this.waitingUser = userId;
+    }
+
+    public String getWaitingUser() {
+        return waitingUser;
     }
 
     @Override
-    public void onEvent(final String eventData) {
-        logger.log(Level.INFO, "On event " + eventData);
-        webSocket.writeTextMessage(eventData);
+    public void onEvent(final String gameId, final GameEvent event) {
+        if (logger.isLoggable(Level.FINE)) {
+            logger.log(Level.FINE, "On event " + event);
+        }
+        if (disconnected) {
+            return;
+        }
+        if (event.seq() > 0) {
+            var last = games.get(gameId);
+            if (last != null) {
+                if (event.seq() <= last) {
+                    return;
+                }
+                games.put(gameId, event.seq());
+            }
+        }
+        if (pending.isEmpty() && !webSocket.writeQueueFull()) {
+            this.write(event);
+        } else if (resyncs.contains(gameId)) {
+            /* covered by the queued resync of the game */
+            backpressure.coalesced().inc();
+        } else if (pending.size() < backpressure.maxQueuedEvents()) {
+            pending.add(new Pending(gameId, event));
+        } else {
+            this.overflow(gameId, event);
+        }
+        if (event.endsGame()) {
+            /* the game has no more events: the registry dropped its subscribers */
+            games.remove(gameId);
+        }
+    }
+
+    private void overflow(final String gameId, final GameEvent event) {
+        switch (backpressure.policy()) {
+            case DROP_OLDEST -> {
+                pending.poll();
+                pending.add(new Pending(gameId, event));
+                backpressure.dropped().inc();
+            }
+            case COALESCE -> {
+                /* 
+                 * one resync event for each game with queued events: the queue 
+                 * is then bounded by the number of games of the socket
+                 */
+                if (pending.size() == resyncs.size()) {
+                    /* only resyncs queued already */
+                    pending.add(new Pending(gameId, GameEvent.resync(gameId)));
+                    resyncs.add(gameId);
+                    return;
+                }
+                var games = new LinkedHashSet<String>();
+                for (Pending p : pending) {
+                    games.add(p.gameId());
+                }
+                games.add(gameId);
+                backpressure.coalesced().add(pending.size() + 1 - games.size());
+                pending.clear();
+                for (String id : games) {
+                    pending.add(new Pending(id, GameEvent.resync(id)));
+                }
+                resyncs.addAll(games);
+            }
+            case DISCONNECT -> {
+                backpressure.disconnected().inc();
+                pending.clear();
+                disconnected = true;
+                webSocket.close((short) 1008, "Too slow");
+            }
+        }
+    }
+
+    /* write the queued events, while the socket accepts them */
+    private void flush() {
+        Pending p;
+        while (!webSocket.writeQueueFull() && (p = pending.poll()) != null) {
+            if (!resyncs.isEmpty()) {
+                resyncs.remove(p.gameId());
+            }
+            this.write(p.event());
+        }
+    }
+
+    private void write(final GameEvent event) {
+        long start = System.nanoTime();
+        webSocket.writeFrame(binary ? event.toBinaryFrame() : event.toTextFrame());
+        backpressure.writeLatency().recordSince(start);
     }
 
 }
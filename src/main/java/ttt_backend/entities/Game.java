@@ -1,6 +1,5 @@
 package ttt_backend.entities;
 
-import java.util.HashMap;
 import java.util.Optional;
 
 import ttt_backend.exceptions.CannotStartGameException;
@@ -20,13 +19,30 @@ public class Game {
 	/* data structure representing a player, i.e. a user bound to a symbol */
 	public record Player(User user, GameSymbolType symbol) {}
 	/* the two players */
-	private HashMap<GameSymbolType, Player> players;
+	private Player crossPlayer;
+	private Player circlePlayer;
 
 	public enum GameSymbolType { CROSS, CIRCLE, EMPTY};
 
-	/* grid */
-	private GameSymbolType[][] grid;
-	private int numFreeCellsLeft;
+	/* 
+	 * grid, as two bitboards: bit (y * 3 + x) is set 
+	 * if the cell is occupied by the player 
+	 */
+	private int crossCells;
+	private int circleCells;
+
+	/* sequence of the moves, as cell indexes packed in 4 bits each */
+	private long moves;
+
+	/* all the cells */
+	private static final int FULL_GRID = 0x1FF;
+
+	/* the 8 winning lines: 3 rows, 3 columns, 2 diagonals */
+	private static final int[] WIN_MASKS = {
+		0b000_000_111, 0b000_111_000, 0b111_000_000,
+		0b001_001_001, 0b010_010_010, 0b100_100_100,
+		0b100_010_001, 0b001_010_100
+	};
 
 	public enum GameState { WAITING_PLAYER, PLAYING, FINISHED }
 
@@ -37,7 +53,7 @@ public class Game {
 	private GameSymbolType currentTurn;
 	
 	/* the winner (if present) of this game */
-	private Optional<Player> winner;
+	private Player winner;
 		
 	/**
 	 * 
@@ -47,15 +63,7 @@ public class Game {
 	 */
 	public Game(String id) {
 		this.id = id;
-		grid = new GameSymbolType[3][3];
-		for (int y = 0; y < 3; y++) {
-			for (int x = 0; x < 3; x++) {
-				grid[y][x] = GameSymbolType.EMPTY;
-			}
-		}
-		players = new HashMap<>();
 		state = GameState.WAITING_PLAYER;
-		winner = Optional.empty();
 	}	
 
 	public String getId() {
@@ -70,10 +78,16 @@ public class Game {
 	 * @throws InvalidJoinException
 	 */
 	public void joinGame(User user, GameSymbolType symbol) throws InvalidJoinException {
-		if (!state.equals(GameState.WAITING_PLAYER) || players.containsKey(symbol)) {
+		if (state != GameState.WAITING_PLAYER || player(symbol) != null) {
 			throw new InvalidJoinException();
 		}	
-		players.put(symbol, new Player(user, symbol));
+		if (symbol == GameSymbolType.CROSS) {
+			crossPlayer = new Player(user, symbol);
+		} else if (symbol == GameSymbolType.CIRCLE) {
+			circlePlayer = new Player(user, symbol);
+		} else {
+			throw new InvalidJoinException();
+		}
 	}
 
 	/**
@@ -83,9 +97,8 @@ public class Game {
 	 * @throws CannotStartGameException
 	 */
 	public void start() throws CannotStartGameException {
-		if (players.size() == 2) {
+		if (state == GameState.WAITING_PLAYER && bothPlayersJoined()) {
 			state = GameState.PLAYING;
-			numFreeCellsLeft = 9;
 			currentTurn = GameSymbolType.CROSS;
 		} else {
 			throw new CannotStartGameException();
@@ -102,22 +115,27 @@ public class Game {
 	 * @throws InvalidMoveException
 	 */
 	public void makeAmove(User player, GameSymbolType symbol, int x, int y) throws InvalidMoveException {
-		if (state.equals(GameState.PLAYING) && symbol.equals(currentTurn)) {
-			var p = players.get(symbol);
-			if (p.user().equals(player)) {
-				if (grid[y][x].equals(GameSymbolType.EMPTY)) {
-					grid[y][x] = symbol;
-					currentTurn = adversarial(symbol);
-					checkState();			
-				} else {
-					throw new InvalidMoveException();
-				}
-			} else {
-				throw new InvalidMoveException();				
-			}
-		} else {
+		if (state != GameState.PLAYING || symbol != currentTurn || x < 0 || x > 2 || y < 0 || y > 2) {
 			throw new InvalidMoveException();			
 		}
+		var p = player(symbol);
+		if (!p.user().equals(player)) {
+			throw new InvalidMoveException();				
+		}
+		int index = y * 3 + x;
+		int cell = 1 << index;
+		if (((crossCells | circleCells) & cell) != 0) {
+			throw new InvalidMoveException();
+		}
+		moves |= (long) index << (4 * getNumMoves());
+		if (symbol == GameSymbolType.CROSS) {
+			crossCells |= cell;
+			checkState(crossCells, crossPlayer);
+		} else {
+			circleCells |= cell;
+			checkState(circleCells, circlePlayer);
+		}
+		currentTurn = adversarial(symbol);
 	}
 
 	/**
@@ -137,8 +155,8 @@ public class Game {
 	 * @return
 	 */
 	public Optional<GameSymbolType> getWinner() {
-		if (winner.isPresent()) {
-			return Optional.of(winner.get().symbol());
+		if (winner != null) {
+			return Optional.of(winner.symbol());
 		} else {
 			return Optional.empty();
 		}
@@ -151,7 +169,7 @@ public class Game {
 	 * @return
 	 */
 	public boolean isTie() {
-		return isGameEnd() && winner.isEmpty();
+		return isGameEnd() && winner == null;
 	}
 	
 	/**
@@ -161,45 +179,117 @@ public class Game {
 	 * @return
 	 */
 	public boolean bothPlayersJoined() {
-		return players.size() == 2;
+		return crossPlayer != null && circlePlayer != null;
 	}
 
 	
-	private void checkState() {
-		for (int y = 0; y < 3; y++) {
-			if (!grid[y][0].equals(GameSymbolType.EMPTY) && 
-				grid[y][0].equals(grid[y][1]) && 
-				grid[y][1].equals(grid[y][2])){
-					winner = Optional.of(players.get(grid[y][0]));
-					state = GameState.FINISHED;
-					return;
-			}
+	/**
+	 * 
+	 * Get the state of the game
+	 * 
+	 * @return
+	 */
+	public GameState getState() {
+		return state;
+	}
+
+	/**
+	 * 
+	 * Get the user playing with a symbol
+	 * 
+	 * @param symbol
+	 * @return
+	 */
+	public Optional<User> getUser(GameSymbolType symbol) {
+		var p = player(symbol);
+		return p == null ? Optional.empty() : Optional.of(p.user());
+	}
+
+	/**
+	 * 
+	 * Get the number of moves made so far
+	 * 
+	 * @return
+	 */
+	public int getNumMoves() {
+		return Integer.bitCount(crossCells | circleCells);
+	}
+
+	/**
+	 * 
+	 * Get the cells occupied by a player, as a bitboard:
+	 * bit (y * 3 + x) is set if the cell is occupied
+	 * 
+	 * @param symbol
+	 * @return
+	 */
+	public int getCells(GameSymbolType symbol) {
+		if (symbol == GameSymbolType.CROSS) {
+			return crossCells;
+		} else if (symbol == GameSymbolType.CIRCLE) {
+			return circleCells;
+		} else {
+			return ~(crossCells | circleCells) & FULL_GRID;
 		}
-		for (int x = 0; x < 3; x++) {
-			if (!grid[0][x].equals(GameSymbolType.EMPTY) && 	
-				grid[0][x].equals(grid[1][x]) && 
-				grid[1][x].equals(grid[2][x])){
-					winner = Optional.of(players.get(grid[0][x]));
-					state = GameState.FINISHED;
-					return;
+	}
+
+	/**
+	 * 
+	 * Get the symbol of the player to move
+	 * 
+	 * @return
+	 */
+	public GameSymbolType getCurrentTurn() {
+		return currentTurn;
+	}
+
+	/**
+	 * 
+	 * Get the sequence of the moves made so far: the i-th move is
+	 * the cell index (y * 3 + x) stored in the 4 bits at position 4 * i.
+	 * Moves alternate, starting from cross.
+	 * 
+	 * @return
+	 */
+	public long getMoveSequence() {
+		return moves;
+	}
+
+	/**
+	 * 
+	 * Check the state after a move
+	 * 
+	 * @param cells the bitboard of the player who just moved
+	 * @param mover the player who just moved
+	 */
+	private void checkState(int cells, Player mover) {
+		for (int mask : WIN_MASKS) {
+			if ((cells & mask) == mask) {
+				winner = mover;
+				state = GameState.FINISHED;
+				return;
 			}
 		}
-		if (!grid[0][0].equals(GameSymbolType.EMPTY) && grid[0][0].equals(grid[1][1]) && grid[1][1].equals(grid[2][2])){
-			winner = Optional.of(players.get(grid[0][0]));
-			state = GameState.FINISHED;
-			return;
-		}
-		if (!grid[2][0].equals(GameSymbolType.EMPTY) && grid[2][0].equals(grid[1][1]) && grid[1][1].equals(grid[0][2])){
-			winner = Optional.of(players.get(grid[2][0]));
+		if (numFreeCellsLeft() == 0) {
 			state = GameState.FINISHED;
-			return;
 		}
-		if (this.numFreeCellsLeft == 0) {
-			state = GameState.FINISHED;
+	}
+
+	private int numFreeCellsLeft() {
+		return 9 - Integer.bitCount((crossCells | circleCells) & FULL_GRID);
+	}
+
+	private Player player(GameSymbolType symbol) {
+		if (symbol == GameSymbolType.CROSS) {
+			return crossPlayer;
+		} else if (symbol == GameSymbolType.CIRCLE) {
+			return circlePlayer;
+		} else {
+			return null;
 		}
 	}
 	
 	private GameSymbolType adversarial(GameSymbolType sym) {
-		return sym.equals(GameSymbolType.CIRCLE) ? GameSymbolType.CROSS : GameSymbolType.CIRCLE;
+		return sym == GameSymbolType.CIRCLE ? GameSymbolType.CROSS : GameSymbolType.CIRCLE;
 	}
 }
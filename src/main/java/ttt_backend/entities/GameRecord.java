@@ -0,0 +1,41 @@
+package ttt_backend.entities;
+
+import java.util.Optional;
+
+import ttt_backend.entities.Game.GameState;
+import ttt_backend.entities.Game.GameSymbolType;
+
+/**
+ * 
+ * A read-only summary of a game, either ongoing or archived
+ * 
+ * @param id
+ * @param state
+ * @param crossUserId the id of the cross player, or null if not joined
+ * @param circleUserId the id of the circle player, or null if not joined
+ * @param moves the moves, packed as in {@link Game#getMoveSequence()}
+ * @param numMoves
+ * @param winner
+ */
+public record GameRecord(String id, GameState state, String crossUserId, String circleUserId, long moves,
+		int numMoves, Optional<GameSymbolType> winner) {
+
+	public static GameRecord of(Game game) {
+		return new GameRecord(game.getId(), game.getState(),
+				game.getUser(GameSymbolType.CROSS).map(User::id).orElse(null),
+				game.getUser(GameSymbolType.CIRCLE).map(User::id).orElse(null),
+				game.getMoveSequence(), game.getNumMoves(), game.getWinner());
+	}
+
+	public int moveX(int i) {
+		return cell(i) % 3;
+	}
+
+	public int moveY(int i) {
+		return cell(i) / 3;
+	}
+
+	private int cell(int i) {
+		return (int) (moves >>> (4 * i)) & 0xF;
+	}
+}
@@ -0,0 +1,14 @@
+package ttt_backend.entities;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 
+ * A page of the games waiting for a player
+ * 
+ * @param games in game id order
+ * @param seq the last change of the lobby included in the page
+ * @param next the id to ask the next page after, if there are more games
+ */
+public record LobbyPage(List<OpenGame> games, long seq, Optional<String> next) {}
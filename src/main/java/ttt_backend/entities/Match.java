@@ -0,0 +1,11 @@
+package ttt_backend.entities;
+
+import ttt_backend.entities.Game.GameSymbolType;
+
+/**
+ * 
+ * The outcome of matchmaking for a user: the game, already started, 
+ * and the symbol assigned to the user
+ * 
+ */
+public record Match(String gameId, GameSymbolType symbol) {}
@@ -0,0 +1,27 @@
+package ttt_backend.entities;
+
+import java.util.Optional;
+
+import ttt_backend.entities.Game.GameSymbolType;
+
+/**
+ * 
+ * A game waiting for a player, as listed in the lobby
+ * 
+ * @param gameId
+ * @param crossUserId the user who joined with the cross symbol, if any
+ * @param circleUserId the user who joined with the circle symbol, if any
+ */
+public record OpenGame(String gameId, Optional<String> crossUserId, Optional<String> circleUserId) {
+
+	public static OpenGame of(final Game game) {
+		return new OpenGame(game.getId(), game.getUser(GameSymbolType.CROSS).map(User::id),
+				game.getUser(GameSymbolType.CIRCLE).map(User::id));
+	}
+
+	/* the symbol is still free */
+	public boolean isOpen(final GameSymbolType symbol) {
+		return symbol == GameSymbolType.CROSS ? crossUserId.isEmpty() : circleUserId.isEmpty();
+	}
+
+}
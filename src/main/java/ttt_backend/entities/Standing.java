@@ -0,0 +1,10 @@
+package ttt_backend.entities;
+
+/**
+ * 
+ * The position of a user in the leaderboard
+ * 
+ * @param rank 1 plus the number of users with more points
+ * @param stats
+ */
+public record Standing(int rank, UserStats stats) {}
@@ -0,0 +1,39 @@
+package ttt_backend.entities;
+
+/**
+ * 
+ * The results of the games of a user. Users are ranked by points:
+ * 3 for a win, 1 for a tie.
+ * 
+ * @param userId
+ * @param userName
+ * @param wins
+ * @param losses
+ * @param ties
+ */
+public record UserStats(String userId, String userName, int wins, int losses, int ties) {
+
+	public static UserStats none(final User user) {
+		return new UserStats(user.id(), user.name(), 0, 0, 0);
+	}
+
+	public int points() {
+		return 3 * wins + ties;
+	}
+
+	public int games() {
+		return wins + losses + ties;
+	}
+
+	public UserStats withWin() {
+		return new UserStats(userId, userName, wins + 1, losses, ties);
+	}
+
+	public UserStats withLoss() {
+		return new UserStats(userId, userName, wins, losses + 1, ties);
+	}
+
+	public UserStats withTie() {
+		return new UserStats(userId, userName, wins, losses, ties + 1);
+	}
+}
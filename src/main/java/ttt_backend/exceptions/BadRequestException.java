@@ -0,0 +1,9 @@
+package ttt_backend.exceptions;
+
+public class BadRequestException extends Exception {
+
+	public BadRequestException(final String message) {
+		super(message, null, false, false);
+	}
+
+}
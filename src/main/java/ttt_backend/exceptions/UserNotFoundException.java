@@ -0,0 +1,5 @@
+package ttt_backend.exceptions;
+
+public class UserNotFoundException extends Exception {
+
+}
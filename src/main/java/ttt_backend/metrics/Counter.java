@@ -0,0 +1,25 @@
+package ttt_backend.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 
+ * A monotonic counter, cheap to update from any thread
+ * 
+ */
+public final class Counter {
+
+	private final LongAdder count = new LongAdder();
+
+	public void inc() {
+		count.increment();
+	}
+
+	public void add(long n) {
+		count.add(n);
+	}
+
+	public long get() {
+		return count.sum();
+	}
+}
@@ -0,0 +1,67 @@
+package ttt_backend.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 
+ * A latency histogram with fixed buckets, from 1 microsecond to 1 second.
+ * 
+ * Recording a value costs a few comparisons and two striped increments,
+ * with no allocation and no lock.
+ * 
+ */
+public final class LatencyHistogram {
+
+	/* upper bounds of the buckets, in nanoseconds */
+	static final long[] BOUNDS = {
+		1_000, 2_500, 5_000, 10_000, 25_000, 50_000, 100_000, 250_000, 500_000,
+		1_000_000, 2_500_000, 5_000_000, 10_000_000, 25_000_000, 50_000_000,
+		100_000_000, 250_000_000, 500_000_000, 1_000_000_000
+	};
+
+	/* one more bucket for +Inf */
+	private final LongAdder[] buckets;
+	private final LongAdder sum;
+
+	public LatencyHistogram() {
+		this.buckets = new LongAdder[BOUNDS.length + 1];
+		for (int i = 0; i < buckets.length; i++) {
+			buckets[i] = new LongAdder();
+		}
+		this.sum = new LongAdder();
+	}
+
+	/**
+	 * 
+	 * Record the time elapsed since a start time, got from {@link System#nanoTime()}
+	 * 
+	 * @param startNanos
+	 */
+	public void recordSince(long startNanos) {
+		this.record(System.nanoTime() - startNanos);
+	}
+
+	public void record(long nanos) {
+		int lo = 0;
+		int hi = BOUNDS.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (BOUNDS[mid] < nanos) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		buckets[lo].increment();
+		sum.add(nanos);
+	}
+
+	/* non cumulative count of bucket i */
+	long bucket(int i) {
+		return buckets[i].sum();
+	}
+
+	long sumNanos() {
+		return sum.sum();
+	}
+}
@@ -0,0 +1,110 @@
+package ttt_backend.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * 
+ * Registry of the metrics of the server, rendered in the
+ * Prometheus text exposition format.
+ * 
+ * Metrics are created once (at startup) and then updated
+ * without locks from any thread.
+ * 
+ */
+public class Metrics {
+
+	private enum Type { COUNTER, GAUGE, HISTOGRAM }
+
+	/* a metric name, with all its label sets */
+	private record Family(String name, String help, Type type, Map<String, Object> series) {}
+
+	private final Map<String, Family> families;
+
+	public Metrics() {
+		this.families = new LinkedHashMap<>();
+	}
+
+	/**
+	 * 
+	 * Get or create a counter
+	 * 
+	 * @param name
+	 * @param help
+	 * @param labels e.g. endpoint="makeAMove", or empty
+	 * @return
+	 */
+	public synchronized Counter counter(final String name, final String help, final String labels) {
+		return (Counter) this.family(name, help, Type.COUNTER).series().computeIfAbsent(labels, l -> new Counter());
+	}
+
+	public synchronized LatencyHistogram histogram(final String name, final String help, final String labels) {
+		return (LatencyHistogram) this.family(name, help, Type.HISTOGRAM).series()
+				.computeIfAbsent(labels, l -> new LatencyHistogram());
+	}
+
+	public synchronized void gauge(final String name, final String help, final LongSupplier value) {
+		this.family(name, help, Type.GAUGE).series().put("", value);
+	}
+
+	/**
+	 * 
+	 * Render all the metrics
+	 * 
+	 * @return
+	 */
+	public synchronized String scrape() {
+		var sb = new StringBuilder(4096);
+		for (Family f : families.values()) {
+			sb.append("# HELP ").append(f.name()).append(' ').append(f.help()).append('\n');
+			sb.append("# TYPE ").append(f.name()).append(' ').append(f.type().name().toLowerCase()).append('\n');
+			for (var e : f.series().entrySet()) {
+				var labels = e.getKey();
+				switch (f.type()) {
+				case COUNTER -> sample(sb, f.name(), labels, ((Counter) e.getValue()).get());
+				case GAUGE -> sample(sb, f.name(), labels, ((LongSupplier) e.getValue()).getAsLong());
+				case HISTOGRAM -> this.histogram(sb, f.name(), labels, (LatencyHistogram) e.getValue());
+				}
+			}
+		}
+		return sb.toString();
+	}
+
+	private void histogram(final StringBuilder sb, final String name, final String labels, final LatencyHistogram h) {
+		var sep = labels.isEmpty() ? "" : labels + ",";
+		long cumulative = 0;
+		for (int i = 0; i < LatencyHistogram.BOUNDS.length; i++) {
+			cumulative += h.bucket(i);
+			sb.append(name).append("_bucket{").append(sep).append("le=\"")
+					.append(LatencyHistogram.BOUNDS[i] / 1e9).append("\"} ").append(cumulative).append('\n');
+		}
+		cumulative += h.bucket(LatencyHistogram.BOUNDS.length);
+		sb.append(name).append("_bucket{").append(sep).append("le=\"+Inf\"} ").append(cumulative).append('\n');
+		sb.append(name).append("_sum");
+		labels(sb, labels);
+		sb.append(' ').append(h.sumNanos() / 1e9).append('\n');
+		sample(sb, name + "_count", labels, cumulative);
+	}
+
+	private static void sample(final StringBuilder sb, final String name, final String labels, final long value) {
+		sb.append(name);
+		labels(sb, labels);
+		sb.append(' ').append(value).append('\n');
+	}
+
+	private static void labels(final StringBuilder sb, final String labels) {
+		if (!labels.isEmpty()) {
+			sb.append('{').append(labels).append('}');
+		}
+	}
+
+	private Family family(final String name, final String help, final Type type) {
+		var f = families.computeIfAbsent(name, n -> new Family(n, help, type, new LinkedHashMap<>()));
+		if (f.type() != type) {
+			throw new IllegalArgumentException("Metric " + name + " already registered as " + f.type());
+		}
+		return f;
+	}
+
+}
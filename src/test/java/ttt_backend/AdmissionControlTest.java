@@ -0,0 +1,198 @@
+package ttt_backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServer;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+import ttt_backend.AdmissionControl.Limit;
+import ttt_backend.metrics.Metrics;
+
+/**
+ *
+ * Rate limits (with a clock moved by hand) and the limit of the requests in
+ * progress, through a local HTTP server
+ *
+ */
+public class AdmissionControlTest {
+
+	private Vertx vertx;
+	private Context context;
+	private HttpServer server;
+	private HttpClient client;
+	private final AtomicLong now = new AtomicLong(1_000_000_000L);
+	/* requests of the slow endpoint, answered by the test */
+	private final CopyOnWriteArrayList<RoutingContext> held = new CopyOnWriteArrayList<>();
+
+	@BeforeEach
+	public void setup() throws Exception {
+		vertx = Vertx.vertx();
+		context = vertx.getOrCreateContext();
+		client = vertx.createHttpClient();
+	}
+
+	@AfterEach
+	public void tearDown() throws Exception {
+		await(vertx.close());
+	}
+
+	private static <T> T await(final Future<T> future) throws Exception {
+		return future.toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS);
+	}
+
+	private void start(final Map<String, Limit> limits, final int maxInFlight) throws Exception {
+		var admission = new AdmissionControl(vertx, limits, maxInFlight, new Metrics(), now::get);
+		var router = Router.router(vertx);
+		router.route("/fast").handler(admission.endpoint("fast", false)).handler(ctx -> ctx.end("ok"));
+		router.route("/other").handler(admission.endpoint("other", false)).handler(ctx -> ctx.end("ok"));
+		router.route("/slow").handler(admission.endpoint("slow", false)).handler(held::add);
+		router.route("/poll").handler(admission.endpoint("poll", true)).handler(held::add);
+		server = await(vertx.createHttpServer().requestHandler(router).listen(0));
+	}
+
+	/*
+	 * status and Retry-After of a request, sent from an event loop: out of
+	 * it, the response could end before its body is read, and never complete
+	 */
+	private Future<String> send(final String path) {
+		Promise<String> result = Promise.promise();
+		context.runOnContext(v -> client.request(HttpMethod.GET, server.actualPort(), "localhost", path)
+				.compose(req -> req.send())
+				.compose(res -> res.body().map(body -> {
+					var retryAfter = res.getHeader("retry-after");
+					return res.statusCode() + (retryAfter == null ? "" : " retry " + retryAfter);
+				}))
+				.onComplete(result));
+		return result.future();
+	}
+
+	private String get(final String path) throws Exception {
+		return await(this.send(path));
+	}
+
+	private void advanceMillis(final long ms) {
+		now.addAndGet(TimeUnit.MILLISECONDS.toNanos(ms));
+	}
+
+	@Test
+	public void aBurstIsAdmittedThenRejectedUntilTheNextInterval() throws Exception {
+		this.start(Map.of("fast", new Limit(1, 3)), 0);
+		for (int i = 0; i < 3; i++) {
+			assertEquals("200", this.get("/fast"));
+		}
+		assertEquals("429 retry 1", this.get("/fast"));
+		assertEquals("429 retry 1", this.get("/fast"));
+
+		this.advanceMillis(999);
+		assertEquals("429 retry 1", this.get("/fast"));
+		this.advanceMillis(1);
+		assertEquals("200", this.get("/fast"));
+		assertEquals("429 retry 1", this.get("/fast"));
+
+		/* idle long enough: the whole burst again, not more */
+		this.advanceMillis(10_000);
+		for (int i = 0; i < 3; i++) {
+			assertEquals("200", this.get("/fast"));
+		}
+		assertEquals("429 retry 1", this.get("/fast"));
+	}
+
+	@Test
+	public void retryAfterIsTheWaitInSecondsRoundedUp() throws Exception {
+		this.start(Map.of("fast", new Limit(0.1, 1)), 0);
+		assertEquals("200", this.get("/fast"));
+		assertEquals("429 retry 10", this.get("/fast"));
+		this.advanceMillis(2500);
+		assertEquals("429 retry 8", this.get("/fast"));
+		this.advanceMillis(7500);
+		assertEquals("200", this.get("/fast"));
+	}
+
+	@Test
+	public void endpointsHaveTheirOwnBucketsAndTheDefault() throws Exception {
+		this.start(Map.of(AdmissionControl.DEFAULT, new Limit(1, 1), "fast", new Limit(1, 2)), 0);
+		assertEquals("200", this.get("/fast"));
+		assertEquals("200", this.get("/fast"));
+		assertEquals("429 retry 1", this.get("/fast"));
+		assertEquals("200", this.get("/other"));
+		assertEquals("429 retry 1", this.get("/other"));
+	}
+
+	@Test
+	public void noLimitAdmitsEverything() throws Exception {
+		this.start(AdmissionControl.parseLimits("none"), 0);
+		for (int i = 0; i < 100; i++) {
+			assertEquals("200", this.get("/fast"));
+		}
+	}
+
+	@Test
+	public void requestsBeyondTheInFlightLimitGet503() throws Exception {
+		this.start(Map.of(), 2);
+		var first = this.send("/slow");
+		var second = this.send("/slow");
+		for (int i = 0; i < 100 && held.size() < 2; i++) {
+			Thread.sleep(10);
+		}
+		assertEquals(2, held.size());
+		assertEquals("503 retry 1", this.get("/fast"));
+		/* long polls are not counted */
+		var poll = this.send("/poll");
+		for (int i = 0; i < 100 && held.size() < 3; i++) {
+			Thread.sleep(10);
+		}
+		assertEquals(3, held.size());
+
+		/* a request ended frees its slot */
+		held.get(0).end("done");
+		assertEquals("200", await(first));
+		assertEquals("200", this.get("/fast"));
+		held.get(1).end("done");
+		held.get(2).end("done");
+		assertEquals("200", await(second));
+		assertEquals("200", await(poll));
+	}
+
+	@Test
+	public void validLimitsAreParsed() {
+		assertEquals(Map.of(), AdmissionControl.parseLimits("none"));
+		assertEquals(Map.of(), AdmissionControl.parseLimits(" "));
+		assertEquals(Map.of("default", new Limit(20, 40), "registerUser", new Limit(1, 5)),
+				AdmissionControl.parseLimits("default=20/40,registerUser=1/5"));
+		assertEquals(Map.of("joinGame", new Limit(0.5, 2)), AdmissionControl.parseLimits(" joinGame = 0.5 / 2 "));
+		/* a rate of 0 is no limit */
+		assertEquals(Map.of("lobby", new Limit(3, 1)), AdmissionControl.parseLimits("default=0/1,lobby=3/1"));
+	}
+
+	@Test
+	public void invalidLimitsNameTheEntry() {
+		for (String[] specAndEntry : new String[][] { { "joinGame=5", "joinGame=5" },
+				{ "default=20/40,", "" }, { ",default=20/40", "" }, { "a=1/2,,b=1/2", "" },
+				{ "default=20/40,registerUser", "registerUser" }, { "x=1/2/3", "x=1/2/3" }, { "x=-1/2", "x=-1/2" },
+				{ "x=fast/2", "x=fast/2" }, { "x=1/2.5", "x=1/2.5" }, { "=1/2", "=1/2" },
+				{ "x=1/99999999999", "x=1/99999999999" } }) {
+			var ex = assertThrows(IllegalArgumentException.class, () -> AdmissionControl.parseLimits(specAndEntry[0]),
+					specAndEntry[0]);
+			assertTrue(ex.getMessage().contains("\"" + specAndEntry[1] + "\" in \"" + specAndEntry[0] + "\""),
+					ex.getMessage());
+		}
+	}
+
+}
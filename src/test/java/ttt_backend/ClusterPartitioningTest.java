@@ -0,0 +1,30 @@
+package ttt_backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * Ownership of the ids, parsed as by the shards (see Ids)
+ *
+ */
+public class ClusterPartitioningTest {
+
+	private final ClusterPartitioning partitioning = new ClusterPartitioning(3, 1);
+
+	@Test
+	public void ownerIsTheNumberModuloTheNodes() {
+		assertEquals(0, partitioning.ownerOf("game-12"));
+		assertEquals(1, partitioning.ownerOf("user-7"));
+		assertEquals(2, partitioning.ownerOf("game-5"));
+	}
+
+	@Test
+	public void nonCanonicalIdsHaveNoOwner() {
+		for (String id : new String[] { "game-007", "user-+5", "game--4", "game-", "user-1x", "player-4", null }) {
+			assertEquals(-1, partitioning.ownerOf(id), id);
+		}
+	}
+
+}
@@ -0,0 +1,56 @@
+package ttt_backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * Prefix counts checked against a plain array, across the growths of the
+ * tree
+ *
+ */
+public class FenwickTreeTest {
+
+	@Test
+	public void countsMatchAPlainArray() {
+		var tree = new FenwickTree();
+		var counts = new int[1000];
+		var random = new Random(7);
+		for (int op = 0; op < 5000; op++) {
+			/* mostly small values, some far beyond the capacity */
+			int value = random.nextInt(10) == 0 ? random.nextInt(counts.length) : random.nextInt(40);
+			int delta = counts[value] > 0 && random.nextBoolean() ? -1 : 1;
+			tree.add(value, delta);
+			counts[value] += delta;
+			if (op % 97 == 0) {
+				int sum = 0;
+				for (int v = 0; v < counts.length; v++) {
+					sum += counts[v];
+					assertEquals(sum, tree.countUpTo(v), "up to " + v);
+				}
+				assertEquals(sum, tree.count());
+			}
+		}
+	}
+
+	@Test
+	public void growingKeepsTheCounts() {
+		var tree = new FenwickTree();
+		tree.add(0, 2);
+		tree.add(63, 1);
+		tree.add(64, 1);
+		assertEquals(4, tree.count());
+		tree.add(5000, 3);
+		assertEquals(2, tree.countUpTo(0));
+		assertEquals(3, tree.countUpTo(63));
+		assertEquals(4, tree.countUpTo(4999));
+		assertEquals(7, tree.countUpTo(5000));
+		assertEquals(7, tree.countUpTo(Integer.MAX_VALUE - 1));
+		assertEquals(0, tree.countUpTo(-1));
+		assertEquals(7, tree.count());
+	}
+
+}
@@ -0,0 +1,82 @@
+package ttt_backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import ttt_backend.entities.GameRecord;
+import ttt_backend.entities.Game.GameState;
+import ttt_backend.entities.Game.GameSymbolType;
+
+/**
+ *
+ * Archived games stay queryable by id after a restart: new games get
+ * ids after the archived ones
+ *
+ */
+public class GameArchiveTest {
+
+	@TempDir
+	Path dir;
+
+	private Vertx vertx;
+
+	@BeforeEach
+	public void setup() {
+		vertx = Vertx.vertx();
+	}
+
+	@AfterEach
+	public void tearDown() throws Exception {
+		await(vertx.close());
+	}
+
+	private static <T> T await(final Future<T> future) throws Exception {
+		return future.toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS);
+	}
+
+	private static GameRecord finished(final String gameId) {
+		return new GameRecord(gameId, GameState.FINISHED, "user-1", "user-2", 0x840, 3,
+				Optional.of(GameSymbolType.CROSS));
+	}
+
+	@Test
+	public void newIdsFollowTheArchivedGames() throws Exception {
+		var archive = new GameArchive(vertx, dir);
+		assertEquals(-1, archive.lastGameNumber());
+		await(archive.archive(finished("game-5")));
+		await(archive.archive(finished("game-2")));
+
+		var reopened = new GameArchive(vertx, dir);
+		assertEquals(5, reopened.lastGameNumber());
+		var games = new GameRegistry();
+		games.allocateAfter(reopened.lastGameNumber());
+		assertEquals("game-6", games.nextGameId());
+		assertEquals(finished("game-5"), await(reopened.find("game-5")).orElseThrow());
+	}
+
+	@Test
+	public void newIdsStayInThePartitionOfTheNode() throws Exception {
+		var games = new GameRegistry(new ClusterPartitioning(3, 2));
+		/* game-8 is the third game of node 2 */
+		games.allocateAfter(8);
+		assertEquals("game-11", games.nextGameId());
+	}
+
+	@Test
+	public void anEmptyArchiveKeepsTheFirstIds() {
+		var games = new GameRegistry();
+		games.allocateAfter(-1);
+		assertEquals("game-1", games.nextGameId());
+	}
+
+}
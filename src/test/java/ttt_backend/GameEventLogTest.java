@@ -0,0 +1,89 @@
+package ttt_backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.vertx.core.Vertx;
+import ttt_backend.entities.Game.GameSymbolType;
+
+/**
+ *
+ * The events of a game are kept for replay while the game is live, and
+ * for the retention time after it is gone
+ *
+ */
+public class GameEventLogTest {
+
+	private static final long RETENTION_MS = 20;
+
+	private Vertx vertx;
+	private GameEventLog log;
+
+	@BeforeEach
+	public void setup() {
+		vertx = Vertx.vertx();
+		log = new GameEventLog(vertx, GameEventLog.DEFAULT_CAPACITY, RETENTION_MS);
+	}
+
+	@AfterEach
+	public void tearDown() throws Exception {
+		vertx.close().toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS);
+	}
+
+	private static void awaitGames(final GameEventLog log, final int games) throws InterruptedException {
+		for (int i = 0; i < 250 && log.games() != games; i++) {
+			Thread.sleep(RETENTION_MS);
+		}
+		assertEquals(games, log.games());
+	}
+
+	@Test
+	public void missedEventsAreReplayedInOrder() {
+		var delivered = new CopyOnWriteArrayList<GameEvent>();
+		log.append("game-1", GameEvent::gameStarted, delivered::add);
+		log.append("game-1", seq -> GameEvent.newMove(1, 1, GameSymbolType.CROSS, seq), delivered::add);
+		log.append("game-1", seq -> GameEvent.newMove(0, 1, GameSymbolType.CIRCLE, seq), delivered::add);
+		assertEquals(List.of(1, 2, 3), delivered.stream().map(GameEvent::seq).toList());
+		assertEquals(delivered.subList(1, 3), log.since("game-1", 1));
+		assertEquals(List.of(), log.since("game-1", 3));
+		assertNull(log.since("game-1", 4));
+		assertEquals(List.of(), log.since("game-2", 0));
+		assertNull(log.since("game-2", 1));
+	}
+
+	@Test
+	public void theRingOfAnOwnedGameGoesWithTheGame() throws Exception {
+		/* never ended: kept while live, dropped once removed from its shard */
+		log.append("game-1", GameEvent::gameStarted, ev -> {
+		});
+		log.append("game-2", GameEvent::gameStarted, ev -> {
+		});
+		log.append("game-2", seq -> GameEvent.gameEnded(null, seq), ev -> {
+		});
+		Thread.sleep(5 * RETENTION_MS);
+		assertEquals(2, log.games());
+
+		log.expire("game-1");
+		log.expire("game-2");
+		awaitGames(log, 0);
+		assertNull(log.since("game-2", 1));
+	}
+
+	@Test
+	public void theRingOfARemoteGameGoesAfterGameEnded() throws Exception {
+		log.record("game-4", GameEvent.gameStarted(1), ev -> {
+		});
+		log.record("game-4", GameEvent.gameEnded(GameSymbolType.CROSS, 2), ev -> {
+		});
+		awaitGames(log, 0);
+	}
+
+}
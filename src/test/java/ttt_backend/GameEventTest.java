@@ -0,0 +1,74 @@
+package ttt_backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import ttt_backend.entities.Game.GameSymbolType;
+
+/**
+ *
+ * Encodings of the game events, and the frames sharing them
+ *
+ */
+public class GameEventTest {
+
+	@Test
+	public void textFrameCarriesTheJsonEncoding() {
+		var ev = GameEvent.newMove(1, 2, GameSymbolType.CIRCLE, 4);
+		var frame = ev.toTextFrame();
+		assertTrue(frame.isText());
+		assertTrue(frame.isFinal());
+		var json = new JsonObject(frame.textData());
+		assertEquals("new-move", json.getString("event"));
+		assertEquals(1, json.getInteger("x"));
+		assertEquals(2, json.getInteger("y"));
+		assertEquals("circle", json.getString("symbol"));
+		assertEquals(4, json.getInteger("seq"));
+	}
+
+	@Test
+	public void binaryFrameCarriesTheBinaryEncoding() {
+		var ev = GameEvent.gameEnded(GameSymbolType.CROSS, 7);
+		var frame = ev.toBinaryFrame();
+		assertTrue(frame.isBinary());
+		assertTrue(frame.isFinal());
+		assertEquals(ev.binary(), frame.binaryData());
+	}
+
+	@Test
+	public void binaryEventsEndWithTheirSeq() {
+		assertEquals(Buffer.buffer(new byte[] { 1, 1 }), GameEvent.gameStarted(1).binary());
+		assertEquals(Buffer.buffer(new byte[] { 2, 0, 2, 1, 6 }),
+				GameEvent.newMove(0, 2, GameSymbolType.CROSS, 6).binary());
+		assertEquals(Buffer.buffer(new byte[] { 3, 0, 11 }), GameEvent.gameEnded(null, 11).binary());
+		assertEquals(Buffer.buffer(new byte[] { 4, 0 }), GameEvent.resync("game-1").binary());
+		/* a varint: 300 = 0b10_0101100 */
+		assertEquals(Buffer.buffer(new byte[] { 3, 2, (byte) 0xAC, 0x02 }),
+				GameEvent.gameEnded(GameSymbolType.CIRCLE, 300).binary());
+	}
+
+	@Test
+	public void theCodecKeepsBothEncodingsAndTheSeq() {
+		var codec = new GameEventCodec();
+		var ev = GameEvent.newMove(2, 1, GameSymbolType.CIRCLE, 9);
+		var wire = Buffer.buffer().appendString("header");
+		codec.encodeToWire(wire, ev);
+		var decoded = codec.decodeFromWire(6, wire);
+		assertEquals(ev.json(), decoded.json());
+		assertEquals(ev.binary(), decoded.binary());
+		assertEquals(9, decoded.seq());
+	}
+
+	@Test
+	public void framesCanBeMadeManyTimes() {
+		var ev = GameEvent.gameStarted(1);
+		for (int i = 0; i < 3; i++) {
+			assertEquals(ev.json().toString(), ev.toTextFrame().textData());
+		}
+	}
+
+}
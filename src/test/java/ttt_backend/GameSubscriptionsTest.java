@@ -0,0 +1,160 @@
+package ttt_backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.ServerWebSocket;
+import io.vertx.core.http.WebSocketFrame;
+import ttt_backend.entities.Game.GameSymbolType;
+import ttt_backend.metrics.Metrics;
+
+/**
+ *
+ * No subscription is left behind: neither in the registry nor in the
+ * sockets, once a game ends or a socket closes
+ *
+ */
+public class GameSubscriptionsTest {
+
+	private Vertx vertx;
+	private Context context;
+	private GameSubscriptions subscriptions;
+	private WebSocketListener.Backpressure backpressure;
+
+	@BeforeEach
+	public void setup() {
+		vertx = Vertx.vertx();
+		context = vertx.getOrCreateContext();
+		subscriptions = new GameSubscriptions();
+		var metrics = new Metrics();
+		backpressure = new WebSocketListener.Backpressure(WebSocketListener.SlowConsumerPolicy.DROP_OLDEST, 8,
+				metrics.histogram("write", "", ""), metrics.counter("dropped", "", ""),
+				metrics.counter("coalesced", "", ""), metrics.counter("disconnected", "", ""));
+	}
+
+	@AfterEach
+	public void tearDown() throws Exception {
+		vertx.close().toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS);
+	}
+
+	/* run on the context of the sockets, as the acceptor and the shards do */
+	private <T> T onContext(final Callable<T> task) throws Exception {
+		var result = new CompletableFuture<T>();
+		context.runOnContext(v -> {
+			try {
+				result.complete(task.call());
+			} catch (final Exception ex) {
+				result.completeExceptionally(ex);
+			}
+		});
+		return result.get(5, TimeUnit.SECONDS);
+	}
+
+	/* a socket that accepts every frame */
+	private static ServerWebSocket socket(final List<WebSocketFrame> written) {
+		return (ServerWebSocket) Proxy.newProxyInstance(ServerWebSocket.class.getClassLoader(),
+				new Class<?>[] { ServerWebSocket.class }, (proxy, method, args) -> switch (method.getName()) {
+					case "writeFrame" -> {
+						written.add((WebSocketFrame) args[0]);
+						yield null;
+					}
+					case "writeQueueFull" -> false;
+					case "drainHandler" -> proxy;
+					default -> null;
+				});
+	}
+
+	private WebSocketListener subscribe(final List<WebSocketFrame> written, final String... gameIds) {
+		var listener = new WebSocketListener(socket(written), backpressure);
+		for (String gameId : gameIds) {
+			listener.addGame(gameId);
+			subscriptions.subscribe(gameId, listener, context);
+		}
+		return listener;
+	}
+
+	/* as the close handler of the acceptor */
+	private void close(final WebSocketListener listener) {
+		for (String gameId : Set.copyOf(listener.getGames())) {
+			subscriptions.unsubscribe(gameId, listener);
+		}
+	}
+
+	@Test
+	public void nothingIsLeftAfterGameEnded() throws Exception {
+		var written = new CopyOnWriteArrayList<WebSocketFrame>();
+		var listeners = onContext(() -> List.of(this.subscribe(written, "game-1", "game-2"),
+				this.subscribe(written, "game-1")));
+		assertEquals(3, subscriptions.subscribers());
+		assertEquals(2, subscriptions.games());
+
+		onContext(() -> {
+			subscriptions.publish("game-1", GameEvent.gameStarted(1));
+			subscriptions.publish("game-1", GameEvent.newMove(0, 0, GameSymbolType.CROSS, 2));
+			subscriptions.publish("game-1", GameEvent.gameEnded(null, 3));
+			return null;
+		});
+		assertEquals(6, written.size());
+		assertEquals(1, subscriptions.subscribers());
+		assertEquals(1, subscriptions.games());
+		assertEquals(Set.of("game-2"), listeners.get(0).getGames());
+		assertTrue(listeners.get(1).getGames().isEmpty());
+
+		onContext(() -> {
+			subscriptions.publish("game-2", GameEvent.gameEnded(GameSymbolType.CIRCLE, 1));
+			return null;
+		});
+		assertEquals(0, subscriptions.subscribers());
+		assertEquals(0, subscriptions.games());
+		assertTrue(listeners.get(0).getGames().isEmpty());
+	}
+
+	@Test
+	public void nothingIsLeftAfterTheSocketsClose() throws Exception {
+		var written = new CopyOnWriteArrayList<WebSocketFrame>();
+		var listeners = onContext(() -> List.of(this.subscribe(written, "game-1", "game-2", "game-3"),
+				this.subscribe(written, "game-2")));
+		assertEquals(4, subscriptions.subscribers());
+
+		onContext(() -> {
+			this.close(listeners.get(0));
+			return null;
+		});
+		assertEquals(1, subscriptions.subscribers());
+		assertEquals(1, subscriptions.games());
+
+		onContext(() -> {
+			this.close(listeners.get(1));
+			return null;
+		});
+		assertEquals(0, subscriptions.subscribers());
+		assertEquals(0, subscriptions.games());
+	}
+
+	@Test
+	public void aSecondSubscriptionIsIgnored() throws Exception {
+		var written = new CopyOnWriteArrayList<WebSocketFrame>();
+		onContext(() -> this.subscribe(written, "game-1", "game-1"));
+		assertEquals(1, subscriptions.subscribers());
+		onContext(() -> {
+			subscriptions.publish("game-1", GameEvent.gameStarted(1));
+			return null;
+		});
+		assertEquals(1, written.size());
+	}
+
+}
@@ -0,0 +1,183 @@
+package ttt_backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import ttt_backend.entities.User;
+
+/**
+ *
+ * Registrations committed in batches: every caller is answered, on its
+ * own context, with a user that is on disk
+ *
+ */
+public class GroupCommitUserRepoTest {
+
+	private static final int USERS = 25;
+	private static final int BATCH = 10;
+	private static final long SLOW_COMMIT_MS = 20;
+
+	@TempDir
+	Path dir;
+
+	private Vertx vertx;
+
+	@BeforeEach
+	public void setup() {
+		vertx = Vertx.vertx();
+	}
+
+	@AfterEach
+	public void tearDown() throws Exception {
+		vertx.close().toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS);
+	}
+
+	/* the journal, recording the size of each group commit */
+	private static final class RecordingStore extends JournalDAO {
+		final List<Integer> commits = new CopyOnWriteArrayList<>();
+
+		RecordingStore(final Path dir) {
+			super(dir, 1000);
+		}
+
+		@Override
+		public synchronized List<User> addUsers(final List<String> usernames) {
+			commits.add(usernames.size());
+			return super.addUsers(usernames);
+		}
+	}
+
+	@Test
+	public void everyRegistrationOfABatchCompletesAndIsPersisted() throws Exception {
+		var store = new RecordingStore(dir);
+		var repo = new GroupCommitUserRepo(vertx, store, 20, BATCH);
+
+		var registered = new CompletableFuture<List<User>>();
+		var callerContext = new CompletableFuture<Context>();
+		var answeredOn = new CopyOnWriteArrayList<Context>();
+		vertx.runOnContext(v -> {
+			callerContext.complete(Vertx.currentContext());
+			var futures = new ArrayList<Future<User>>();
+			for (int i = 0; i < USERS; i++) {
+				futures.add(repo.addUser("player" + i).onSuccess(u -> answeredOn.add(Vertx.currentContext())));
+			}
+			Future.all(futures).onComplete(ar -> {
+				if (ar.succeeded()) {
+					registered.complete(ar.result().list());
+				} else {
+					registered.completeExceptionally(ar.cause());
+				}
+			});
+		});
+		var users = registered.get(5, TimeUnit.SECONDS);
+
+		var ids = new HashSet<String>();
+		for (int i = 0; i < USERS; i++) {
+			assertEquals("player" + i, users.get(i).name());
+			ids.add(users.get(i).id());
+		}
+		assertEquals(USERS, ids.size());
+		for (var ctx : answeredOn) {
+			assertSame(callerContext.get(), ctx);
+		}
+		/* full batches at once, the rest at the next flush (which may also run in between) */
+		assertEquals(USERS, store.commits.stream().mapToInt(Integer::intValue).sum());
+		assertTrue(store.commits.stream().allMatch(n -> n <= BATCH));
+		assertTrue(store.commits.size() <= USERS / BATCH + 2, "commits: " + store.commits);
+
+		store.close();
+		var reopened = new JournalDAO(dir, 1000);
+		assertEquals(USERS, reopened.countUsers());
+		for (User u : users) {
+			assertEquals(u, reopened.getUserById(u.id()));
+		}
+		reopened.close();
+	}
+
+	@Test
+	public void aSingleRegistrationIsFlushedByTheTimer() throws Exception {
+		var store = new RecordingStore(dir);
+		var repo = new GroupCommitUserRepo(vertx, store, 20, BATCH);
+		var user = repo.addUser("alone").toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS);
+		assertEquals("alone", user.name());
+		assertEquals(List.of(1), store.commits);
+		assertEquals(user, store.getUserById(user.id()));
+		store.close();
+	}
+
+	/* the journal on a slow disk: each group commit takes a while */
+	private static final class SlowStore extends JournalDAO {
+		SlowStore(final Path dir) {
+			super(dir, 100_000);
+		}
+
+		@Override
+		public synchronized List<User> addUsers(final List<String> usernames) {
+			try {
+				Thread.sleep(SLOW_COMMIT_MS);
+			} catch (final InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+			return super.addUsers(usernames);
+		}
+	}
+
+	@Test
+	public void aRegistrationBurstDoesNotStallTheEventLoop() throws Exception {
+		int burst = 2000;
+		int batch = 100;
+		var store = new SlowStore(dir);
+		var repo = new GroupCommitUserRepo(vertx, store, 5, batch);
+
+		/* the lag of a periodic timer on the loop of the callers, while the burst is committed */
+		var done = new CompletableFuture<Long>();
+		vertx.runOnContext(v -> {
+			long start = System.nanoTime();
+			var futures = new ArrayList<Future<User>>(burst);
+			for (int i = 0; i < burst; i++) {
+				futures.add(repo.addUser("burst" + i));
+			}
+			long period = TimeUnit.MILLISECONDS.toNanos(5);
+			long[] last = { System.nanoTime() };
+			long[] maxLag = { 0 };
+			long timer = vertx.setPeriodic(5, id -> {
+				long now = System.nanoTime();
+				maxLag[0] = Math.max(maxLag[0], now - last[0] - period);
+				last[0] = now;
+			});
+			Future.all(futures).onComplete(ar -> {
+				vertx.cancelTimer(timer);
+				if (ar.failed()) {
+					done.completeExceptionally(ar.cause());
+				} else if (System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(burst / batch * SLOW_COMMIT_MS)) {
+					done.completeExceptionally(new AssertionError("The commits were not slow"));
+				} else {
+					done.complete(TimeUnit.NANOSECONDS.toMillis(maxLag[0]));
+				}
+			});
+		});
+		/* 20 commits of 20 ms at least: 400 ms of blocking I/O, off the loop */
+		long maxLagMs = done.get(30, TimeUnit.SECONDS);
+		assertTrue(maxLagMs < 100, "the event loop stalled for " + maxLagMs + " ms");
+		assertEquals(burst, store.countUsers());
+		store.close();
+	}
+
+}
@@ -0,0 +1,107 @@
+package ttt_backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import ttt_backend.entities.User;
+
+/**
+ *
+ * Recovery of the users dbase from its snapshot and journal segments
+ *
+ */
+public class JournalDAOTest {
+
+	@TempDir
+	Path dir;
+
+	private void write(final String file, final User... users) throws Exception {
+		var sb = new StringBuilder();
+		for (User u : users) {
+			sb.append(JournalDAO.encode(u)).append('\n');
+		}
+		Files.writeString(dir.resolve(file), sb, StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void leftoverSegmentIsCompactedAtStartup() throws Exception {
+		this.write(JournalDAO.DB_SNAPSHOT, new User("user-0", "ann"));
+		this.write(JournalDAO.DB_JOURNAL_COMPACTING, new User("user-1", "bob"));
+		this.write(JournalDAO.DB_JOURNAL, new User("user-2", "carl"));
+
+		var dao = new JournalDAO(dir, 1000);
+		assertEquals(3, dao.countUsers());
+		assertFalse(Files.exists(dir.resolve(JournalDAO.DB_JOURNAL_COMPACTING)));
+		assertTrue(Files.readString(dir.resolve(JournalDAO.DB_SNAPSHOT)).contains("bob"));
+		/* a new rotation cannot lose the segment any more */
+		dao.addUsers(List.of("dave"));
+		dao.close();
+
+		var reopened = new JournalDAO(dir, 1000);
+		assertEquals(4, reopened.countUsers());
+		assertEquals("bob", reopened.getUserById("user-1").name());
+		assertEquals("user-3", reopened.findUserByName("dave").id());
+		reopened.close();
+	}
+
+	@Test
+	public void compactionKeepsAllTheUsers() throws Exception {
+		var dao = new JournalDAO(dir, 4);
+		for (int i = 0; i < 10; i++) {
+			dao.addUsers(List.of("a" + i, "b" + i));
+		}
+		dao.close();
+
+		var reopened = new JournalDAO(dir, 4);
+		assertEquals(20, reopened.countUsers());
+		for (int i = 0; i < 10; i++) {
+			assertEquals("b" + i, reopened.getUserById(Ids.format(Ids.USER, 2 * i + 1)).name());
+		}
+		reopened.close();
+	}
+
+	@Test
+	public void aTornRecordDoesNotSwallowTheNextOne() throws Exception {
+		this.write(JournalDAO.DB_SNAPSHOT, new User("user-0", "ann"));
+		this.write(JournalDAO.DB_JOURNAL, new User("user-1", "bob"));
+		/* a crash in the middle of a write */
+		var torn = JournalDAO.encode(new User("user-2", "carl"));
+		Files.writeString(dir.resolve(JournalDAO.DB_JOURNAL), torn.substring(0, torn.length() / 2),
+				StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+		var dao = new JournalDAO(dir, 1000);
+		assertEquals(2, dao.countUsers());
+		var dave = dao.addUsers(List.of("dave")).get(0);
+		dao.close();
+
+		var reopened = new JournalDAO(dir, 1000);
+		assertEquals(3, reopened.countUsers());
+		assertEquals(dave, reopened.getUserById(dave.id()));
+		assertEquals(dave, reopened.findUserByName("dave"));
+		reopened.close();
+	}
+
+	@Test
+	public void aJournalOfATornRecordOnlyIsEmptied() throws Exception {
+		Files.writeString(dir.resolve(JournalDAO.DB_JOURNAL), "{\"userId\":\"us", StandardCharsets.UTF_8);
+		var dao = new JournalDAO(dir, 1000);
+		assertEquals(0, dao.countUsers());
+		dao.addUsers(List.of("ann"));
+		dao.close();
+
+		var reopened = new JournalDAO(dir, 1000);
+		assertEquals("ann", reopened.getUserById("user-0").name());
+		reopened.close();
+	}
+
+}
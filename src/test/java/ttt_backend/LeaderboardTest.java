@@ -0,0 +1,183 @@
+package ttt_backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import io.vertx.core.Future;
+import ttt_backend.entities.Game;
+import ttt_backend.entities.Standing;
+import ttt_backend.entities.User;
+import ttt_backend.entities.UserStats;
+import ttt_backend.entities.Game.GameSymbolType;
+
+/**
+ *
+ * Ranks from the points of the users: ties share a rank, the next rank
+ * skips them
+ *
+ */
+public class LeaderboardTest {
+
+	/* the repository of the results, in memory */
+	private static final class StatsRepo implements AsyncUserRepoInterface {
+		final List<UserStats> initial;
+		final Map<String, UserStats> saved = new HashMap<>();
+
+		StatsRepo(final UserStats... initial) {
+			this.initial = List.of(initial);
+		}
+
+		@Override
+		public Future<User> addUser(final String username) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public User getUserById(final String id) {
+			return null;
+		}
+
+		@Override
+		public int countUsers() {
+			return 0;
+		}
+
+		@Override
+		public List<User> findUsersByPrefix(final String prefix, final int limit) {
+			return List.of();
+		}
+
+		@Override
+		public User findUserByName(final String name) {
+			return null;
+		}
+
+		@Override
+		public void saveStats(final List<UserStats> stats) {
+			for (UserStats s : stats) {
+				saved.put(s.userId(), s);
+			}
+		}
+
+		@Override
+		public List<UserStats> allStats() {
+			return initial;
+		}
+	}
+
+	private static final User ANN = new User("user-1", "ann");
+	private static final User BOB = new User("user-2", "bob");
+	private static final User CARL = new User("user-3", "carl");
+	private static final User DORA = new User("user-4", "dora");
+
+	/* cross on the first row; circle on the second; a full grid */
+	private static final int[][] CROSS_WINS = { { 0, 0 }, { 0, 1 }, { 1, 0 }, { 1, 1 }, { 2, 0 } };
+	private static final int[][] CIRCLE_WINS = { { 0, 0 }, { 0, 1 }, { 1, 0 }, { 1, 1 }, { 2, 2 }, { 2, 1 } };
+	private static final int[][] TIE = { { 0, 0 }, { 1, 0 }, { 2, 0 }, { 1, 1 }, { 0, 1 }, { 2, 1 }, { 1, 2 }, { 0, 2 },
+			{ 2, 2 } };
+
+	private static void play(final Leaderboard leaderboard, final User cross, final User circle, final int[][] moves)
+			throws Exception {
+		var game = new Game("game-1");
+		game.joinGame(cross, GameSymbolType.CROSS);
+		game.joinGame(circle, GameSymbolType.CIRCLE);
+		game.start();
+		for (int i = 0; i < moves.length; i++) {
+			var symbol = i % 2 == 0 ? GameSymbolType.CROSS : GameSymbolType.CIRCLE;
+			game.makeAmove(symbol == GameSymbolType.CROSS ? cross : circle, symbol, moves[i][0], moves[i][1]);
+		}
+		leaderboard.recordResult(game);
+	}
+
+	private static List<String> names(final List<Standing> standings) {
+		var names = new ArrayList<String>();
+		for (Standing s : standings) {
+			names.add(s.rank() + " " + s.stats().userName() + " " + s.stats().points());
+		}
+		return names;
+	}
+
+	@Test
+	public void tiesShareARankAndTheNextOneSkipsThem() throws Exception {
+		var leaderboard = new Leaderboard(new StatsRepo());
+		/* ann 6, bob 0, carl 3, dora 3 */
+		play(leaderboard, ANN, BOB, CROSS_WINS);
+		play(leaderboard, BOB, ANN, CIRCLE_WINS);
+		play(leaderboard, CARL, DORA, TIE);
+		play(leaderboard, DORA, CARL, TIE);
+		assertEquals(List.of("1 ann 6", "2 carl 2", "2 dora 2", "4 bob 0"), names(leaderboard.top(10)));
+		assertEquals(1, leaderboard.standingOf(ANN.id()).rank());
+		assertEquals(2, leaderboard.standingOf(CARL.id()).rank());
+		assertEquals(2, leaderboard.standingOf(DORA.id()).rank());
+		assertEquals(4, leaderboard.standingOf(BOB.id()).rank());
+		assertEquals(4, leaderboard.players());
+	}
+
+	@Test
+	public void theRankFollowsAScoreChange() throws Exception {
+		var leaderboard = new Leaderboard(new StatsRepo());
+		play(leaderboard, ANN, BOB, CROSS_WINS);
+		play(leaderboard, CARL, DORA, CROSS_WINS);
+		assertEquals(1, leaderboard.standingOf(CARL.id()).rank());
+		assertEquals(3, leaderboard.standingOf(DORA.id()).rank());
+
+		/* dora beats carl twice: 6 points, ahead of ann and carl */
+		play(leaderboard, DORA, CARL, CROSS_WINS);
+		play(leaderboard, CARL, DORA, CIRCLE_WINS);
+		assertEquals(new Standing(1, new UserStats(DORA.id(), DORA.name(), 2, 1, 0)), leaderboard.standingOf(DORA.id()));
+		assertEquals(2, leaderboard.standingOf(ANN.id()).rank());
+		assertEquals(2, leaderboard.standingOf(CARL.id()).rank());
+		assertEquals(List.of("1 dora 6", "2 ann 3", "2 carl 3", "4 bob 0"), names(leaderboard.top(10)));
+		/* no stale entry of the old scores is left */
+		assertEquals(4, leaderboard.top(100).size());
+	}
+
+	@Test
+	public void topIsCutAtTheLimit() throws Exception {
+		var leaderboard = new Leaderboard(new StatsRepo());
+		play(leaderboard, ANN, BOB, CROSS_WINS);
+		play(leaderboard, CARL, DORA, TIE);
+		assertEquals(List.of("1 ann 3"), names(leaderboard.top(1)));
+		assertEquals(List.of("1 ann 3", "2 carl 1", "2 dora 1"), names(leaderboard.top(3)));
+		assertEquals(List.of(), leaderboard.top(0));
+	}
+
+	@Test
+	public void usersWhoHaveNotPlayedRankLast() throws Exception {
+		var leaderboard = new Leaderboard(new StatsRepo());
+		assertEquals(1, leaderboard.rankOf(0));
+		play(leaderboard, ANN, BOB, CROSS_WINS);
+		play(leaderboard, CARL, DORA, TIE);
+		assertNull(leaderboard.standingOf("user-9"));
+		/* after ann, carl and dora, with bob who lost */
+		assertEquals(4, leaderboard.rankOf(0));
+		assertEquals(4, leaderboard.standingOf(BOB.id()).rank());
+	}
+
+	@Test
+	public void botGamesAreNotCounted() throws Exception {
+		var leaderboard = new Leaderboard(new StatsRepo());
+		play(leaderboard, ANN, Bot.Level.EASY.user(), CROSS_WINS);
+		assertEquals(0, leaderboard.players());
+	}
+
+	@Test
+	public void resultsAreSavedAndReloaded() throws Exception {
+		var repo = new StatsRepo();
+		var leaderboard = new Leaderboard(repo);
+		play(leaderboard, ANN, BOB, CROSS_WINS);
+		play(leaderboard, BOB, CARL, TIE);
+
+		var reloaded = new Leaderboard(new StatsRepo(repo.saved.values().toArray(new UserStats[0])));
+		assertEquals(names(leaderboard.top(10)), names(reloaded.top(10)));
+		assertEquals(leaderboard.standingOf(BOB.id()), reloaded.standingOf(BOB.id()));
+	}
+
+}
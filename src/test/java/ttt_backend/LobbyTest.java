@@ -0,0 +1,185 @@
+package ttt_backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import ttt_backend.entities.Game;
+import ttt_backend.entities.LobbyPage;
+import ttt_backend.entities.OpenGame;
+import ttt_backend.entities.User;
+import ttt_backend.entities.Game.GameSymbolType;
+
+/**
+ *
+ * The games waiting for a player, read page by page while they are opened
+ * and filled
+ *
+ */
+public class LobbyTest {
+
+	private static final User ANN = new User("user-1", "ann");
+	private static final User BOB = new User("user-2", "bob");
+
+	private static Game open(final Lobby lobby, final long number) throws Exception {
+		var game = new Game(Ids.format(Ids.GAME, number));
+		game.joinGame(ANN, GameSymbolType.CROSS);
+		lobby.update(game);
+		return game;
+	}
+
+	private static void fill(final Lobby lobby, final Game game) throws Exception {
+		game.joinGame(BOB, GameSymbolType.CIRCLE);
+		lobby.update(game);
+	}
+
+	private static List<String> ids(final LobbyPage page) {
+		return page.games().stream().map(OpenGame::gameId).toList();
+	}
+
+	@Test
+	public void pagesFollowTheGameIds() throws Exception {
+		var lobby = new Lobby();
+		/* opened out of order */
+		for (long n : new long[] { 5, 1, 12, 3, 8, 2, 20, 13, 7, 9, 4 }) {
+			open(lobby, n);
+		}
+		var first = lobby.page(null, 4);
+		assertEquals(List.of("game-1", "game-2", "game-3", "game-4"), ids(first));
+		assertEquals(Optional.of("game-4"), first.next());
+		var second = lobby.page(first.next().get(), 4);
+		assertEquals(List.of("game-5", "game-7", "game-8", "game-9"), ids(second));
+		var last = lobby.page(second.next().get(), 4);
+		assertEquals(List.of("game-12", "game-13", "game-20"), ids(last));
+		assertEquals(Optional.empty(), last.next());
+
+		/* a page ending on the last game has no next one */
+		assertEquals(Optional.empty(), lobby.page("game-9", 3).next());
+		assertEquals(List.of(), ids(lobby.page("game-20", 4)));
+		assertEquals(11, lobby.page(null, 100).games().size());
+	}
+
+	@Test
+	public void aGameIsListedUntilItIsJoined() throws Exception {
+		var lobby = new Lobby();
+		var waiting = new Game("game-1");
+		/* no player yet: both symbols free */
+		lobby.update(waiting);
+		assertEquals(List.of(new OpenGame("game-1", Optional.empty(), Optional.empty())), lobby.page(null, 10).games());
+		waiting.joinGame(ANN, GameSymbolType.CROSS);
+		lobby.update(waiting);
+		var listed = lobby.page(null, 10).games().get(0);
+		assertEquals(Optional.of(ANN.id()), listed.crossUserId());
+		assertTrue(listed.isOpen(GameSymbolType.CIRCLE));
+		assertFalse(listed.isOpen(GameSymbolType.CROSS));
+
+		var other = open(lobby, 2);
+		fill(lobby, waiting);
+		assertEquals(List.of("game-2"), ids(lobby.page(null, 10)));
+		assertEquals(1, lobby.openGames());
+		/* started: no longer listed, even when updated again */
+		other.joinGame(BOB, GameSymbolType.CIRCLE);
+		other.start();
+		lobby.update(other);
+		assertEquals(0, lobby.openGames());
+		lobby.update(other);
+		assertEquals(0, lobby.openGames());
+	}
+
+	@Test
+	public void theChangesAfterAPageAreDeliveredWithGreaterSeqs() throws Exception {
+		var vertx = Vertx.vertx();
+		try {
+			var lobby = new Lobby();
+			var a = open(lobby, 1);
+			open(lobby, 2);
+			var events = new CopyOnWriteArrayList<JsonObject>();
+			long subscribed = lobby.subscribe((gameId, ev) -> events.add(new JsonObject(ev.json())),
+					vertx.getOrCreateContext());
+			var page = lobby.page(null, 10);
+			assertEquals(subscribed, page.seq());
+
+			fill(lobby, a);
+			open(lobby, 3);
+			for (int i = 0; i < 100 && events.size() < 2; i++) {
+				Thread.sleep(10);
+			}
+			assertEquals(2, events.size());
+			assertEquals("game-filled", events.get(0).getString("event"));
+			assertEquals("game-1", events.get(0).getString("gameId"));
+			assertEquals(page.seq() + 1, events.get(0).getLong("seq"));
+			assertEquals("game-opened", events.get(1).getString("event"));
+			assertEquals("game-3", events.get(1).getString("gameId"));
+			assertEquals(page.seq() + 2, events.get(1).getLong("seq"));
+			assertEquals(page.seq() + 2, lobby.page(null, 10).seq());
+		} finally {
+			vertx.close().toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS);
+		}
+	}
+
+	/*
+	 * A client paging through the lobby while games are opened and filled:
+	 * the pages go forward with no duplicates, and the games open during
+	 * the whole scan are all in it
+	 */
+	@Test
+	public void cursorsAreStableUnderConcurrentChanges() throws Exception {
+		var lobby = new Lobby();
+		var games = new ConcurrentHashMap<Long, Game>();
+		for (long n = 1; n <= 2000; n += 2) {
+			games.put(n, open(lobby, n));
+		}
+		var stop = new AtomicBoolean();
+		var writer = new Thread(() -> {
+			try {
+				/* fills the games from the first one, and opens new ones in between and after */
+				for (long n = 1; !stop.get() && n <= 4000; n++) {
+					if (n % 2 == 0) {
+						games.put(n, open(lobby, n));
+					} else if (n <= 1000) {
+						fill(lobby, games.get(n));
+					}
+				}
+			} catch (final Exception ex) {
+				throw new IllegalStateException(ex);
+			}
+		});
+		writer.start();
+		for (int scan = 0; scan < 20; scan++) {
+			/* never filled by the writer, listed during the whole scan */
+			var alwaysOpen = new ArrayList<Long>();
+			for (long n = 1001; n <= 2000; n += 2) {
+				alwaysOpen.add(n);
+			}
+			var seen = new ArrayList<Long>();
+			String cursor = null;
+			do {
+				var page = lobby.page(cursor, 7);
+				for (OpenGame g : page.games()) {
+					long n = Ids.parse(Ids.GAME, g.gameId());
+					if (!seen.isEmpty()) {
+						assertTrue(n > seen.get(seen.size() - 1), "not after the previous one: " + n);
+					}
+					seen.add(n);
+				}
+				cursor = page.next().orElse(null);
+			} while (cursor != null);
+			assertTrue(seen.containsAll(alwaysOpen), "a game open during the scan was missed");
+		}
+		stop.set(true);
+		writer.join();
+	}
+
+}
@@ -0,0 +1,77 @@
+package ttt_backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * The primitive map checked against a HashMap, through growth and removals
+ *
+ */
+public class LongObjectMapTest {
+
+	@Test
+	public void denseKeysGrowTheTable() {
+		var map = new LongObjectMap<String>();
+		for (long k = 0; k < 100_000; k++) {
+			assertNull(map.put(k, "v" + k));
+		}
+		assertEquals(100_000, map.size());
+		for (long k = 0; k < 100_000; k++) {
+			assertEquals("v" + k, map.get(k));
+		}
+		assertNull(map.get(100_000));
+		assertNull(map.get(-1));
+	}
+
+	@Test
+	public void putReplacesTheValue() {
+		var map = new LongObjectMap<String>();
+		assertNull(map.put(7, "a"));
+		assertEquals("a", map.put(7, "b"));
+		assertEquals("b", map.get(7));
+		assertEquals(1, map.size());
+		assertThrows(IllegalArgumentException.class, () -> map.put(8, null));
+	}
+
+	@Test
+	public void removalsKeepTheProbeSequences() {
+		var map = new LongObjectMap<Long>();
+		var ref = new HashMap<Long, Long>();
+		var rnd = new Random(42);
+		for (int op = 0; op < 500_000; op++) {
+			/* a small key space, so that the keys collide and are removed often */
+			long key = rnd.nextInt(4096) - 1024;
+			switch (rnd.nextInt(3)) {
+				case 0 -> assertEquals(ref.put(key, (long) op), map.put(key, (long) op));
+				case 1 -> assertEquals(ref.remove(key), map.remove(key));
+				default -> assertEquals(ref.get(key), map.get(key));
+			}
+			assertEquals(ref.size(), map.size());
+		}
+		for (long key = -1024; key < 3072; key++) {
+			assertEquals(ref.get(key), map.get(key));
+		}
+	}
+
+	@Test
+	public void removingAllTheKeysEmptiesTheMap() {
+		var map = new LongObjectMap<String>();
+		for (long k = 0; k < 1000; k++) {
+			map.put(k * 1_000_003, "v");
+		}
+		for (long k = 999; k >= 0; k--) {
+			assertEquals("v", map.remove(k * 1_000_003));
+			assertNull(map.remove(k * 1_000_003));
+		}
+		assertEquals(0, map.size());
+		assertNull(map.get(0));
+	}
+
+}
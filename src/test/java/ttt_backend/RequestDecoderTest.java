@@ -0,0 +1,192 @@
+package ttt_backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonObject;
+import ttt_backend.RequestDecoder.JoinGame;
+import ttt_backend.RequestDecoder.MakeAMove;
+import ttt_backend.RequestDecoder.RegisterUser;
+import ttt_backend.entities.Game.GameSymbolType;
+import ttt_backend.exceptions.BadRequestException;
+
+/**
+ *
+ * The bodies are decoded as the JSON parser would: the same fields out of
+ * the valid ones, a bad request for the others
+ *
+ */
+public class RequestDecoderTest {
+
+	private static final String MOVE = "\"userId\": \"user-1\", \"gameId\": \"game-2\", \"symbol\": \"cross\", \"x\": 1, \"y\": 2";
+
+	/* the move of a body according to the JSON parser, null if it is not one */
+	private static MakeAMove reference(final String body) {
+		JsonObject obj;
+		try {
+			obj = new JsonObject(body);
+		} catch (final DecodeException ex) {
+			return null;
+		}
+		if (obj.getValue("userId") instanceof String userId && obj.getValue("gameId") instanceof String gameId
+				&& obj.getValue("symbol") instanceof String symbol && (symbol.equals("cross") || symbol.equals("circle"))) {
+			int x = coordinate(obj.getValue("x"));
+			int y = coordinate(obj.getValue("y"));
+			if (x >= 0 && y >= 0) {
+				return new MakeAMove(userId, gameId, x, y,
+						symbol.equals("cross") ? GameSymbolType.CROSS : GameSymbolType.CIRCLE);
+			}
+		}
+		return null;
+	}
+
+	private static int coordinate(final Object value) {
+		if (value instanceof Integer n) {
+			return n;
+		}
+		if (value instanceof String s && s.matches("[0-9]{1,9}")) {
+			return Integer.parseInt(s);
+		}
+		return -1;
+	}
+
+	/* decoded as the JSON parser does, or rejected as it is */
+	private static void assertLikeJackson(final String body) {
+		var expected = reference(body);
+		if (expected == null) {
+			assertThrows(BadRequestException.class, () -> RequestDecoder.makeAMove(Buffer.buffer(body)), body);
+		} else {
+			try {
+				assertEquals(expected, RequestDecoder.makeAMove(Buffer.buffer(body)), body);
+			} catch (final BadRequestException ex) {
+				throw new AssertionError("Rejected " + body + ": " + ex.getMessage(), ex);
+			}
+		}
+	}
+
+	private static void assertRejected(final String body) {
+		assertEquals(null, reference(body), "the reference accepts " + body);
+		assertLikeJackson(body);
+	}
+
+	@Test
+	public void aPlainBodyIsDecoded() throws Exception {
+		var move = RequestDecoder.makeAMove(Buffer.buffer("{" + MOVE + "}"));
+		assertEquals(new MakeAMove("user-1", "game-2", 1, 2, GameSymbolType.CROSS), move);
+		assertLikeJackson("{" + MOVE + "}");
+		assertLikeJackson(" \r\n\t{" + MOVE.replace(" ", "\n\t ") + "}\n ");
+		assertLikeJackson("{\"userId\":\"user-1\",\"gameId\":\"game-2\",\"symbol\":\"circle\",\"x\":\"0\",\"y\":\"2\"}");
+	}
+
+	@Test
+	public void escapedStringsAreUnescaped() {
+		assertLikeJackson("{" + MOVE.replace("user-1", "us\\\"er\\\\1\\/\\n\\t") + "}");
+		assertLikeJackson("{" + MOVE.replace("user-1", "\\u00e9l\\u00E8ve\\ud83d\\ude00") + "}");
+		assertLikeJackson("{" + MOVE.replace("user-1", "élève") + "}");
+		/* escaped keys and symbols */
+		assertLikeJackson("{" + MOVE.replace("\"userId\"", "\"user\\u0049d\"") + "}");
+		assertLikeJackson("{" + MOVE.replace("\"cross\"", "\"cro\\u0073s\"") + "}");
+	}
+
+	@Test
+	public void invalidEscapesAreRejected() {
+		assertRejected("{" + MOVE.replace("user-1", "user\\q1") + "}");
+		assertRejected("{" + MOVE.replace("user-1", "user\\u00g1") + "}");
+		assertRejected("{" + MOVE + ", \"skipped\": \"a\\x\"}");
+		assertRejected("{" + MOVE.replace("user-1", "user\t1") + "}");
+	}
+
+	@Test
+	public void fieldsAreReadInAnyOrder() {
+		assertLikeJackson("{\"y\": 2, \"x\": 1, \"symbol\": \"cross\", \"gameId\": \"game-2\", \"userId\": \"user-1\"}");
+		assertLikeJackson("{\"symbol\": \"circle\", \"userId\": \"user-1\", \"y\": \"0\", \"gameId\": \"game-2\", \"x\": 2}");
+		/* the last one wins */
+		assertLikeJackson("{" + MOVE + ", \"x\": 0}");
+	}
+
+	@Test
+	public void unknownFieldsAreSkipped() {
+		for (String value : new String[] { "true", "false", "null", "0", "-0", "12", "-3.25", "1e9", "2.5E-3",
+				"6.02e+23", "\"text\"", "\"\\u0041\\\"}\"", "{}", "[]", "[1, \"a\", null]",
+				"{\"a\": [true, {\"b\": {\"c\": []}}], \"d\": -1}", "[[[[[]]]]]" }) {
+			assertLikeJackson("{\"extra\": " + value + ", " + MOVE + "}");
+			assertLikeJackson("{" + MOVE + ", \"extra\":" + value + "}");
+		}
+	}
+
+	@Test
+	public void onlyJsonLiteralsAreSkipped() {
+		for (String value : new String[] { "undefined", "nul", "nulll", "True", "tru", "falsey", "NaN", "Infinity",
+				"-", "01", "1.", ".5", "1e", "1e+", "+1", "0x10", "1-2", "abc", "'text'" }) {
+			assertRejected("{\"extra\": " + value + ", " + MOVE + "}");
+			assertRejected("{" + MOVE + ", \"extra\": " + value + "}");
+			assertRejected("{" + MOVE + ", \"extra\": [" + value + "]}");
+		}
+	}
+
+	@Test
+	public void deepNestingIsRejected() {
+		assertThrows(BadRequestException.class,
+				() -> RequestDecoder.makeAMove(Buffer.buffer("{\"a\": " + "[".repeat(100) + "]".repeat(100) + ", " + MOVE + "}")));
+	}
+
+	@Test
+	public void missingFieldsAreRejected() {
+		for (String field : new String[] { "userId", "gameId", "symbol", "x", "y" }) {
+			var body = new JsonObject("{" + MOVE + "}");
+			body.remove(field);
+			assertRejected(body.encode());
+			var ex = assertThrows(BadRequestException.class, () -> RequestDecoder.makeAMove(body.toBuffer()));
+			assertEquals("Missing field " + field, ex.getMessage());
+		}
+		assertThrows(BadRequestException.class, () -> RequestDecoder.registerUser(Buffer.buffer("{}")));
+		assertThrows(BadRequestException.class,
+				() -> RequestDecoder.joinGame(Buffer.buffer("{\"userId\": \"user-1\", \"symbol\": \"cross\"}")));
+	}
+
+	@Test
+	public void invalidValuesAreRejected() {
+		assertRejected("{" + MOVE.replace("\"cross\"", "\"square\"") + "}");
+		assertRejected("{" + MOVE.replace("\"user-1\"", "1") + "}");
+		assertRejected("{" + MOVE.replace("\"user-1\"", "null") + "}");
+		for (String x : new String[] { "-1", "1.5", "\"1a\"", "\"\"", "true", "[1]", "1234567890123" }) {
+			assertRejected("{" + MOVE.replace("\"x\": 1", "\"x\": " + x) + "}");
+		}
+	}
+
+	@Test
+	public void truncatedBodiesAreRejected() {
+		var body = "{" + MOVE + ", \"extra\": [1, {\"a\": \"b\\u0041\"}]}";
+		for (int len = 0; len < body.length(); len++) {
+			assertRejected(body.substring(0, len));
+		}
+		assertLikeJackson(body);
+	}
+
+	@Test
+	public void trailingGarbageIsRejected() {
+		for (String tail : new String[] { "}", ",", "x", "{}", "[]", "\"\"", "0", "null" }) {
+			assertRejected("{" + MOVE + "}" + tail);
+			assertRejected("{" + MOVE + "} " + tail);
+		}
+		assertRejected("{" + MOVE + ",}");
+		assertRejected("{," + MOVE + "}");
+		assertRejected("{" + MOVE.replace(",", "") + "}");
+		assertRejected("[" + MOVE + "]");
+	}
+
+	@Test
+	public void theOtherBodiesAreDecoded() throws Exception {
+		assertEquals(new RegisterUser("ann \"the\" first"),
+				RequestDecoder.registerUser(Buffer.buffer("{\"extra\": {\"a\": 1}, \"userName\": \"ann \\\"the\\\" first\"}")));
+		assertEquals(new JoinGame("user-1", "game-2", GameSymbolType.CIRCLE), RequestDecoder.joinGame(
+				Buffer.buffer("{\"symbol\": \"circle\", \"gameId\": \"game-2\", \"userId\": \"user-1\", \"x\": 3}")));
+		assertThrows(BadRequestException.class,
+				() -> RequestDecoder.registerUser(Buffer.buffer("{\"userName\": \"ann\"} trailing")));
+	}
+
+}
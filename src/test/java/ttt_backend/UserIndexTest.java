@@ -0,0 +1,89 @@
+package ttt_backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import ttt_backend.entities.User;
+
+/**
+ *
+ * Lookups of the users by id, in the dense array and in the map of the
+ * other ids, as the index grows
+ *
+ */
+public class UserIndexTest {
+
+	@Test
+	public void denseIdsGrowTheArray() {
+		var index = new UserIndex(ClusterPartitioning.SINGLE_NODE);
+		for (int i = 0; i < 50_000; i++) {
+			index.put(new User(Ids.format(Ids.USER, i), "name" + i));
+		}
+		assertEquals(50_000, index.size());
+		for (int i = 0; i < 50_000; i++) {
+			assertEquals(new User("user-" + i, "name" + i), index.get("user-" + i));
+		}
+		assertNull(index.get("user-50000"));
+		assertEquals(50_000, new HashSet<>(index.users()).size());
+	}
+
+	@Test
+	public void aNewNameReplacesTheOldOne() {
+		var index = new UserIndex(ClusterPartitioning.SINGLE_NODE);
+		index.put(new User("user-3", "ann"));
+		index.put(new User("user-3", "bob"));
+		assertEquals(1, index.size());
+		assertEquals("bob", index.get("user-3").name());
+	}
+
+	@Test
+	public void otherIdsAreKeptInTheMap() {
+		var index = new UserIndex(ClusterPartitioning.SINGLE_NODE);
+		var legacy = new User("u-legacy", "old");
+		var padded = new User("user-007", "padded");
+		/* far beyond the allocated ids: not a huge sparse array */
+		var far = new User("user-" + (1L << 40), "far");
+		for (User u : List.of(legacy, padded, far)) {
+			index.put(u);
+			index.put(u);
+		}
+		assertEquals(3, index.size());
+		assertEquals(legacy, index.get("u-legacy"));
+		assertEquals(padded, index.get("user-007"));
+		assertEquals(far, index.get(far.id()));
+		assertNull(index.get("user-7"));
+		assertEquals(new HashSet<>(List.of(legacy, padded, far)), new HashSet<>(index.users()));
+	}
+
+	@Test
+	public void idsOfTheNodeAreDenseOnceDivided() {
+		var index = new UserIndex(new ClusterPartitioning(4, 3));
+		for (int n = 0; n < 1000; n++) {
+			index.put(new User(Ids.format(Ids.USER, n * 4 + 3), "n" + n));
+		}
+		/* an id of another node */
+		index.put(new User("user-8", "remote"));
+		assertEquals(1001, index.size());
+		assertEquals("n999", index.get("user-3999").name());
+		assertEquals("remote", index.get("user-8").name());
+		assertNull(index.get("user-4003"));
+	}
+
+	@Test
+	public void usersAddedAfterIndexingAreFoundByName() {
+		var index = new UserIndex(ClusterPartitioning.SINGLE_NODE);
+		index.put(new User("user-0", "Ann"));
+		index.indexNames();
+		index.put(new User("user-1", "anna"));
+		index.put(new User("u-x", "Annie"));
+		assertEquals(List.of("Ann", "anna", "Annie"),
+				index.findByPrefix("an", 10).stream().map(User::name).toList());
+		assertEquals("user-1", index.findByName("ANNA").id());
+	}
+
+}
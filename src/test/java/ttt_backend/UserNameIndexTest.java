@@ -0,0 +1,79 @@
+package ttt_backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+import ttt_backend.entities.User;
+
+/**
+ *
+ * Lookups by name while users are added and merged into the sorted arrays
+ *
+ */
+public class UserNameIndexTest {
+
+	private static String nameOf(final int i) {
+		/* not in id order, and sharing prefixes */
+		return "player" + Integer.toString(i * 7919 % 100_003, 36);
+	}
+
+	@Test
+	public void lookupsMatchAScanAcrossMerges() {
+		var index = new UserIndex(ClusterPartitioning.SINGLE_NODE);
+		index.indexNames();
+		var all = new ArrayList<User>();
+		for (int i = 0; i < 20_000; i++) {
+			var u = new User(Ids.format(Ids.USER, i), nameOf(i));
+			index.put(u);
+			all.add(u);
+			if (i % 997 == 0) {
+				for (String prefix : new String[] { "player1", "playera", "PLAYERZ" }) {
+					var expected = all.stream()
+							.filter(x -> x.name().regionMatches(true, 0, prefix, 0, prefix.length()))
+							.sorted((a, b) -> String.CASE_INSENSITIVE_ORDER.compare(a.name(), b.name()))
+							.limit(50).toList();
+					assertEquals(expected, index.findByPrefix(prefix, 50), prefix + " after " + i);
+				}
+			}
+		}
+		assertEquals(all.get(12_345), index.findByName(nameOf(12_345).toUpperCase()));
+		assertNull(index.findByName("nobody"));
+	}
+
+	@Test
+	public void concurrentLookupsFindEveryUserAddedBefore() throws Exception {
+		var index = new UserIndex(ClusterPartitioning.SINGLE_NODE);
+		index.indexNames();
+		int total = 100_000;
+		var added = new AtomicInteger();
+		var failure = new AtomicReference<String>();
+		var reader = new Thread(() -> {
+			int probe = 0;
+			while (added.get() < total && failure.get() == null) {
+				int n = added.get();
+				if (n == 0) {
+					continue;
+				}
+				probe = (probe + 7919) % n;
+				var found = index.findByName(nameOf(probe));
+				if (found == null || !found.id().equals(Ids.format(Ids.USER, probe))) {
+					failure.set(nameOf(probe) + " not found with " + n + " users");
+				}
+			}
+		});
+		reader.start();
+		for (int i = 0; i < total && failure.get() == null; i++) {
+			index.put(new User(Ids.format(Ids.USER, i), nameOf(i)));
+			added.set(i + 1);
+		}
+		reader.join();
+		assertNull(failure.get());
+	}
+
+}
@@ -0,0 +1,45 @@
+package ttt_backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import io.vertx.core.json.JsonObject;
+import ttt_backend.exceptions.BadRequestException;
+
+/**
+ *
+ * Subscriptions, legacy or command, are checked before reaching the
+ * backend
+ *
+ */
+public class WebSocketAcceptorTest {
+
+	@Test
+	public void aValidSubscriptionIsAccepted() throws Exception {
+		var obj = new JsonObject("{ \"gameId\": \"game-3\", \"lastSeq\": 4 }");
+		assertEquals("game-3", WebSocketAcceptor.gameIdOf(obj));
+		assertEquals(4, WebSocketAcceptor.lastSeqOf(obj));
+		assertNull(WebSocketAcceptor.lastSeqOf(new JsonObject("{ \"gameId\": \"game-3\" }")));
+		assertNull(WebSocketAcceptor.lastSeqOf(new JsonObject("{ \"gameId\": \"game-3\", \"lastSeq\": null }")));
+	}
+
+	@Test
+	public void theGameIdMustBeAString() {
+		for (String msg : new String[] { "{}", "{ \"gameId\": null }", "{ \"gameId\": 3 }",
+				"{ \"gameId\": [\"game-1\"] }" }) {
+			assertThrows(BadRequestException.class, () -> WebSocketAcceptor.gameIdOf(new JsonObject(msg)), msg);
+		}
+	}
+
+	@Test
+	public void theLastSeqMustBeANonNegativeInteger() {
+		for (String msg : new String[] { "{ \"lastSeq\": \"4\" }", "{ \"lastSeq\": 4.5 }", "{ \"lastSeq\": -1 }",
+				"{ \"lastSeq\": 10000000000 }", "{ \"lastSeq\": {} }" }) {
+			assertThrows(BadRequestException.class, () -> WebSocketAcceptor.lastSeqOf(new JsonObject(msg)), msg);
+		}
+	}
+
+}
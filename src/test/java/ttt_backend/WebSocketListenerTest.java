@@ -0,0 +1,289 @@
+package ttt_backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import io.vertx.core.Handler;
+import io.vertx.core.http.ServerWebSocket;
+import io.vertx.core.http.WebSocketFrame;
+import io.vertx.core.json.JsonObject;
+import ttt_backend.WebSocketListener.Backpressure;
+import ttt_backend.WebSocketListener.SlowConsumerPolicy;
+import ttt_backend.entities.Game.GameSymbolType;
+import ttt_backend.metrics.Metrics;
+
+/**
+ *
+ * The events of a socket that does not keep up, under each slow consumer
+ * policy, and the events skipped by sequence number when a stream is resumed
+ *
+ */
+public class WebSocketListenerTest {
+
+	/* a socket with a write queue full on demand, drained by the test */
+	private static final class FakeSocket {
+		private final List<String> written = new ArrayList<>();
+		private final List<String> closed = new ArrayList<>();
+		private final String subProtocol;
+		private boolean writeQueueFull;
+		/* frames accepted before the write queue is full */
+		private int writesBeforeFull = Integer.MAX_VALUE;
+		private Handler<Void> drainHandler;
+
+		FakeSocket(final String subProtocol) {
+			this.subProtocol = subProtocol;
+		}
+
+		ServerWebSocket proxy() {
+			return (ServerWebSocket) Proxy.newProxyInstance(ServerWebSocket.class.getClassLoader(),
+					new Class<?>[] { ServerWebSocket.class }, (proxy, method, args) -> switch (method.getName()) {
+						case "writeFrame" -> {
+							written.add(describe((WebSocketFrame) args[0]));
+							if (--writesBeforeFull == 0) {
+								writeQueueFull = true;
+								writesBeforeFull = Integer.MAX_VALUE;
+							}
+							yield null;
+						}
+						case "writeQueueFull" -> writeQueueFull;
+						case "subProtocol" -> subProtocol;
+						case "drainHandler" -> {
+							@SuppressWarnings("unchecked")
+							var handler = (Handler<Void>) args[0];
+							drainHandler = handler;
+							yield proxy;
+						}
+						case "close" -> {
+							closed.add(args[0] + " " + args[1]);
+							yield null;
+						}
+						default -> null;
+					});
+		}
+
+		/* the socket accepts frames again */
+		void drain() {
+			writeQueueFull = false;
+			drainHandler.handle(null);
+		}
+
+		/* the frames written since the last call */
+		List<String> takeWritten() {
+			var frames = List.copyOf(written);
+			written.clear();
+			return frames;
+		}
+	}
+
+	/* the event of a frame, with its seq or the game of a resync */
+	private static String describe(final WebSocketFrame frame) {
+		if (frame.isBinary()) {
+			return "binary " + frame.binaryData().getByte(0);
+		}
+		var ev = new JsonObject(frame.textData());
+		return ev.getString("event") + " " + (ev.containsKey("seq") ? ev.getValue("seq") : ev.getString("gameId"));
+	}
+
+	private final Metrics metrics = new Metrics();
+	private Backpressure backpressure;
+
+	private WebSocketListener listener(final FakeSocket socket, final SlowConsumerPolicy policy,
+			final int maxQueuedEvents) {
+		backpressure = new Backpressure(policy, maxQueuedEvents, metrics.histogram("write", "", ""),
+				metrics.counter("dropped", "", ""), metrics.counter("coalesced", "", ""),
+				metrics.counter("disconnected", "", ""));
+		return new WebSocketListener(socket.proxy(), backpressure);
+	}
+
+	private static GameEvent move(final int seq) {
+		return GameEvent.newMove(seq % 3, seq / 3 % 3, seq % 2 == 1 ? GameSymbolType.CROSS : GameSymbolType.CIRCLE,
+				seq);
+	}
+
+	@Test
+	public void eventsAreWrittenWhileTheSocketAcceptsThem() {
+		var socket = new FakeSocket(null);
+		var listener = this.listener(socket, SlowConsumerPolicy.DROP_OLDEST, 4);
+		listener.addGame("game-1");
+		listener.onEvent("game-1", GameEvent.gameStarted(1));
+		listener.onEvent("game-1", move(2));
+		assertEquals(List.of("game-started 1", "new-move 2"), socket.takeWritten());
+
+		var binary = new FakeSocket(WebSocketAcceptor.BINARY_SUBPROTOCOL);
+		this.listener(binary, SlowConsumerPolicy.DROP_OLDEST, 4).onEvent("game-1", move(2));
+		assertEquals(List.of("binary " + GameEvent.BIN_NEW_MOVE), binary.takeWritten());
+	}
+
+	@Test
+	public void dropOldestKeepsTheNewestEventsInOrder() {
+		var socket = new FakeSocket(null);
+		var listener = this.listener(socket, SlowConsumerPolicy.DROP_OLDEST, 4);
+		listener.addGame("game-1");
+		socket.writeQueueFull = true;
+		for (int seq = 1; seq <= 6; seq++) {
+			listener.onEvent("game-1", move(seq));
+		}
+		assertEquals(List.of(), socket.takeWritten());
+		assertEquals(2, backpressure.dropped().get());
+
+		/* writable again, but the queued events go first */
+		socket.writeQueueFull = false;
+		listener.onEvent("game-1", move(7));
+		assertEquals(List.of(), socket.takeWritten());
+		assertEquals(3, backpressure.dropped().get());
+		socket.drain();
+		assertEquals(List.of("new-move 4", "new-move 5", "new-move 6", "new-move 7"), socket.takeWritten());
+
+		listener.onEvent("game-1", move(8));
+		assertEquals(List.of("new-move 8"), socket.takeWritten());
+		assertEquals(0, backpressure.coalesced().get());
+		assertEquals(0, backpressure.disconnected().get());
+	}
+
+	@Test
+	public void aDrainStopsWhenTheSocketIsFullAgain() {
+		var socket = new FakeSocket(null);
+		var listener = this.listener(socket, SlowConsumerPolicy.DROP_OLDEST, 4);
+		socket.writeQueueFull = true;
+		for (int seq = 1; seq <= 3; seq++) {
+			listener.onEvent("game-1", move(seq));
+		}
+		socket.writesBeforeFull = 2;
+		socket.drain();
+		assertEquals(List.of("new-move 1", "new-move 2"), socket.takeWritten());
+		listener.onEvent("game-1", move(4));
+		assertEquals(List.of(), socket.takeWritten());
+		socket.drain();
+		assertEquals(List.of("new-move 3", "new-move 4"), socket.takeWritten());
+		assertEquals(0, backpressure.dropped().get());
+	}
+
+	@Test
+	public void coalesceQueuesOneResyncPerGame() {
+		var socket = new FakeSocket(null);
+		var listener = this.listener(socket, SlowConsumerPolicy.COALESCE, 3);
+		for (String gameId : new String[] { "game-1", "game-2", "game-3" }) {
+			listener.addGame(gameId);
+		}
+		socket.writeQueueFull = true;
+		listener.onEvent("game-1", move(1));
+		listener.onEvent("game-2", move(1));
+		listener.onEvent("game-1", move(2));
+		assertEquals(0, backpressure.coalesced().get());
+		/* over the limit: the 4 events of 2 games become 2 resyncs */
+		listener.onEvent("game-1", move(3));
+		assertEquals(2, backpressure.coalesced().get());
+		/* already covered by a resync */
+		listener.onEvent("game-2", move(2));
+		assertEquals(3, backpressure.coalesced().get());
+		/* another game: queued, then coalesced with the others */
+		listener.onEvent("game-3", move(1));
+		listener.onEvent("game-3", move(2));
+		assertEquals(4, backpressure.coalesced().get());
+		assertEquals(List.of(), socket.takeWritten());
+
+		socket.drain();
+		assertEquals(List.of("resync game-1", "resync game-2", "resync game-3"), socket.takeWritten());
+		/* the resyncs were sent: the next events are not covered */
+		listener.onEvent("game-2", move(3));
+		assertEquals(List.of("new-move 3"), socket.takeWritten());
+		assertEquals(4, backpressure.coalesced().get());
+		assertEquals(0, backpressure.dropped().get());
+	}
+
+	@Test
+	public void coalesceWithOnlyResyncsQueuedAddsOneForANewGame() {
+		var socket = new FakeSocket(null);
+		var listener = this.listener(socket, SlowConsumerPolicy.COALESCE, 2);
+		socket.writeQueueFull = true;
+		listener.onEvent("game-1", move(1));
+		listener.onEvent("game-2", move(1));
+		listener.onEvent("game-1", move(2));
+		assertEquals(1, backpressure.coalesced().get());
+		/* more games than the limit: the queue grows to a resync per game */
+		listener.onEvent("game-3", move(1));
+		listener.onEvent("game-3", move(2));
+		assertEquals(2, backpressure.coalesced().get());
+		socket.drain();
+		assertEquals(List.of("resync game-1", "resync game-2", "resync game-3"), socket.takeWritten());
+	}
+
+	@Test
+	public void disconnectClosesTheSocketAndIgnoresTheNextEvents() {
+		var socket = new FakeSocket(null);
+		var listener = this.listener(socket, SlowConsumerPolicy.DISCONNECT, 2);
+		listener.addGame("game-1");
+		listener.onEvent("game-1", move(1));
+		socket.writeQueueFull = true;
+		listener.onEvent("game-1", move(2));
+		listener.onEvent("game-1", move(3));
+		assertEquals(List.of(), socket.closed);
+		listener.onEvent("game-1", move(4));
+		assertEquals(List.of("1008 Too slow"), socket.closed);
+		assertEquals(1, backpressure.disconnected().get());
+
+		/* the queued events are dropped, and nothing is written any more */
+		socket.drain();
+		listener.onEvent("game-1", move(5));
+		listener.onEvent("game-2", GameEvent.resync("game-2"));
+		assertEquals(List.of("new-move 1"), socket.takeWritten());
+		assertEquals(List.of("1008 Too slow"), socket.closed);
+		assertEquals(1, backpressure.disconnected().get());
+		assertEquals(0, backpressure.dropped().get());
+	}
+
+	@Test
+	public void eventsAlreadySentAreSkipped() {
+		var socket = new FakeSocket(null);
+		var listener = this.listener(socket, SlowConsumerPolicy.DROP_OLDEST, 4);
+		listener.addGame("game-1");
+		for (int seq : new int[] { 1, 2, 2, 1, 3 }) {
+			listener.onEvent("game-1", move(seq));
+		}
+		assertEquals(List.of("new-move 1", "new-move 2", "new-move 3"), socket.takeWritten());
+		/* events out of the streams are always sent */
+		listener.onEvent("game-1", GameEvent.resync("game-1"));
+		listener.onEvent("game-1", GameEvent.resync("game-1"));
+		assertEquals(List.of("resync game-1", "resync game-1"), socket.takeWritten());
+	}
+
+	@Test
+	public void aResumedStreamHasNoDuplicates() {
+		var socket = new FakeSocket(null);
+		var listener = this.listener(socket, SlowConsumerPolicy.DROP_OLDEST, 4);
+		/* the client got up to 3, the log replays from 1 while 4 to 6 are published */
+		listener.resumeGame("game-1", 3);
+		listener.onEvent("game-1", move(1));
+		listener.onEvent("game-1", move(2));
+		listener.onEvent("game-1", move(3));
+		listener.onEvent("game-1", move(4));
+		listener.onEvent("game-1", move(4));
+		listener.onEvent("game-1", move(5));
+		listener.onEvent("game-1", move(5));
+		listener.onEvent("game-1", GameEvent.gameEnded(GameSymbolType.CROSS, 6));
+		assertEquals(List.of("new-move 4", "new-move 5", "game-ended 6"), socket.takeWritten());
+		/* the game has no more events: its subscription is gone */
+		assertEquals(Set.of(), listener.getGames());
+	}
+
+	@Test
+	public void aGameEndedWhileQueuedIsStillDelivered() {
+		var socket = new FakeSocket(null);
+		var listener = this.listener(socket, SlowConsumerPolicy.DROP_OLDEST, 4);
+		listener.addGame("game-1");
+		listener.addGame("game-2");
+		socket.writeQueueFull = true;
+		listener.onEvent("game-1", move(1));
+		listener.onEvent("game-1", GameEvent.gameEnded(null, 2));
+		assertEquals(Set.of("game-2"), listener.getGames());
+		socket.drain();
+		assertEquals(List.of("new-move 1", "game-ended 2"), socket.takeWritten());
+	}
+
+}
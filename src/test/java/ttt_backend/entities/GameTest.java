@@ -0,0 +1,271 @@
+package ttt_backend.entities;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+
+import ttt_backend.Bot;
+import ttt_backend.PerfectPlay;
+import ttt_backend.entities.Game.GameState;
+import ttt_backend.entities.Game.GameSymbolType;
+import ttt_backend.exceptions.CannotStartGameException;
+import ttt_backend.exceptions.InvalidJoinException;
+import ttt_backend.exceptions.InvalidMoveException;
+
+/**
+ *
+ * The bitboard Game checked against the rules of the original grid
+ * implementation, over all the reachable positions, and the moves of the
+ * perfect bot from each of them
+ *
+ */
+public class GameTest {
+
+	private static final User CROSS = new User("user-1", "cross");
+	private static final User CIRCLE = new User("user-2", "circle");
+	private static final User OTHER = new User("user-3", "other");
+
+	/*
+	 * The original implementation: a grid of symbols, checked cell by cell.
+	 * Its free cells counter was never decremented (a full grid with no
+	 * winner never finished): here it is, as the tie rule intended.
+	 */
+	private static final class GridGame {
+		private final GameSymbolType[][] grid = new GameSymbolType[3][3];
+		private int numFreeCellsLeft = 9;
+		private GameSymbolType currentTurn = GameSymbolType.CROSS;
+		private GameSymbolType winner = GameSymbolType.EMPTY;
+		private boolean finished;
+
+		GridGame() {
+			for (int y = 0; y < 3; y++) {
+				for (int x = 0; x < 3; x++) {
+					grid[y][x] = GameSymbolType.EMPTY;
+				}
+			}
+		}
+
+		boolean canMove(final GameSymbolType symbol, final int x, final int y) {
+			return !finished && symbol == currentTurn && grid[y][x] == GameSymbolType.EMPTY;
+		}
+
+		void move(final GameSymbolType symbol, final int x, final int y) {
+			grid[y][x] = symbol;
+			numFreeCellsLeft--;
+			currentTurn = symbol == GameSymbolType.CROSS ? GameSymbolType.CIRCLE : GameSymbolType.CROSS;
+			this.checkState();
+		}
+
+		int cells(final GameSymbolType symbol) {
+			int cells = 0;
+			for (int y = 0; y < 3; y++) {
+				for (int x = 0; x < 3; x++) {
+					if (grid[y][x] == symbol) {
+						cells |= 1 << (y * 3 + x);
+					}
+				}
+			}
+			return cells;
+		}
+
+		private void checkState() {
+			for (int i = 0; i < 3; i++) {
+				if (this.line(grid[i][0], grid[i][1], grid[i][2]) || this.line(grid[0][i], grid[1][i], grid[2][i])) {
+					return;
+				}
+			}
+			if (this.line(grid[0][0], grid[1][1], grid[2][2]) || this.line(grid[2][0], grid[1][1], grid[0][2])) {
+				return;
+			}
+			if (numFreeCellsLeft == 0) {
+				finished = true;
+			}
+		}
+
+		private boolean line(final GameSymbolType a, final GameSymbolType b, final GameSymbolType c) {
+			if (a != GameSymbolType.EMPTY && a == b && b == c) {
+				winner = a;
+				finished = true;
+				return true;
+			}
+			return false;
+		}
+	}
+
+	private static Game newGame() throws Exception {
+		var game = new Game("game-1");
+		game.joinGame(CROSS, GameSymbolType.CROSS);
+		game.joinGame(CIRCLE, GameSymbolType.CIRCLE);
+		game.start();
+		return game;
+	}
+
+	private static User userOf(final GameSymbolType symbol) {
+		return symbol == GameSymbolType.CROSS ? CROSS : CIRCLE;
+	}
+
+	/* times the perfect bot chooses a move in each position, out of its best ones */
+	private static final int BOT_TRIES = 16;
+
+	/*
+	 * positions visited, as the two grids of a position packed in an int,
+	 * with their outcome for the player to move
+	 */
+	private final Map<Integer, Integer> positions = new HashMap<>();
+
+	@Test
+	public void allReachablePositionsMatchTheGrid() throws Exception {
+		assertEquals(PerfectPlay.DRAW, this.explore(new int[9], 0));
+		assertEquals(5478, positions.size());
+		assertEquals(5478, PerfectPlay.load());
+	}
+
+	/*
+	 * depth-first over the moves, replayed on both implementations; a
+	 * position reached by another sequence of the same moves is not explored again.
+	 * Returns the outcome of the position for the player to move, by minimax
+	 * over the grid, to check the perfect play table against
+	 */
+	private int explore(final int[] path, final int depth) throws Exception {
+		var game = replay(path, depth);
+		var ref = new GridGame();
+		for (int i = 0; i < depth; i++) {
+			ref.move(ref.currentTurn, path[i] % 3, path[i] / 3);
+		}
+		this.assertSameState(game, ref, path, depth);
+		int cross = game.getCells(GameSymbolType.CROSS);
+		int circle = game.getCells(GameSymbolType.CIRCLE);
+		var known = positions.get(cross << 9 | circle);
+		if (known != null) {
+			return known;
+		}
+		for (int cell = 0; cell < 9; cell++) {
+			int x = cell % 3;
+			int y = cell / 3;
+			for (var symbol : new GameSymbolType[] { GameSymbolType.CROSS, GameSymbolType.CIRCLE }) {
+				if (!ref.canMove(symbol, x, y)) {
+					assertThrows(InvalidMoveException.class, () -> game.makeAmove(userOf(symbol), symbol, x, y));
+				}
+			}
+			if (ref.canMove(ref.currentTurn, x, y)) {
+				var symbol = ref.currentTurn;
+				assertThrows(InvalidMoveException.class, () -> game.makeAmove(OTHER, symbol, x, y));
+			}
+		}
+		/* rejected moves change nothing */
+		this.assertSameState(game, ref, path, depth);
+		int outcome = ref.finished ? (ref.winner == GameSymbolType.EMPTY ? PerfectPlay.DRAW : PerfectPlay.LOSS)
+				: PerfectPlay.LOSS;
+		var moves = new int[PerfectPlay.WIN + 1];
+		int winsNow = 0;
+		for (int cell = 0; cell < 9; cell++) {
+			if (ref.canMove(ref.currentTurn, cell % 3, cell / 3)) {
+				path[depth] = cell;
+				/* the outcome for the opponent, turned into the outcome for the mover */
+				int next = PerfectPlay.WIN + PerfectPlay.LOSS - this.explore(path, depth + 1);
+				outcome = Math.max(outcome, next);
+				moves[next] |= 1 << cell;
+				if (replay(path, depth + 1).getWinner().isPresent()) {
+					winsNow |= 1 << cell;
+				}
+			}
+		}
+		positions.put(cross << 9 | circle, outcome);
+		assertEquals(outcome, PerfectPlay.outcome(cross, circle));
+		assertArrayEquals(moves, PerfectPlay.movesByOutcome(cross, circle));
+		if (!ref.finished) {
+			assertEquals(winsNow, PerfectPlay.winningMoves(cross, circle));
+			for (int i = 0; i < BOT_TRIES; i++) {
+				int cell = Bot.chooseMove(game, Bot.Level.PERFECT);
+				/* never worse than the position: a bot not already lost never loses */
+				assertTrue((moves[outcome] & 1 << cell) != 0, "bot move " + cell + " in " + cross + "/" + circle);
+				if (winsNow != 0) {
+					assertTrue((winsNow & 1 << cell) != 0, "bot missed a win with " + cell + " in " + cross + "/" + circle);
+				}
+			}
+		}
+		return outcome;
+	}
+
+	private static Game replay(final int[] path, final int depth) throws Exception {
+		var game = newGame();
+		for (int i = 0; i < depth; i++) {
+			var symbol = game.getCurrentTurn();
+			game.makeAmove(userOf(symbol), symbol, path[i] % 3, path[i] / 3);
+		}
+		return game;
+	}
+
+	private void assertSameState(final Game game, final GridGame ref, final int[] path, final int depth) {
+		assertEquals(ref.cells(GameSymbolType.CROSS), game.getCells(GameSymbolType.CROSS));
+		assertEquals(ref.cells(GameSymbolType.CIRCLE), game.getCells(GameSymbolType.CIRCLE));
+		assertEquals(ref.cells(GameSymbolType.EMPTY), game.getCells(GameSymbolType.EMPTY));
+		assertEquals(depth, game.getNumMoves());
+		assertEquals(ref.finished, game.isGameEnd());
+		assertEquals(ref.finished ? GameState.FINISHED : GameState.PLAYING, game.getState());
+		assertEquals(ref.winner == GameSymbolType.EMPTY ? Optional.empty() : Optional.of(ref.winner),
+				game.getWinner());
+		assertEquals(ref.finished && ref.winner == GameSymbolType.EMPTY, game.isTie());
+		if (!ref.finished) {
+			assertEquals(ref.currentTurn, game.getCurrentTurn());
+		}
+		long moves = game.getMoveSequence();
+		for (int i = 0; i < depth; i++) {
+			assertEquals(path[i], (int) (moves >>> (4 * i)) & 0xF);
+		}
+		assertEquals(0, moves >>> (4 * depth));
+	}
+
+	@Test
+	public void cellsAreIndexedByRowThenColumn() throws Exception {
+		var game = newGame();
+		game.makeAmove(CROSS, GameSymbolType.CROSS, 2, 0);
+		game.makeAmove(CIRCLE, GameSymbolType.CIRCLE, 0, 1);
+		assertEquals(1 << 2, game.getCells(GameSymbolType.CROSS));
+		assertEquals(1 << 3, game.getCells(GameSymbolType.CIRCLE));
+		assertEquals(0x1FF & ~(1 << 2) & ~(1 << 3), game.getCells(GameSymbolType.EMPTY));
+	}
+
+	@Test
+	public void aFullGridWithNoLineIsATie() throws Exception {
+		var game = newGame();
+		/* X O X / X O O / O X X */
+		int[][] moves = { { 0, 0 }, { 1, 0 }, { 2, 0 }, { 1, 1 }, { 0, 1 }, { 2, 1 }, { 1, 2 }, { 0, 2 }, { 2, 2 } };
+		for (int i = 0; i < moves.length; i++) {
+			var symbol = game.getCurrentTurn();
+			game.makeAmove(userOf(symbol), symbol, moves[i][0], moves[i][1]);
+		}
+		assertTrue(game.isTie());
+		assertEquals(Optional.empty(), game.getWinner());
+	}
+
+	@Test
+	public void outOfRangeMovesAreInvalid() throws Exception {
+		var game = newGame();
+		assertThrows(InvalidMoveException.class, () -> game.makeAmove(CROSS, GameSymbolType.CROSS, -1, 0));
+		assertThrows(InvalidMoveException.class, () -> game.makeAmove(CROSS, GameSymbolType.CROSS, 0, 3));
+		assertThrows(InvalidMoveException.class, () -> game.makeAmove(CROSS, GameSymbolType.EMPTY, 0, 0));
+		assertEquals(0, game.getNumMoves());
+	}
+
+	@Test
+	public void movesNeedAStartedGame() throws Exception {
+		var game = new Game("game-1");
+		game.joinGame(CROSS, GameSymbolType.CROSS);
+		assertThrows(CannotStartGameException.class, game::start);
+		assertThrows(InvalidMoveException.class, () -> game.makeAmove(CROSS, GameSymbolType.CROSS, 0, 0));
+		assertThrows(InvalidJoinException.class, () -> game.joinGame(OTHER, GameSymbolType.CROSS));
+		game.joinGame(CIRCLE, GameSymbolType.CIRCLE);
+		game.start();
+		assertThrows(InvalidJoinException.class, () -> game.joinGame(OTHER, GameSymbolType.CIRCLE));
+		assertThrows(CannotStartGameException.class, game::start);
+	}
+
+}